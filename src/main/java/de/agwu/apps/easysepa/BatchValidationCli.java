@@ -0,0 +1,73 @@
+package de.agwu.apps.easysepa;
+
+import de.agwu.apps.easysepa.service.BatchValidationReport;
+import de.agwu.apps.easysepa.service.XsdValidationService;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Command line entry point for re-validating archived SEPA files without starting the UI.
+ * <pre>
+ * java -cp easysepa.jar de.agwu.apps.easysepa.BatchValidationCli &lt;Verzeichnis|Glob&gt; [--report Datei] [--max-errors N]
+ * </pre>
+ * Exit code 0 if all files are valid, 1 if any file is invalid, 2 on wrong usage or I/O errors.
+ */
+public final class BatchValidationCli {
+
+    private static final String USAGE =
+            "Aufruf: BatchValidationCli <Verzeichnis|Glob> [--report Datei] [--max-errors N]";
+
+    private BatchValidationCli() {
+        // Utility class
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        String target = null;
+        String reportFile = null;
+        int maxErrors = XsdValidationService.DEFAULT_MAX_ERRORS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--report" -> reportFile = args[++i];
+                    case "--max-errors" -> maxErrors = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (target != null) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        target = args[i];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            target = null;
+        }
+        if (target == null) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            BatchValidationReport report = new XsdValidationService(maxErrors).validateBatch(target);
+            if (reportFile != null) {
+                report.writeTo(Paths.get(reportFile));
+                System.out.println(report.getSummary());
+            } else {
+                Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                report.writeTo(out);
+                out.flush();
+            }
+            return report.isAllValid() ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Batch-Validierung fehlgeschlagen: " + e.getMessage());
+            return 2;
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package de.agwu.apps.easysepa;
 
 import de.agwu.apps.easysepa.controller.MainController;
+import de.agwu.apps.easysepa.service.BankDirectoryService;
 import de.agwu.apps.easysepa.service.ConfigService;
 import de.agwu.apps.easysepa.service.FieldMappingService;
+import de.agwu.apps.easysepa.service.RenderedFragmentCache;
+import de.agwu.apps.easysepa.service.SepaBusinessRuleChecker;
+import de.agwu.apps.easysepa.service.SepaOutputCache;
 import de.agwu.apps.easysepa.service.SepaTransactionBuilder;
 import de.agwu.apps.easysepa.service.SepaXmlGenerator;
+import de.agwu.apps.easysepa.service.XsdSchemaCache;
+import de.agwu.apps.easysepa.service.XmlTemplateEngine;
 import de.agwu.apps.easysepa.service.XsdValidationService;
 import de.agwu.apps.easysepa.util.CsvUtil;
+import de.agwu.apps.easysepa.util.GenerationSettings;
+import de.agwu.apps.easysepa.util.SepaCharsetTransliterator;
 import de.agwu.apps.easysepa.util.UiUtil;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -18,6 +26,13 @@ import java.io.IOException;
 public class MainApp extends Application {
     @Override
     public void start(Stage stage) throws IOException {
+        XsdSchemaCache.prewarmAsync();
+        // -Deasysepa.deterministic.time=... makes reruns over the same input produce identical files,
+        // which are then reused from the output cache
+        GenerationSettings settings = GenerationSettings.fromSystemProperties();
+        // Opt-in with -Deasysepa.fragmentcache=true, the cache stores debtor data in plain text
+        RenderedFragmentCache fragmentCache = RenderedFragmentCache.fromSystemProperties();
+
         FXMLLoader fxmlLoader = new FXMLLoader(MainApp.class.getResource("fxml/main-view.fxml"));
         fxmlLoader.setControllerFactory(type -> {
             if (type == MainController.class) {
@@ -26,9 +41,13 @@ public class MainApp extends Application {
                         new FieldMappingService(),
                         new UiUtil(),
                         new ConfigService(),
-                        new SepaTransactionBuilder(),
-                        new SepaXmlGenerator(),
-                        new XsdValidationService()
+                        new SepaTransactionBuilder(new CsvUtil(), new BankDirectoryService(),
+                                SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC),
+                                false, settings),
+                        new SepaXmlGenerator(new XmlTemplateEngine(fragmentCache), settings,
+                                new SepaOutputCache()),
+                        new XsdValidationService(),
+                        new SepaBusinessRuleChecker()
                 );
             }
             try {
@@ -1,22 +1,26 @@
 package de.agwu.apps.easysepa.controller;
 
-import com.opencsv.exceptions.CsvException;
 import de.agwu.apps.easysepa.model.config.FieldMappingConfig;
 import de.agwu.apps.easysepa.model.config.FieldMappingConfigSummary;
 import de.agwu.apps.easysepa.model.config.FieldMappingConfigVersion;
 import de.agwu.apps.easysepa.model.config.FieldMappingSelection;
 import de.agwu.apps.easysepa.model.sepa.SepaField;
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
 import de.agwu.apps.easysepa.model.sepa.TransactionValidationResult;
 import de.agwu.apps.easysepa.model.sepa.definition.ISepaFieldDefinition;
 import de.agwu.apps.easysepa.model.sepa.definition.SepaFieldDefinitionFactory;
 import de.agwu.apps.easysepa.model.sepa.SepaFormatType;
 import de.agwu.apps.easysepa.service.ConfigService;
 import de.agwu.apps.easysepa.service.FieldMappingService;
+import de.agwu.apps.easysepa.service.SepaBusinessRuleChecker;
 import de.agwu.apps.easysepa.service.SepaTransactionBuilder;
 import de.agwu.apps.easysepa.service.SepaXmlGenerator;
 import de.agwu.apps.easysepa.service.XsdValidationService;
+import de.agwu.apps.easysepa.util.CsvDialect;
+import de.agwu.apps.easysepa.util.CsvDialectSniffer;
 import de.agwu.apps.easysepa.util.CsvUtil;
+import de.agwu.apps.easysepa.util.EncodingDetector;
 import de.agwu.apps.easysepa.util.FieldMappingConstants;
 import de.agwu.apps.easysepa.util.UiUtil;
 import de.agwu.apps.easysepa.view.TransactionPreviewDialog;
@@ -31,6 +35,7 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.*;
 
 public class MainController {
@@ -81,10 +86,14 @@ public class MainController {
 
     private File selectedFile;
     private String[] csvHeaders;
+    // Quote character of the loaded CSV, taken from the sniffer if it is sure enough
+    private char csvQuoteChar = '"';
     private Map<String, Control> fieldMappingControls = new HashMap<>();
     private ISepaFieldDefinition currentFieldDefinition;
 
     private static final String FIXED_VALUE_OPTION = FieldMappingConstants.FIXED_VALUE_OPTION;
+    // Sniffed CSV settings below this confidence do not override the user's choice
+    private static final double DIALECT_CONFIDENCE = 0.8;
 
     // Services and Utilities
     private final CsvUtil csvUtil;
@@ -94,6 +103,7 @@ public class MainController {
     private final SepaTransactionBuilder transactionBuilder;
     private final SepaXmlGenerator xmlGenerator;
     private final XsdValidationService xsdValidator;
+    private final SepaBusinessRuleChecker businessRuleChecker;
 
     public MainController() {
         this(new CsvUtil(),
@@ -102,7 +112,8 @@ public class MainController {
              new ConfigService(),
              new SepaTransactionBuilder(),
              new SepaXmlGenerator(),
-             new XsdValidationService());
+             new XsdValidationService(),
+             new SepaBusinessRuleChecker());
     }
 
     public MainController(CsvUtil csvUtil,
@@ -111,7 +122,8 @@ public class MainController {
                           ConfigService configService,
                           SepaTransactionBuilder transactionBuilder,
                           SepaXmlGenerator xmlGenerator,
-                          XsdValidationService xsdValidator) {
+                          XsdValidationService xsdValidator,
+                          SepaBusinessRuleChecker businessRuleChecker) {
         this.csvUtil = csvUtil;
         this.fieldMappingService = fieldMappingService;
         this.uiUtil = uiUtil;
@@ -119,6 +131,7 @@ public class MainController {
         this.transactionBuilder = transactionBuilder;
         this.xmlGenerator = xmlGenerator;
         this.xsdValidator = xsdValidator;
+        this.businessRuleChecker = businessRuleChecker;
     }
 
     @FXML
@@ -199,17 +212,21 @@ public class MainController {
         }
 
         try {
-            String detectedEncoding = de.agwu.apps.easysepa.util.EncodingDetector.detectEncoding(selectedFile);
-            
+            EncodingDetector.Detection detection = EncodingDetector.analyze(selectedFile.toPath());
+            String detectedEncoding = detection.encoding();
+            int confidencePercent = (int) Math.round(detection.confidence(detectedEncoding) * 100);
+
             // Set detected encoding in ComboBox
-            if (encodingComboBox.getItems().contains(detectedEncoding)) {
+            if (encodingComboBox.getItems().contains(detectedEncoding) && confidencePercent >= 90) {
                 encodingComboBox.setValue(detectedEncoding);
-                setStatus("Encoding automatisch erkannt: " + detectedEncoding, StatusType.SUCCESS);
+                setStatus("Encoding automatisch erkannt: " + detectedEncoding
+                        + " (Sicherheit " + confidencePercent + " %)", StatusType.SUCCESS);
             } else {
                 // Show preview with different encodings
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Encoding-Erkennung");
-                alert.setHeaderText("Erkanntes Encoding: " + detectedEncoding);
+                alert.setHeaderText("Erkanntes Encoding: " + detectedEncoding
+                        + " (Sicherheit " + confidencePercent + " %)");
                 
                 StringBuilder content = new StringBuilder();
                 content.append("Vorschau der ersten Zeilen:\n\n");
@@ -217,7 +234,7 @@ public class MainController {
                 for (String enc : new String[]{"UTF-8", "ISO-8859-1", "Windows-1252"}) {
                     content.append("--- ").append(enc).append(" ---\n");
                     try {
-                        String preview = de.agwu.apps.easysepa.util.EncodingDetector.getEncodingPreview(selectedFile, enc);
+                        String preview = EncodingDetector.getEncodingPreview(selectedFile, enc);
                         content.append(preview).append("\n");
                     } catch (Exception e) {
                         content.append("Fehler beim Lesen\n\n");
@@ -243,30 +260,42 @@ public class MainController {
             return;
         }
 
-        final char separator = csvUtil.parseSeparator(separatorComboBox.getValue());
+        final char selectedSeparator = csvUtil.parseSeparator(separatorComboBox.getValue());
         final String encoding = encodingComboBox.getValue();
 
         setStatus("CSV wird geladen...", StatusType.WORKING);
         setCsvLoadingState(true);
 
-        Task<String[]> loadTask = new Task<>() {
+        Task<LoadedCsv> loadTask = new Task<>() {
             @Override
-            protected String[] call() throws Exception {
-                return csvUtil.readHeaders(selectedFile, separator, encoding);
+            protected LoadedCsv call() throws Exception {
+                CsvDialect dialect = CsvDialectSniffer.sniff(selectedFile.toPath(), Charset.forName(encoding));
+                char separator = dialect.separatorConfidence() >= DIALECT_CONFIDENCE
+                        ? dialect.separator() : selectedSeparator;
+                char quoteChar = dialect.quoteConfidence() >= DIALECT_CONFIDENCE ? dialect.quoteChar() : '"';
+                return new LoadedCsv(csvUtil.readHeaders(selectedFile, separator, quoteChar, encoding),
+                        dialect, separator, quoteChar);
             }
         };
 
         loadTask.setOnSucceeded(event -> {
             setCsvLoadingState(false);
-            csvHeaders = loadTask.getValue();
+            LoadedCsv loaded = loadTask.getValue();
+            csvHeaders = loaded.headers();
+            csvQuoteChar = loaded.quoteChar();
 
             if (csvHeaders != null && csvHeaders.length > 0) {
                 headersListView.getItems().setAll(csvHeaders);
                 headersPane.setVisible(true);
                 headersPane.setManaged(true);
+                applyDialect(loaded.dialect(), loaded.separator());
 
-                setStatus("CSV erfolgreich geladen! " + csvHeaders.length +
-                        " Spalten erkannt. Erstelle Feld-Zuordnung...", StatusType.SUCCESS);
+                String message = "CSV erfolgreich geladen! " + csvHeaders.length +
+                        " Spalten erkannt. Erstelle Feld-Zuordnung...";
+                if (!loaded.dialect().hasHeader() && loaded.dialect().headerConfidence() >= DIALECT_CONFIDENCE) {
+                    message += " Achtung: Die erste Zeile sieht nicht wie eine Kopfzeile aus.";
+                }
+                setStatus(message, StatusType.SUCCESS);
 
                 csvConfigPane.setExpanded(false);
                 showFieldMapping();
@@ -285,6 +314,7 @@ public class MainController {
         loadTask.setOnFailed(event -> {
             setCsvLoadingState(false);
             csvHeaders = null;
+            csvQuoteChar = '"';
             currentFieldDefinition = null;
             headersPane.setVisible(false);
             headersPane.setManaged(false);
@@ -296,8 +326,6 @@ public class MainController {
             Throwable exception = loadTask.getException();
             if (exception instanceof IOException ioException) {
                 setStatus("Fehler beim Lesen der Datei: " + ioException.getMessage(), StatusType.ERROR);
-            } else if (exception instanceof CsvException csvException) {
-                setStatus("Fehler beim Parsen der CSV: " + csvException.getMessage(), StatusType.ERROR);
             } else {
                 setStatus("Unbekannter Fehler beim Laden der CSV: " + exception.getMessage(), StatusType.ERROR);
             }
@@ -306,6 +334,23 @@ public class MainController {
         startBackgroundTask(loadTask);
     }
 
+    /**
+     * Take over the sniffed separator and decimal separator in the CSV settings
+     */
+    private void applyDialect(CsvDialect dialect, char separator) {
+        String separatorDisplay = csvUtil.formatSeparator(separator);
+        if (separatorDisplay != null) {
+            separatorComboBox.setValue(separatorDisplay);
+        }
+        boolean hasDecimals = dialect.columnDecimalSeparators().stream().anyMatch(decimal -> decimal != '\0');
+        if (hasDecimals && dialect.decimalConfidence() >= DIALECT_CONFIDENCE) {
+            decimalSeparatorComboBox.setValue(csvUtil.formatDecimalSeparator(dialect.decimalSeparator()));
+        }
+    }
+
+    private record LoadedCsv(String[] headers, CsvDialect dialect, char separator, char quoteChar) {
+    }
+
     private enum StatusType {
         SUCCESS, ERROR, INFO, WORKING
     }
@@ -499,18 +544,38 @@ public class MainController {
         }
 
         final char separator = csvUtil.parseSeparator(separatorComboBox.getValue());
+        final char quoteChar = csvQuoteChar;
         final String encoding = encodingComboBox.getValue();
         final char decimalSeparator = csvUtil.parseDecimalSeparator(decimalSeparatorComboBox.getValue());
 
+        final Map<String, String> mappingConfig = new HashMap<>();
+        mappingConfig.put("separator", String.valueOf(separator));
+        mappingConfig.put("quoteChar", String.valueOf(quoteChar));
+        mappingConfig.put("encoding", encoding);
+        mappingConfig.put("decimalSeparator", String.valueOf(decimalSeparator));
+        globalFieldValues.forEach((field, value) -> mappingConfig.put("global." + field, value));
+        columnMappings.forEach((field, column) -> mappingConfig.put("column." + field, column));
+        defaultValues.forEach((field, value) -> mappingConfig.put("default." + field, value));
+
         setProcessingState(true);
         setStatus("SEPA XML (" + selectedFormat.getCode() + ") wird vorbereitet...", StatusType.WORKING);
 
+        // Null unless the output is reproducible (deterministic mode)
+        Task<String> fingerprintTask = new Task<>() {
+            @Override
+            protected String call() throws Exception {
+                return xmlGenerator.outputFingerprint(selectedFile.toPath(), selectedFormat, mappingConfig,
+                        transactionBuilder.getOutputSettings()).orElse(null);
+            }
+        };
+
         Task<TransactionValidationResult> buildTask = new Task<>() {
             @Override
             protected TransactionValidationResult call() throws Exception {
                 return transactionBuilder.buildTransactions(
                         selectedFile,
                         separator,
+                        quoteChar,
                         encoding,
                         decimalSeparator,
                         currentFieldDefinition,
@@ -540,32 +605,115 @@ public class MainController {
             }
 
             File outputFile = result.get();
-            runXmlGenerationTask(outputFile, selectedFormat, validationResult);
+            runXmlGenerationTask(outputFile, selectedFormat, validationResult, fingerprintTask.getValue());
         });
 
         buildTask.setOnFailed(event -> {
             Throwable exception = buildTask.getException();
             if (exception instanceof IOException ioException) {
                 setStatus("Fehler beim Lesen der Datei: " + ioException.getMessage(), StatusType.ERROR);
-            } else if (exception instanceof CsvException csvException) {
-                setStatus("Fehler beim Parsen der CSV: " + csvException.getMessage(), StatusType.ERROR);
             } else {
                 setStatus("Fehler beim Erstellen der Transaktionen: " + exception.getMessage(), StatusType.ERROR);
             }
             setProcessingState(false);
         });
 
-        startBackgroundTask(buildTask);
+        fingerprintTask.setOnSucceeded(event -> {
+            String fingerprint = fingerprintTask.getValue();
+            if (fingerprint != null && xmlGenerator.hasCachedXml(fingerprint)) {
+                reuseCachedXml(fingerprint, selectedFormat);
+            } else {
+                startBackgroundTask(buildTask);
+            }
+        });
+
+        // The cache is only a shortcut; reading errors are reported by the regular build
+        fingerprintTask.setOnFailed(event -> startBackgroundTask(buildTask));
+
+        startBackgroundTask(fingerprintTask);
     }
 
-    private void runXmlGenerationTask(File outputFile, SepaFormat format, TransactionValidationResult validationResult) {
+    /**
+     * Save the cached XML of an unchanged input without parsing, rendering and schema validation;
+     * only the business rules are checked again
+     */
+    private void reuseCachedXml(String fingerprint, SepaFormat format) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("SEPA XML Datei speichern");
+        fileChooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("XML Dateien", "*.xml")
+        );
+        fileChooser.setInitialFileName("sepa_" + System.currentTimeMillis() + ".xml");
+
+        Stage stage = (Stage) filePathField.getScene().getWindow();
+        File outputFile = fileChooser.showSaveDialog(stage);
+        if (outputFile == null) {
+            setStatus("SEPA XML Generierung abgebrochen.", StatusType.INFO);
+            setProcessingState(false);
+            return;
+        }
+
+        // The business rules depend on today's date (e.g. collection dates in the past), so they are checked again
+        Task<XsdValidationService.ValidationResult> copyTask = new Task<>() {
+            @Override
+            protected XsdValidationService.ValidationResult call() throws Exception {
+                if (!xmlGenerator.copyCachedXml(fingerprint, outputFile)) {
+                    return null;
+                }
+                return businessRuleChecker.check(outputFile);
+            }
+        };
+
+        copyTask.setOnSucceeded(event -> {
+            XsdValidationService.ValidationResult ruleResult = copyTask.getValue();
+            if (ruleResult == null) {
+                setStatus("Zwischengespeicherte SEPA XML nicht mehr vorhanden, bitte erneut generieren.", StatusType.ERROR);
+            } else if (ruleResult.isValid()) {
+                String statusMsg = "SEPA XML (" + format.getCode() + ") unverändert aus dem Cache übernommen: "
+                        + outputFile.getName();
+                if (!ruleResult.getIssues().isEmpty()) {
+                    statusMsg += " | " + ruleResult.getIssues().size() + " Warnung(en)";
+                }
+                setStatus(statusMsg, StatusType.SUCCESS);
+            } else {
+                setStatus("WARNUNG: XML wurde aus dem Cache gespeichert, ist aber NICHT SEPA-konform: "
+                        + outputFile.getName(), StatusType.ERROR);
+                showValidationAlert(ruleResult, List.of());
+            }
+            setProcessingState(false);
+        });
+
+        copyTask.setOnFailed(event -> {
+            setStatus("Fehler beim Speichern der SEPA XML: " + copyTask.getException().getMessage(), StatusType.ERROR);
+            setProcessingState(false);
+        });
+
+        startBackgroundTask(copyTask);
+    }
+
+    /**
+     * @param fingerprint cache key for the output, or null if it is not reproducible
+     */
+    private void runXmlGenerationTask(File outputFile, SepaFormat format, TransactionValidationResult validationResult,
+                                      String fingerprint) {
         setStatus("SEPA XML (" + format.getCode() + ") wird generiert...", StatusType.WORKING);
 
         Task<XsdValidationService.ValidationResult> generationTask = new Task<>() {
             @Override
             protected XsdValidationService.ValidationResult call() throws Exception {
                 xmlGenerator.generateXml(outputFile, format, validationResult.getValidTransactions());
-                return xsdValidator.validateXml(outputFile, format);
+                XsdValidationService.ValidationResult result = xsdValidator.validateXml(outputFile, format)
+                        .merge(businessRuleChecker.check(outputFile));
+                // Only clean runs are reused; skipped rows and warnings must be reported again
+                if (fingerprint != null && result.isValid() && result.getIssues().isEmpty()
+                        && !validationResult.hasInvalidTransactions()) {
+                    try {
+                        xmlGenerator.cacheXml(fingerprint, outputFile);
+                    } catch (IOException e) {
+                        // The file was written; the next run just generates it again
+                    }
+                }
+                return result;
             }
         };
 
@@ -578,11 +726,14 @@ public class MainController {
                 if (validationResult.hasInvalidTransactions()) {
                     statusMsg += " | " + validationResult.getInvalidTransactions().size() + " ungültige Zeile(n) übersprungen";
                 }
+                if (!xsdResult.getIssues().isEmpty()) {
+                    statusMsg += " | " + xsdResult.getIssues().size() + " Warnung(en)";
+                }
                 setStatus(statusMsg, StatusType.SUCCESS);
             } else {
-                statusMsg = "WARNUNG: XML wurde gespeichert, ist aber NICHT XSD-konform: " + outputFile.getName();
+                statusMsg = "WARNUNG: XML wurde gespeichert, ist aber NICHT SEPA-konform: " + outputFile.getName();
                 setStatus(statusMsg, StatusType.ERROR);
-                showValidationAlert(xsdResult);
+                showValidationAlert(xsdResult, validationResult.getValidTransactions());
             }
             setProcessingState(false);
         });
@@ -596,11 +747,12 @@ public class MainController {
         startBackgroundTask(generationTask);
     }
 
-    private void showValidationAlert(XsdValidationService.ValidationResult xsdResult) {
+    private void showValidationAlert(XsdValidationService.ValidationResult xsdResult,
+                                     List<SepaTransaction> writtenTransactions) {
         Alert alert = new Alert(Alert.AlertType.WARNING);
-        alert.setTitle("XSD Validierung fehlgeschlagen");
+        alert.setTitle("Validierung fehlgeschlagen");
         alert.setHeaderText("Die generierte XML-Datei entspricht nicht dem SEPA-Standard!");
-        alert.setContentText("Validierungsfehler:\n\n" + xsdResult.getErrorsAsString());
+        alert.setContentText("Validierungsfehler:\n\n" + xsdResult.getErrorsAsString(writtenTransactions));
         alert.showAndWait();
     }
 
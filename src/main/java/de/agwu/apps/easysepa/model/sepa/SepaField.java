@@ -4,12 +4,24 @@ public class SepaField {
     private final String fieldName;
     private final String displayName;
     private final boolean required;
+    private final SepaFieldType type;
+    private final int maxLength;
     private final String description;
 
     public SepaField(String fieldName, String displayName, boolean required, String description) {
+        this(fieldName, displayName, required, SepaFieldType.fromFieldName(fieldName), 0, description);
+    }
+
+    /**
+     * @param maxLength maximum number of characters, 0 if the field has no length limit
+     */
+    public SepaField(String fieldName, String displayName, boolean required,
+                     SepaFieldType type, int maxLength, String description) {
         this.fieldName = fieldName;
         this.displayName = displayName;
         this.required = required;
+        this.type = type != null ? type : SepaFieldType.TEXT;
+        this.maxLength = Math.max(0, maxLength);
         this.description = description;
     }
 
@@ -25,6 +37,18 @@ public class SepaField {
         return required;
     }
 
+    public SepaFieldType getType() {
+        return type;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public boolean hasMaxLength() {
+        return maxLength > 0;
+    }
+
     public String getDescription() {
         return description;
     }
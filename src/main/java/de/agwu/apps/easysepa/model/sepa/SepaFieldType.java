@@ -0,0 +1,56 @@
+package de.agwu.apps.easysepa.model.sepa;
+
+import java.util.Locale;
+
+/**
+ * Value type of a SEPA field, used to pick normalization and validation rules
+ */
+public enum SepaFieldType {
+    TEXT,           // Free text (names, addresses)
+    IDENTIFIER,     // References and IDs (message, payment, end-to-end, mandate); never rewritten
+    AMOUNT,         // Decimal amount with dot as separator
+    DATE,           // ISO date (YYYY-MM-DD)
+    IBAN,
+    BIC,
+    CREDITOR_ID,    // SEPA creditor identifier (Gläubiger-ID)
+    SEQUENCE_TYPE,  // FRST, RCUR, OOFF, FNAL
+    BOOLEAN,        // true / false
+    REMITTANCE,     // Unstructured remittance text, may carry an ISO 11649 RF reference
+    CODE;           // Short code list values (e.g. CORE, B2B)
+
+    /**
+     * Infer the type from a field name, mirroring the name heuristics used by the UI.
+     * Used for field definitions that do not declare an explicit type.
+     */
+    public static SepaFieldType fromFieldName(String fieldName) {
+        if (fieldName == null) {
+            return TEXT;
+        }
+        String name = fieldName.toLowerCase(Locale.ROOT);
+        if (name.contains("iban")) {
+            return IBAN;
+        }
+        if (name.contains("bic")) {
+            return BIC;
+        }
+        if (name.contains("amount")) {
+            return AMOUNT;
+        }
+        if (name.contains("creditorid")) {
+            return CREDITOR_ID;
+        }
+        if (name.contains("remittance")) {
+            return REMITTANCE;
+        }
+        if (name.contains("endtoend") || name.contains("mandateid") || name.equals("msgid") || name.equals("pmtinfid")) {
+            return IDENTIFIER;
+        }
+        if (name.equals("seqtp")) {
+            return SEQUENCE_TYPE;
+        }
+        if (name.contains("date") || name.contains("dt")) {
+            return DATE;
+        }
+        return TEXT;
+    }
+}
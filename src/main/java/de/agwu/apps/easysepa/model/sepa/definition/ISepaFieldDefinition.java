@@ -34,4 +34,12 @@ public interface ISepaFieldDefinition {
         all.addAll(getTransactionFields());
         return all;
     }
+
+    /**
+     * Get the indexed slot layout of the fields.
+     * Implementations with constant field lists should cache the layout.
+     */
+    default SepaFieldLayout getLayout() {
+        return SepaFieldLayout.of(this);
+    }
 }
@@ -1,7 +1,7 @@
 package de.agwu.apps.easysepa.model.sepa.definition;
 
-import java.util.ArrayList;
 import de.agwu.apps.easysepa.model.sepa.SepaField;
+import de.agwu.apps.easysepa.model.sepa.SepaFieldType;
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
 import de.agwu.apps.easysepa.model.sepa.SepaFormatType;
 import java.util.List;
@@ -11,54 +11,37 @@ import java.util.List;
  */
 public class Pain008FieldDefinition implements ISepaFieldDefinition {
 
-    private final SepaFormat format;
-
-    public Pain008FieldDefinition(SepaFormat format) {
-        if (format.getType() != SepaFormatType.DIRECT_DEBIT) {
-            throw new IllegalArgumentException("Format must be DIRECT_DEBIT type");
-        }
-        this.format = format;
-    }
-
-    @Override
-    public SepaFormat getFormat() {
-        return format;
-    }
-
-    @Override
-    public List<SepaField> getGlobalFields() {
-        List<SepaField> fields = new ArrayList<>();
-
+    private static final List<SepaField> GLOBAL_FIELDS = List.of(
         // Group Header fields
-        fields.add(new SepaField("msgId", "Nachrichten-ID", true,
+        new SepaField("msgId", "Nachrichten-ID", true, SepaFieldType.IDENTIFIER, 35,
             "Nachrichten-ID (Message ID):\n" +
             "Eindeutige Identifikation dieser SEPA-Lastschrift-Datei.\n\n" +
             "Format: Max. 35 Zeichen (Buchstaben, Zahlen, Bindestriche erlaubt)\n" +
             "Beispiele: MSG-DD-2025-10-14-001, SEPA-LS-123456\n\n" +
-            "Tipp: Wird automatisch generiert wenn leer gelassen (Zeitstempel + Zufallszahl)"));
+            "Tipp: Wird automatisch generiert wenn leer gelassen (Zeitstempel + Zufallszahl)"),
 
-        fields.add(new SepaField("initiatorName", "Name des Initiators", true,
+        new SepaField("initiatorName", "Name des Initiators", true, SepaFieldType.TEXT, 70,
             "Name des Initiators:\n" +
             "Der Name der Person oder Firma, die diese SEPA-Lastschrift-Datei erstellt und einreicht.\n" +
             "In der Regel ist das Ihr Firmenname.\n\n" +
             "Format: Max. 70 Zeichen\n" +
-            "Beispiel: Musterfirma GmbH"));
+            "Beispiel: Musterfirma GmbH"),
 
         // Payment Information fields (constant for all transactions)
-        fields.add(new SepaField("pmtInfId", "Zahlungsinformations-ID", true,
+        new SepaField("pmtInfId", "Zahlungsinformations-ID", true, SepaFieldType.IDENTIFIER, 35,
             "Zahlungsinformations-ID (Payment Information ID):\n" +
             "Eindeutige ID für diese Gruppe von Lastschriften.\n\n" +
             "Format: Max. 35 Zeichen\n" +
             "Beispiele: PMT-DD-2025-10-14-001, LS-BATCH-123\n\n" +
-            "Tipp: Wird automatisch generiert wenn leer gelassen"));
+            "Tipp: Wird automatisch generiert wenn leer gelassen"),
 
-        fields.add(new SepaField("batchBooking", "Sammelbuchung", false,
+        new SepaField("batchBooking", "Sammelbuchung", false, SepaFieldType.BOOLEAN, 0,
             "Sammelbuchung (Batch Booking):\n" +
             "Gibt an, ob die Bank die Lastschriften als Sammelbuchung (true) " +
             "oder einzeln (false) ausführen soll.\n\n" +
-            "Standard: true – die meisten Banken erwarten Sammelbuchungen."));
+            "Standard: true – die meisten Banken erwarten Sammelbuchungen."),
 
-        fields.add(new SepaField("reqdColltnDt", "Gewünschtes Einzugsdatum", true,
+        new SepaField("reqdColltnDt", "Gewünschtes Einzugsdatum", true, SepaFieldType.DATE, 0,
             "Gewünschtes Einzugsdatum:\n" +
             "Das Datum, an dem die Bank die Lastschriften einziehen soll.\n\n" +
             "Format: YYYY-MM-DD (Jahr-Monat-Tag)\n" +
@@ -66,39 +49,39 @@ public class Pain008FieldDefinition implements ISepaFieldDefinition {
             "Wichtig: \n" +
             "  - FRST/OOFF: Mindestens 6 Bankarbeitstage Vorlauf\n" +
             "  - RCUR/FNAL: Mindestens 3 Bankarbeitstage Vorlauf\n" +
-            "  - B2B-Lastschriften: Mindestens 2 Bankarbeitstage Vorlauf"));
+            "  - B2B-Lastschriften: Mindestens 2 Bankarbeitstage Vorlauf"),
 
-        fields.add(new SepaField("creditorName", "Name des Gläubigers (Sie)", true,
+        new SepaField("creditorName", "Name des Gläubigers (Sie)", true, SepaFieldType.TEXT, 70,
             "Name des Gläubigers:\n" +
             "Ihr Name oder Firmenname - Sie sind der Zahlungsempfänger.\n" +
             "Das Konto auf das das Geld eingezogen wird.\n\n" +
             "Format: Max. 70 Zeichen\n" +
-            "Beispiel: Musterfirma GmbH"));
+            "Beispiel: Musterfirma GmbH"),
 
-        fields.add(new SepaField("creditorIBAN", "IBAN des Gläubigers (Sie)", true,
+        new SepaField("creditorIBAN", "IBAN des Gläubigers (Sie)", true, SepaFieldType.IBAN, 34,
             "IBAN des Gläubigers (Ihr Konto):\n" +
             "Die IBAN Ihres Kontos, auf das die Lastschriftbeträge eingezogen werden.\n\n" +
             "Format: DE + 20 Ziffern (für deutsche IBANs)\n" +
             "Beispiel: DE89370400440532013000\n\n" +
-            "Hinweis: Ohne Leerzeichen eingeben!"));
+            "Hinweis: Ohne Leerzeichen eingeben!"),
 
-        fields.add(new SepaField("creditorBIC", "BIC des Gläubigers (Sie)", false,
+        new SepaField("creditorBIC", "BIC des Gläubigers (Sie)", false, SepaFieldType.BIC, 11,
             "BIC des Gläubigers (Ihre Bank):\n" +
             "Der BIC (Bank Identifier Code) Ihrer Bank.\n\n" +
             "Format: 8 oder 11 Zeichen\n" +
             "Beispiel: COBADEFFXXX, BYLADEM1001\n\n" +
-            "Hinweis: Optional bei SEPA-Lastschriften innerhalb des SEPA-Raums."));
+            "Hinweis: Optional bei SEPA-Lastschriften innerhalb des SEPA-Raums."),
 
-        fields.add(new SepaField("creditorId", "Gläubiger-Identifikationsnummer", true,
+        new SepaField("creditorId", "Gläubiger-Identifikationsnummer", true, SepaFieldType.CREDITOR_ID, 35,
             "Gläubiger-Identifikationsnummer (Creditor ID):\n" +
             "Ihre eindeutige Gläubiger-Identifikationsnummer, die Sie von der Bundesbank erhalten haben.\n\n" +
             "Format: 18 Zeichen (DE + 2 Prüfziffern + ZZZ + 10 Zeichen)\n" +
             "Beispiel: DE98ZZZ09999999999\n\n" +
             "Wichtig: Diese Nummer müssen Sie bei der Deutschen Bundesbank beantragen!\n" +
             "Website: www.bundesbank.de/de/aufgaben/unbarer-zahlungsverkehr/serviceangebot/\n" +
-            "         elektronische-verfahren/glaeubiger-identifikationsnummer"));
+            "         elektronische-verfahren/glaeubiger-identifikationsnummer"),
 
-        fields.add(new SepaField("seqTp", "Sequenz-Typ", true,
+        new SepaField("seqTp", "Sequenz-Typ", true, SepaFieldType.SEQUENCE_TYPE, 4,
             "Sequenz-Typ (Sequence Type):\n" +
             "Gibt an, ob es sich um eine erste, wiederholte, einmalige oder letzte Lastschrift handelt.\n\n" +
             "Mögliche Werte:\n" +
@@ -110,23 +93,18 @@ public class Pain008FieldDefinition implements ISepaFieldDefinition {
             "    → Verwenden wenn nur eine einzige Abbuchung geplant ist\n\n" +
             "  • FNAL (Final): Letzte Lastschrift eines Mandats\n" +
             "    → Verwenden für die allerletzte Abbuchung (danach Mandat ungültig)\n\n" +
-            "Wichtig: Die Vorlauffristen unterscheiden sich je nach Typ!"));
+            "Wichtig: Die Vorlauffristen unterscheiden sich je nach Typ!"),
 
-        fields.add(new SepaField("localInstrumentCode", "Local Instrument Code", false,
+        new SepaField("localInstrumentCode", "Local Instrument Code", false, SepaFieldType.CODE, 35,
             "Local Instrument Code:\n" +
             "Kennzeichnet das Lastschriftverfahren (z. B. CORE oder B2B).\n\n" +
             "Standard: CORE – klassische SEPA-Basislastschrift.\n" +
             "Weitere Optionen: B2B (Business-to-Business), COR1 (verkürzte Vorlauffrist, sofern unterstützt).\n\n" +
-            "Wenn nichts angegeben wird, nutzt EasySepa automatisch CORE."));
+            "Wenn nichts angegeben wird, nutzt EasySepa automatisch CORE.")
+    );
 
-        return fields;
-    }
-
-    @Override
-    public List<SepaField> getTransactionFields() {
-        List<SepaField> fields = new ArrayList<>();
-
-        fields.add(new SepaField("endToEndId", "End-to-End-ID", true,
+    private static final List<SepaField> TRANSACTION_FIELDS = List.of(
+        new SepaField("endToEndId", "End-to-End-ID", true, SepaFieldType.IDENTIFIER, 35,
             "End-to-End-ID (Ende-zu-Ende-Referenz):\n" +
             "Eindeutige Referenz für jede einzelne Lastschrift-Transaktion.\n\n" +
             "Format: Max. 35 Zeichen\n" +
@@ -138,16 +116,16 @@ public class Pain008FieldDefinition implements ISepaFieldDefinition {
             "Tipp: Über die Option 'Fester Wert' können Sie dynamische Platzhalter verwenden, z. B.\n" +
             "  Rechnung-{today}-{id}  → erzeugt laufende IDs mit Tagesdatum\n" +
             "  Mandat-{row}           → nutzt die Zeilennummer aus der CSV\n" +
-            "  TX-{datetime:yyyyMMddHHmm}-{random:4} → kombiniert Zeitstempel und Zufallszahl"));
+            "  TX-{datetime:yyyyMMddHHmm}-{random:4} → kombiniert Zeitstempel und Zufallszahl"),
 
-        fields.add(new SepaField("amount", "Betrag", true,
+        new SepaField("amount", "Betrag", true, SepaFieldType.AMOUNT, 0,
             "Betrag:\n" +
             "Der Lastschriftbetrag in Euro.\n\n" +
             "Format: Dezimalzahl mit Punkt als Trennzeichen\n" +
             "Beispiele: 123.45, 1000.00, 42.99\n\n" +
-            "Hinweis: Keine Währungsangabe, kein €-Zeichen, kein Komma! Nur Zahlen und Punkt."));
+            "Hinweis: Keine Währungsangabe, kein €-Zeichen, kein Komma! Nur Zahlen und Punkt."),
 
-        fields.add(new SepaField("mandateId", "Mandatsreferenz", true,
+        new SepaField("mandateId", "Mandatsreferenz", true, SepaFieldType.IDENTIFIER, 35,
             "Mandatsreferenz (Mandate Reference):\n" +
             "Die eindeutige Referenznummer des SEPA-Lastschriftmandats, das der Zahlungspflichtige unterschrieben hat.\n\n" +
             "Format: Max. 35 Zeichen\n" +
@@ -156,39 +134,39 @@ public class Pain008FieldDefinition implements ISepaFieldDefinition {
             "  - Diese Referenz vergeben SIE selbst beim Erstellen des Mandats\n" +
             "  - Muss eindeutig sein innerhalb Ihrer Gläubiger-ID\n" +
             "  - Wird auf dem Mandat-Formular eingetragen\n" +
-            "  - Meist verknüpft mit Kunden-/Vertragsnummer"));
+            "  - Meist verknüpft mit Kunden-/Vertragsnummer"),
 
-        fields.add(new SepaField("mandateSignatureDate", "Mandats-Unterschriftsdatum", true,
+        new SepaField("mandateSignatureDate", "Mandats-Unterschriftsdatum", true, SepaFieldType.DATE, 0,
             "Mandats-Unterschriftsdatum:\n" +
             "Das Datum, an dem der Zahlungspflichtige das SEPA-Lastschriftmandat unterschrieben hat.\n\n" +
             "Format: YYYY-MM-DD (Jahr-Monat-Tag)\n" +
             "Beispiel: 2024-05-15\n\n" +
-            "Wichtig: Dieses Datum finden Sie auf dem unterschriebenen Mandat-Formular."));
+            "Wichtig: Dieses Datum finden Sie auf dem unterschriebenen Mandat-Formular."),
 
-        fields.add(new SepaField("debtorName", "Name des Schuldners", true,
+        new SepaField("debtorName", "Name des Schuldners", true, SepaFieldType.TEXT, 70,
             "Name des Schuldners (Zahlungspflichtiger):\n" +
             "Der Name der Person oder Firma, von deren Konto abgebucht wird.\n\n" +
             "Format: Max. 70 Zeichen\n" +
             "Beispiel: Max Mustermann, Beispiel AG\n\n" +
-            "Wichtig: Muss mit dem Namen auf dem Mandat und dem Kontoinhaber übereinstimmen!"));
+            "Wichtig: Muss mit dem Namen auf dem Mandat und dem Kontoinhaber übereinstimmen!"),
 
-        fields.add(new SepaField("debtorIBAN", "IBAN des Schuldners", true,
+        new SepaField("debtorIBAN", "IBAN des Schuldners", true, SepaFieldType.IBAN, 34,
             "IBAN des Schuldners:\n" +
             "Die IBAN des Kontos, von dem die Lastschrift eingezogen werden soll.\n\n" +
             "Format: DE + 20 Ziffern (für deutsche IBANs)\n" +
             "Beispiel: DE89370400440532013000\n\n" +
             "Wichtig: \n" +
             "  - Ohne Leerzeichen eingeben!\n" +
-            "  - Muss mit der IBAN auf dem Mandat übereinstimmen"));
+            "  - Muss mit der IBAN auf dem Mandat übereinstimmen"),
 
-        fields.add(new SepaField("debtorBIC", "BIC des Schuldners", false,
+        new SepaField("debtorBIC", "BIC des Schuldners", false, SepaFieldType.BIC, 11,
             "BIC des Schuldners:\n" +
             "Der BIC (Bank Identifier Code) der Bank des Zahlungspflichtigen.\n\n" +
             "Format: 8 oder 11 Zeichen\n" +
             "Beispiel: COBADEFFXXX, BYLADEM1001\n\n" +
-            "Hinweis: Optional bei SEPA-Lastschriften innerhalb des SEPA-Raums."));
+            "Hinweis: Optional bei SEPA-Lastschriften innerhalb des SEPA-Raums."),
 
-        fields.add(new SepaField("remittanceInfo", "Verwendungszweck", false,
+        new SepaField("remittanceInfo", "Verwendungszweck", false, SepaFieldType.REMITTANCE, 140,
             "Verwendungszweck:\n" +
             "Beschreibung der Lastschrift, die auf dem Kontoauszug des Zahlungspflichtigen erscheint.\n\n" +
             "Format: Max. 140 Zeichen\n" +
@@ -196,8 +174,37 @@ public class Pain008FieldDefinition implements ISepaFieldDefinition {
             "  - Mitgliedsbeitrag 2025\n" +
             "  - Rechnung RE-2025-001\n" +
             "  - Abo-Gebühr Oktober 2025\n\n" +
-            "Tipp: Geben Sie Informationen an, mit denen der Kunde die Abbuchung nachvollziehen kann."));
+            "Tipp: Geben Sie Informationen an, mit denen der Kunde die Abbuchung nachvollziehen kann.")
+    );
+
+    private static final SepaFieldLayout LAYOUT = SepaFieldLayout.of(GLOBAL_FIELDS, TRANSACTION_FIELDS);
 
-        return fields;
+    private final SepaFormat format;
+
+    public Pain008FieldDefinition(SepaFormat format) {
+        if (format.getType() != SepaFormatType.DIRECT_DEBIT) {
+            throw new IllegalArgumentException("Format must be DIRECT_DEBIT type");
+        }
+        this.format = format;
+    }
+
+    @Override
+    public SepaFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public List<SepaField> getGlobalFields() {
+        return GLOBAL_FIELDS;
+    }
+
+    @Override
+    public List<SepaField> getTransactionFields() {
+        return TRANSACTION_FIELDS;
+    }
+
+    @Override
+    public SepaFieldLayout getLayout() {
+        return LAYOUT;
     }
 }
@@ -2,19 +2,37 @@ package de.agwu.apps.easysepa.model.sepa.definition;
 
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
-import de.agwu.apps.easysepa.model.sepa.SepaFormat;
- * Factory to create the appropriate field definition for a given SEPA format
+ * Factory to create the appropriate field definition for a given SEPA format.
+ * Definitions are immutable, so each format is built once and shared.
  */
 public class SepaFieldDefinitionFactory {
 
-    public static ISepaFieldDefinition create(SepaFormat format) {
+    private static final Map<SepaFormat, ISepaFieldDefinition> REGISTRY = buildRegistry();
+
+    private static Map<SepaFormat, ISepaFieldDefinition> buildRegistry() {
+        Map<SepaFormat, ISepaFieldDefinition> registry = new EnumMap<>(SepaFormat.class);
+        for (SepaFormat format : SepaFormat.values()) {
+            registry.put(format, newDefinition(format));
+        }
+        return Collections.unmodifiableMap(registry);
+    }
+
+    private static ISepaFieldDefinition newDefinition(SepaFormat format) {
         return switch (format.getType()) {
             case CREDIT_TRANSFER -> new Pain001FieldDefinition(format);
             case DIRECT_DEBIT -> new Pain008FieldDefinition(format);
         };
     }
 
+    public static ISepaFieldDefinition create(SepaFormat format) {
+        return REGISTRY.get(format);
+    }
+
     public static ISepaFieldDefinition create(String formatCode) {
         SepaFormat format = SepaFormat.fromCode(formatCode);
         return create(format);
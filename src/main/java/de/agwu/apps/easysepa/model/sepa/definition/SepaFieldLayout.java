@@ -0,0 +1,121 @@
+package de.agwu.apps.easysepa.model.sepa.definition;
+
+import de.agwu.apps.easysepa.model.sepa.SepaField;
+import de.agwu.apps.easysepa.model.sepa.SepaFieldType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, indexed view of a field definition.
+ * Every field gets a fixed slot id so per-row processing can work with arrays instead of
+ * iterating and re-reading the field lists.
+ */
+public final class SepaFieldLayout {
+
+    private final SepaField[] globalFields;
+    private final SepaField[] transactionFields;
+    private final Map<String, Integer> globalSlots;
+    private final Map<String, Integer> transactionSlots;
+
+    // Flattened transaction field metadata, indexed by slot
+    private final String[] transactionFieldNames;
+    private final boolean[] required;
+    private final SepaFieldType[] types;
+    private final int[] maxLengths;
+
+    private SepaFieldLayout(List<SepaField> globalFields, List<SepaField> transactionFields) {
+        this.globalFields = globalFields.toArray(new SepaField[0]);
+        this.transactionFields = transactionFields.toArray(new SepaField[0]);
+        this.globalSlots = indexByName(this.globalFields);
+        this.transactionSlots = indexByName(this.transactionFields);
+
+        int count = this.transactionFields.length;
+        this.transactionFieldNames = new String[count];
+        this.required = new boolean[count];
+        this.types = new SepaFieldType[count];
+        this.maxLengths = new int[count];
+        for (int slot = 0; slot < count; slot++) {
+            SepaField field = this.transactionFields[slot];
+            transactionFieldNames[slot] = field.getFieldName();
+            required[slot] = field.isRequired();
+            types[slot] = field.getType();
+            maxLengths[slot] = field.getMaxLength();
+        }
+    }
+
+    /**
+     * Build the layout for a field definition. Prefer {@link ISepaFieldDefinition#getLayout()},
+     * which returns a shared instance for the built-in definitions.
+     */
+    public static SepaFieldLayout of(ISepaFieldDefinition definition) {
+        return of(definition.getGlobalFields(), definition.getTransactionFields());
+    }
+
+    /**
+     * Build the layout for constant field lists, e.g. once per definition class
+     */
+    public static SepaFieldLayout of(List<SepaField> globalFields, List<SepaField> transactionFields) {
+        return new SepaFieldLayout(globalFields, transactionFields);
+    }
+
+    private static Map<String, Integer> indexByName(SepaField[] fields) {
+        Map<String, Integer> slots = new HashMap<>();
+        for (int slot = 0; slot < fields.length; slot++) {
+            slots.putIfAbsent(fields[slot].getFieldName(), slot);
+        }
+        return Map.copyOf(slots);
+    }
+
+    public int getGlobalFieldCount() {
+        return globalFields.length;
+    }
+
+    public SepaField getGlobalField(int slot) {
+        return globalFields[slot];
+    }
+
+    /**
+     * Slot id of a global field, or -1 if the definition has no such field
+     */
+    public int globalSlotOf(String fieldName) {
+        Integer slot = globalSlots.get(fieldName);
+        return slot != null ? slot : -1;
+    }
+
+    public int getTransactionFieldCount() {
+        return transactionFields.length;
+    }
+
+    public SepaField getTransactionField(int slot) {
+        return transactionFields[slot];
+    }
+
+    /**
+     * Slot id of a transaction field, or -1 if the definition has no such field
+     */
+    public int transactionSlotOf(String fieldName) {
+        Integer slot = transactionSlots.get(fieldName);
+        return slot != null ? slot : -1;
+    }
+
+    public String getFieldName(int slot) {
+        return transactionFieldNames[slot];
+    }
+
+    public boolean isRequired(int slot) {
+        return required[slot];
+    }
+
+    public SepaFieldType getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Maximum length of a transaction field, 0 if unbounded
+     */
+    public int getMaxLength(int slot) {
+        return maxLengths[slot];
+    }
+}
@@ -0,0 +1,195 @@
+package de.agwu.apps.easysepa.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable lookup table from German bank code (BLZ) to BIC.
+ * Built from the fixed-width Bundesbank bank code file; lookups use open addressing on int keys
+ * and return shared BIC instances, so they do not allocate.
+ */
+final class BankCodeIndex {
+
+    static final BankCodeIndex EMPTY = new BankCodeIndex(new int[1], new int[1], new String[0], 0);
+
+    // Column positions of the Bundesbank file (0-based, end exclusive)
+    private static final int BLZ_START = 0;
+    private static final int BLZ_END = 8;
+    private static final int FEATURE_POS = 8;
+    private static final int BIC_START = 139;
+    private static final int BIC_END = 150;
+    private static final int MIN_RECORD_LENGTH = BIC_END;
+
+    private static final int EMPTY_KEY = 0;
+
+    private final int[] keys;
+    private final int[] bicIndexes;
+    private final String[] bics;
+    private final int size;
+
+    private BankCodeIndex(int[] keys, int[] bicIndexes, String[] bics, int size) {
+        this.keys = keys;
+        this.bicIndexes = bicIndexes;
+        this.bics = bics;
+        this.size = size;
+    }
+
+    /**
+     * Memory-map a bank code file and build the index from it
+     */
+    static BankCodeIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(buffer);
+        }
+    }
+
+    /**
+     * Build the index from the content of a bank code file (ISO-8859-1, one record per line)
+     */
+    static BankCodeIndex parse(ByteBuffer content) {
+        Builder builder = new Builder();
+        int limit = content.limit();
+        int lineStart = content.position();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && content.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int recordEnd = lineEnd;
+            if (recordEnd > lineStart && content.get(recordEnd - 1) == '\r') {
+                recordEnd--;
+            }
+            if (recordEnd - lineStart >= MIN_RECORD_LENGTH) {
+                builder.addRecord(content, lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return builder.build();
+    }
+
+    /**
+     * BIC for a bank code, or null if the bank code is unknown
+     */
+    String lookup(int bankCode) {
+        if (bankCode <= 0 || size == 0) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        int index = mix(bankCode) & mask;
+        while (true) {
+            int key = keys[index];
+            if (key == bankCode) {
+                return bics[bicIndexes[index]];
+            }
+            if (key == EMPTY_KEY) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Collects records; the BIC of a bank code is taken from its main office record (feature 1),
+     * branch records without own BIC fall back to it.
+     */
+    private static final class Builder {
+
+        private final Map<Integer, String> bicByBankCode = new HashMap<>();
+        private final Set<Integer> mainOffices = new HashSet<>();
+        private final Map<String, String> bicPool = new HashMap<>();
+
+        void addRecord(ByteBuffer content, int recordStart) {
+            int bankCode = parseBankCode(content, recordStart);
+            if (bankCode <= 0) {
+                return;
+            }
+            String bic = readBic(content, recordStart);
+            if (bic == null) {
+                return;
+            }
+            String pooled = bicPool.computeIfAbsent(bic, key -> key);
+            if (content.get(recordStart + FEATURE_POS) == '1') {
+                if (mainOffices.add(bankCode)) {
+                    bicByBankCode.put(bankCode, pooled);
+                }
+            } else {
+                bicByBankCode.putIfAbsent(bankCode, pooled);
+            }
+        }
+
+        BankCodeIndex build() {
+            int size = bicByBankCode.size();
+            if (size == 0) {
+                return EMPTY;
+            }
+            int capacity = Integer.highestOneBit(Math.max(size * 2, 2) - 1) << 1;
+            int[] keys = new int[capacity];
+            int[] bicIndexes = new int[capacity];
+            String[] bics = bicPool.values().toArray(new String[0]);
+            Map<String, Integer> bicSlots = new HashMap<>();
+            for (int i = 0; i < bics.length; i++) {
+                bicSlots.put(bics[i], i);
+            }
+
+            int mask = capacity - 1;
+            for (Map.Entry<Integer, String> entry : bicByBankCode.entrySet()) {
+                int bankCode = entry.getKey();
+                int index = mix(bankCode) & mask;
+                while (keys[index] != EMPTY_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = bankCode;
+                bicIndexes[index] = bicSlots.get(entry.getValue());
+            }
+            return new BankCodeIndex(keys, bicIndexes, bics, size);
+        }
+
+        private static int parseBankCode(ByteBuffer content, int recordStart) {
+            int bankCode = 0;
+            for (int i = recordStart + BLZ_START; i < recordStart + BLZ_END; i++) {
+                byte b = content.get(i);
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                bankCode = bankCode * 10 + (b - '0');
+            }
+            return bankCode;
+        }
+
+        private static String readBic(ByteBuffer content, int recordStart) {
+            int start = recordStart + BIC_START;
+            int end = recordStart + BIC_END;
+            while (end > start && content.get(end - 1) == ' ') {
+                end--;
+            }
+            if (end - start != 8 && end - start != 11) {
+                return null;
+            }
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) (content.get(start + i) & 0xFF);
+            }
+            String bic = new String(chars);
+            // 8-character BICs are stored with the primary office suffix
+            return bic.length() == 8 ? bic + "XXX" : bic;
+        }
+    }
+}
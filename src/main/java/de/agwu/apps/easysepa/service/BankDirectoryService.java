@@ -0,0 +1,110 @@
+package de.agwu.apps.easysepa.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Offline IBAN-to-BIC derivation based on the Bundesbank bank code file.
+ * The newest file in the bank directory folder is indexed; dropping in a newer file replaces
+ * the index on the next {@link #refresh()}, otherwise the existing index is kept.
+ */
+public class BankDirectoryService {
+
+    private static final String DEFAULT_DIRECTORY = "config/bankdirectory";
+    private static final String FILE_EXTENSION = ".txt";
+
+    private final Path directory;
+    private volatile LoadedIndex current = new LoadedIndex(null, 0L, 0L, BankCodeIndex.EMPTY);
+
+    public BankDirectoryService() {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    public BankDirectoryService(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Re-index if a new or changed bank code file is present.
+     * Cheap when nothing changed: only the directory listing is read.
+     */
+    public synchronized void refresh() throws IOException {
+        Path newest = null;
+        BasicFileAttributes newestAttributes = null;
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (newestAttributes == null
+                            || attributes.lastModifiedTime().compareTo(newestAttributes.lastModifiedTime()) > 0) {
+                        newest = file;
+                        newestAttributes = attributes;
+                    }
+                }
+            }
+        }
+
+        LoadedIndex loaded = current;
+        if (newest == null) {
+            if (loaded.file != null) {
+                current = new LoadedIndex(null, 0L, 0L, BankCodeIndex.EMPTY);
+            }
+            return;
+        }
+        long modified = newestAttributes.lastModifiedTime().toMillis();
+        long size = newestAttributes.size();
+        if (newest.equals(loaded.file) && modified == loaded.lastModified && size == loaded.size) {
+            return;
+        }
+
+        try {
+            current = new LoadedIndex(newest, modified, size, BankCodeIndex.load(newest));
+        } catch (IOException e) {
+            throw new IOException("Bankleitzahlendatei konnte nicht geladen werden: " + newest.getFileName(), e);
+        }
+    }
+
+    /**
+     * Derive the BIC of a German IBAN from its bank code
+     *
+     * @return the BIC, or null if the IBAN is not German or the bank code is unknown
+     */
+    public String deriveBic(CharSequence iban) {
+        if (iban == null || iban.length() != 22 || iban.charAt(0) != 'D' || iban.charAt(1) != 'E') {
+            return null;
+        }
+        int bankCode = 0;
+        for (int i = 4; i < 12; i++) {
+            char ch = iban.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return null;
+            }
+            bankCode = bankCode * 10 + (ch - '0');
+        }
+        return current.index.lookup(bankCode);
+    }
+
+    /**
+     * Name, size and modification time of the bank code file after a {@link #refresh()}, or an empty
+     * string if none is present; changes whenever derived BICs may change
+     */
+    public String getIndexVersion() throws IOException {
+        refresh();
+        LoadedIndex loaded = current;
+        return loaded.file == null ? "" : loaded.file.getFileName() + ":" + loaded.size + ":" + loaded.lastModified;
+    }
+
+    /**
+     * Number of bank codes in the current index
+     */
+    public int getBankCodeCount() {
+        return current.index.size();
+    }
+
+    private record LoadedIndex(Path file, long lastModified, long size, BankCodeIndex index) {
+    }
+}
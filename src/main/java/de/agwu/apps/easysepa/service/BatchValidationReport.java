@@ -0,0 +1,101 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of validating a set of SEPA files, one entry per file in path order
+ */
+public class BatchValidationReport {
+
+    /**
+     * Validation result of a single file; the format is null if it could not be detected
+     */
+    public record FileResult(Path file, SepaFormat format, XsdValidationService.ValidationResult result) {
+
+        public boolean isValid() {
+            return format != null && result.isValid();
+        }
+    }
+
+    private final Path baseDirectory;
+    private final List<FileResult> files;
+    private final long durationMillis;
+
+    public BatchValidationReport(Path baseDirectory, List<FileResult> files, long durationMillis) {
+        this.baseDirectory = baseDirectory;
+        this.files = List.copyOf(files);
+        this.durationMillis = durationMillis;
+    }
+
+    public List<FileResult> getFiles() {
+        return files;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    public int getValidCount() {
+        return (int) files.stream().filter(FileResult::isValid).count();
+    }
+
+    /**
+     * Files of a known format that failed validation
+     */
+    public int getInvalidCount() {
+        return (int) files.stream().filter(file -> file.format() != null && !file.result().isValid()).count();
+    }
+
+    public int getUnknownFormatCount() {
+        return (int) files.stream().filter(file -> file.format() == null).count();
+    }
+
+    public boolean isAllValid() {
+        return getValidCount() == files.size();
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * One-line summary of the counts
+     */
+    public String getSummary() {
+        return String.format(Locale.ROOT, "Dateien: %d, gültig: %d, ungültig: %d, Format unbekannt: %d (%.1f s)",
+                getFileCount(), getValidCount(), getInvalidCount(), getUnknownFormatCount(), durationMillis / 1000.0);
+    }
+
+    /**
+     * Write the report: summary first, then every file that is not valid with its errors
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("EasySepa Batch-Validierung\n");
+        writer.write("Verzeichnis: " + baseDirectory + "\n");
+        writer.write(getSummary() + "\n");
+        for (FileResult file : files) {
+            if (file.isValid()) {
+                continue;
+            }
+            String status = file.format() == null ? "FORMAT UNBEKANNT" : "UNGÜLTIG (" + file.format().getCode() + ")";
+            writer.write("\n" + status + ": " + baseDirectory.relativize(file.file()) + "\n");
+            for (String error : file.result().getErrors()) {
+                writer.write("  - " + error + "\n");
+            }
+        }
+    }
+
+    public void writeTo(Path reportFile) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a SEPA document into its skeleton and batches of transaction fragments and validates
+ * the batches in parallel.
+ * The skeleton keeps the first transaction of every payment information block, so it is still
+ * valid against the full schema; removed transactions are replaced by their line breaks, so
+ * line numbers stay exact in the skeleton and in the batches.
+ */
+class ParallelXsdValidator {
+
+    private static final String PAYMENT_INFORMATION = "PmtInf";
+    private static final int BATCH_SIZE = 256;
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newFactory();
+
+    private final SepaFormat format;
+    private final int maxErrors;
+    private final int parallelism;
+    private final String transactionElement;
+
+    /**
+     * Issues, additional error messages and whether validation stopped at the error limit
+     */
+    record Outcome(List<ValidationIssue> issues, List<String> errors, boolean aborted) {
+    }
+
+    ParallelXsdValidator(SepaFormat format, int maxErrors, int parallelism) {
+        this.format = format;
+        this.maxErrors = maxErrors;
+        this.parallelism = Math.max(1, parallelism);
+        this.transactionElement = XsdSchemaCache.getTransactionElement(format);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        // Input may come from untrusted sources; SEPA documents never carry a DOCTYPE
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    Outcome validate(Path xmlFile) {
+        List<String> errors = new ArrayList<>();
+        Schema documentSchema;
+        Schema batchSchema;
+        try {
+            documentSchema = XsdSchemaCache.getSchema(format);
+            batchSchema = XsdSchemaCache.getTransactionBatchSchema(format);
+        } catch (SAXException e) {
+            errors.add("XSD Schema konnte nicht geladen werden: " + e.getMessage());
+            return new Outcome(List.of(), errors, false);
+        }
+        if (documentSchema == null || batchSchema == null) {
+            errors.add("XSD Schema nicht gefunden: " + XsdSchemaCache.getXsdPath(format));
+            return new Outcome(List.of(), errors, false);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "xsd-fragment-validation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Splitter splitter = new Splitter(executor, batchSchema);
+        try (InputStream in = Files.newInputStream(xmlFile)) {
+            splitter.split(in);
+        } catch (XMLStreamException e) {
+            errors.add("XML Parse Fehler: " + e.getMessage());
+        } catch (IOException e) {
+            errors.add("I/O Fehler: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.add("Validierung unterbrochen");
+        }
+
+        List<ValidationTracker> trackers = new ArrayList<>();
+        boolean aborted = splitter.aborted;
+        try {
+            if (errors.isEmpty() && !aborted) {
+                ValidationTracker skeletonTracker = new ValidationTracker(maxErrors, true);
+                skeletonTracker.setTransactionIndexMap(splitter.skeletonTransactions.stream()
+                        .mapToInt(Integer::intValue).toArray());
+                trackers.add(skeletonTracker);
+                try {
+                    XsdValidationService.validate(documentSchema,
+                            new InputSource(new ByteArrayInputStream(splitter.skeleton.toByteArray())), skeletonTracker);
+                } catch (ValidationTracker.ErrorLimitReachedException e) {
+                    aborted = true;
+                } catch (SAXException | IOException e) {
+                    if (!skeletonTracker.isFatalErrorReported()) {
+                        errors.add("XML Parse Fehler: " + e.getMessage());
+                    }
+                }
+            }
+            for (Future<BatchResult> future : splitter.batches) {
+                BatchResult batch = future.get();
+                trackers.add(batch.tracker);
+                aborted |= batch.aborted;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.add("Validierung unterbrochen");
+        } catch (ExecutionException e) {
+            errors.add("Fehler bei der Validierung: " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Outcome(mergeIssues(trackers), errors, aborted || splitter.errorCount.get() >= maxErrors);
+    }
+
+    /**
+     * Merge the issues of all fragments in document order, counting repeated problems once
+     */
+    private static List<ValidationIssue> mergeIssues(List<ValidationTracker> trackers) {
+        List<ValidationIssue> all = new ArrayList<>();
+        for (ValidationTracker tracker : trackers) {
+            all.addAll(tracker.getIssues());
+        }
+        all.sort(Comparator.comparingInt(ValidationIssue::getLineNumber)
+                .thenComparingInt(ValidationIssue::getColumnNumber));
+
+        Map<String, ValidationIssue> merged = new LinkedHashMap<>();
+        for (ValidationIssue issue : all) {
+            String key = ValidationTracker.issueKey(issue.getSeverity(), issue.getPath(), issue.getMessage());
+            ValidationIssue first = merged.putIfAbsent(key, issue);
+            if (first != null) {
+                first.addOccurrences(issue.getOccurrences());
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private record BatchResult(ValidationTracker tracker, boolean aborted) {
+    }
+
+    /**
+     * Streams the document once, writing the skeleton and submitting transaction batches
+     */
+    private final class Splitter {
+
+        private final ExecutorService executor;
+        private final Schema batchSchema;
+        private final Semaphore inFlight = new Semaphore(parallelism * 2);
+        private final AtomicInteger errorCount = new AtomicInteger();
+
+        final ByteArrayOutputStream skeleton = new ByteArrayOutputStream();
+        final List<Integer> skeletonTransactions = new ArrayList<>();
+        final List<Future<BatchResult>> batches = new ArrayList<>();
+        volatile boolean aborted;
+
+        private final List<String> path = new ArrayList<>();
+        private List<Namespace> rootNamespaces = List.of();
+        private int transactionIndex;
+        private int transactionsInPaymentInformation;
+
+        // Current transaction
+        private boolean inTransaction;
+        private int transactionDepth;
+        private boolean transactionInSkeleton;
+        private int removedLineBreaks;
+
+        // Current batch
+        private ByteArrayOutputStream batchBytes;
+        private XMLEventWriter batchWriter;
+        private String batchRootPath;
+        private int batchFirstTransaction;
+        private int batchFirstLine;
+        private int batchSize;
+
+        Splitter(ExecutorService executor, Schema batchSchema) {
+            this.executor = executor;
+            this.batchSchema = batchSchema;
+        }
+
+        void split(InputStream in) throws XMLStreamException, InterruptedException {
+            XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(in);
+            XMLEventWriter skeletonWriter = OUTPUT_FACTORY.createXMLEventWriter(skeleton, "UTF-8");
+            try {
+                while (reader.hasNext() && !aborted) {
+                    XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement()) {
+                        startElement(event.asStartElement(), skeletonWriter);
+                    } else if (event.isEndElement()) {
+                        endElement(event, skeletonWriter);
+                    } else if (inTransaction && !transactionInSkeleton) {
+                        if (event.isCharacters()) {
+                            removedLineBreaks += countLineBreaks(event.asCharacters());
+                        }
+                        batchWriter.add(event);
+                    } else {
+                        skeletonWriter.add(event);
+                        if (batchWriter != null && event.isCharacters() && event.asCharacters().isWhiteSpace()) {
+                            // Keep the line breaks between batched transactions
+                            batchWriter.add(event);
+                        }
+                    }
+                }
+                submitBatch();
+                skeletonWriter.flush();
+            } finally {
+                reader.close();
+                skeletonWriter.close();
+            }
+        }
+
+        private void startElement(StartElement element, XMLEventWriter skeletonWriter)
+                throws XMLStreamException {
+            String name = element.getName().getLocalPart();
+            if (path.isEmpty()) {
+                List<Namespace> namespaces = new ArrayList<>();
+                for (Iterator<Namespace> it = element.getNamespaces(); it.hasNext(); ) {
+                    namespaces.add(it.next());
+                }
+                rootNamespaces = namespaces;
+            }
+
+            if (!inTransaction && transactionElement.equals(name)) {
+                inTransaction = true;
+                transactionDepth = path.size();
+                transactionIndex++;
+                transactionInSkeleton = transactionsInPaymentInformation++ == 0;
+                if (transactionInSkeleton) {
+                    skeletonTransactions.add(transactionIndex);
+                } else {
+                    startBatchIfNeeded(element);
+                }
+            } else if (!inTransaction && PAYMENT_INFORMATION.equals(name)) {
+                transactionsInPaymentInformation = 0;
+            }
+            path.add(name);
+
+            if (inTransaction && !transactionInSkeleton) {
+                batchWriter.add(element);
+            } else {
+                skeletonWriter.add(element);
+            }
+        }
+
+        private void endElement(XMLEvent event, XMLEventWriter skeletonWriter)
+                throws XMLStreamException, InterruptedException {
+            path.remove(path.size() - 1);
+            String name = event.asEndElement().getName().getLocalPart();
+
+            if (inTransaction && !transactionInSkeleton) {
+                batchWriter.add(event);
+            } else {
+                skeletonWriter.add(event);
+            }
+
+            if (inTransaction && path.size() == transactionDepth) {
+                inTransaction = false;
+                if (!transactionInSkeleton) {
+                    if (removedLineBreaks > 0) {
+                        skeletonWriter.add(EVENT_FACTORY.createCharacters("\n".repeat(removedLineBreaks)));
+                        removedLineBreaks = 0;
+                    }
+                    if (++batchSize >= BATCH_SIZE) {
+                        submitBatch();
+                    }
+                }
+            } else if (!inTransaction && PAYMENT_INFORMATION.equals(name)) {
+                // Batches never span payment information blocks, so their lines stay contiguous
+                submitBatch();
+            }
+        }
+
+        private void startBatchIfNeeded(StartElement firstTransaction) throws XMLStreamException {
+            if (batchWriter != null) {
+                return;
+            }
+            batchBytes = new ByteArrayOutputStream(64 * 1024);
+            batchWriter = OUTPUT_FACTORY.createXMLEventWriter(batchBytes, "UTF-8");
+            batchRootPath = "/" + String.join("/", path);
+            batchFirstTransaction = transactionIndex;
+            batchFirstLine = firstTransaction.getLocation().getLineNumber();
+            batchSize = 0;
+
+            String namespace = firstTransaction.getName().getNamespaceURI();
+            batchWriter.add(EVENT_FACTORY.createStartElement("", namespace,
+                    XsdSchemaCache.TRANSACTION_BATCH_ELEMENT, null, rootNamespaces.iterator()));
+        }
+
+        private void submitBatch() throws XMLStreamException, InterruptedException {
+            if (batchWriter == null) {
+                return;
+            }
+            batchWriter.add(EVENT_FACTORY.createEndElement("", "", XsdSchemaCache.TRANSACTION_BATCH_ELEMENT));
+            batchWriter.close();
+            byte[] bytes = batchBytes.toByteArray();
+            String rootPath = batchRootPath;
+            int transactionOffset = batchFirstTransaction - 1;
+            int lineOffset = batchFirstLine - 1;
+            batchWriter = null;
+            batchBytes = null;
+
+            if (errorCount.get() >= maxErrors) {
+                aborted = true;
+                return;
+            }
+            inFlight.acquire();
+            batches.add(executor.submit(() -> {
+                try {
+                    return validateBatch(bytes, rootPath, transactionOffset, lineOffset);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        private BatchResult validateBatch(byte[] bytes, String rootPath, int transactionOffset, int lineOffset) {
+            ValidationTracker tracker = new ValidationTracker(maxErrors, true);
+            tracker.setFragmentOrigin(rootPath, transactionOffset, lineOffset);
+            boolean limitReached = false;
+            try {
+                XsdValidationService.validate(batchSchema, new InputSource(new ByteArrayInputStream(bytes)), tracker);
+            } catch (ValidationTracker.ErrorLimitReachedException e) {
+                limitReached = true;
+            } catch (SAXException | IOException e) {
+                // Fragments are written by the splitter and always well-formed
+                throw new IllegalStateException(e);
+            }
+            if (errorCount.addAndGet(tracker.getErrorCount()) >= maxErrors) {
+                aborted = true;
+            }
+            return new BatchResult(tracker, limitReached);
+        }
+
+        private int countLineBreaks(Characters characters) {
+            String data = characters.getData();
+            int count = 0;
+            for (int i = 0; i < data.length(); i++) {
+                if (data.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
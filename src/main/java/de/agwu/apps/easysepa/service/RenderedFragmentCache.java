@@ -0,0 +1,157 @@
+package de.agwu.apps.easysepa.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered template fragments (one per transaction) stored under a digest of everything they were
+ * rendered from, so recurring rows are copied instead of rendered again.
+ * <p>
+ * Fragments are kept in an LRU map of bounded size and persisted to a single file, so they survive
+ * until the next run, e.g. next month's collection. The file is loaded on first use and rewritten by
+ * {@link #save()} only if fragments were added; an unreadable file is treated as empty.
+ * <p>
+ * The file holds debtor data in plain text, so the application only uses the cache when
+ * {@value #ENABLED_PROPERTY} is set to {@code true}.
+ */
+public final class RenderedFragmentCache {
+
+    public static final String DEFAULT_DIRECTORY = "config/fragmentcache";
+    /** Set to {@code true} to keep rendered fragments between runs */
+    public static final String ENABLED_PROPERTY = "easysepa.fragmentcache";
+    private static final String FILE_NAME = "fragments.bin";
+    private static final int DEFAULT_MAX_ENTRIES = 50_000;
+    private static final int MAX_FRAGMENT_BYTES = 1 << 20;
+
+    // File layout: magic, entry count, then key and UTF-8 fragment per entry, least recently used first
+    private static final int MAGIC = 0x455A4652;
+
+    private final Path file;
+    private final int maxEntries;
+    private final LinkedHashMap<String, String> fragments;
+    private boolean loaded;
+    private boolean modified;
+
+    public RenderedFragmentCache() {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    public RenderedFragmentCache(Path directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries fragments kept; the least recently used are dropped beyond that
+     */
+    public RenderedFragmentCache(Path directory, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximale Anzahl muss positiv sein: " + maxEntries);
+        }
+        this.file = directory.resolve(FILE_NAME);
+        this.maxEntries = maxEntries;
+        this.fragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > RenderedFragmentCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache in the default directory if {@value #ENABLED_PROPERTY} is {@code true}, null otherwise
+     */
+    public static RenderedFragmentCache fromSystemProperties() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) ? new RenderedFragmentCache() : null;
+    }
+
+    /**
+     * Rendered fragment for a key, or null
+     */
+    public synchronized String get(String key) {
+        load();
+        return fragments.get(key);
+    }
+
+    public synchronized void put(String key, String fragment) {
+        load();
+        if (!fragment.equals(fragments.put(key, fragment))) {
+            modified = true;
+        }
+    }
+
+    public synchronized int size() {
+        load();
+        return fragments.size();
+    }
+
+    /**
+     * Write the fragments to disk if any were added since the last load or save
+     */
+    public synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(fragments.size());
+                for (Map.Entry<String, String> entry : fragments.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    byte[] fragment = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(fragment.length);
+                    out.write(fragment);
+                }
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            modified = false;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAGMENT_BYTES) {
+                    throw new IOException("Ungültige Fragmentlänge: " + length);
+                }
+                byte[] fragment = new byte[length];
+                in.readFully(fragment);
+                fragments.put(key, new String(fragment, StandardCharsets.UTF_8));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Damaged or foreign file: start empty, it is rewritten on the next save
+            fragments.clear();
+        }
+    }
+}
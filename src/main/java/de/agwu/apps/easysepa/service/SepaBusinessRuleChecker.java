@@ -0,0 +1,342 @@
+package de.agwu.apps.easysepa.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EPC consistency rules the XSD cannot express, checked in a single streaming pass over a
+ * pain.001 or pain.008 document: transaction counts and control sums of the group header and of every
+ * payment information block, requested dates in the past, FRST/OOFF mandates used more than once and
+ * currencies other than EUR.
+ * Works on any file, not only on generated ones; memory use does not depend on the file size apart
+ * from one entry per mandate reference.
+ */
+public class SepaBusinessRuleChecker {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final String CURRENCY = "EUR";
+
+    private final Clock clock;
+
+    public SepaBusinessRuleChecker() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock clock deciding which requested dates are in the past
+     */
+    public SepaBusinessRuleChecker(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Check a SEPA XML file
+     */
+    public XsdValidationService.ValidationResult check(File xmlFile) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(xmlFile.toPath()))) {
+            return check(in);
+        } catch (IOException e) {
+            return new XsdValidationService.ValidationResult(false, new ArrayList<>(List.of("I/O Fehler: " + e.getMessage())));
+        }
+    }
+
+    /**
+     * Check SEPA XML read from a stream; the stream is not closed
+     *
+     * @return result whose issues are the rule violations; only errors make it invalid, warnings do not
+     */
+    public XsdValidationService.ValidationResult check(InputStream xml) {
+        Pass pass = new Pass(LocalDate.now(clock));
+        List<String> errors = new ArrayList<>();
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(xml);
+            try {
+                pass.run(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            errors.add("XML Parse Fehler: " + e.getMessage());
+        }
+
+        // Totals are compared at the end of their block but reported at the declared value
+        pass.issues.sort(Comparator.comparingInt(ValidationIssue::getLineNumber));
+        boolean valid = errors.isEmpty();
+        for (ValidationIssue issue : pass.issues) {
+            valid &= issue.getSeverity() == ValidationIssue.Severity.WARNING;
+        }
+        if (valid && pass.issues.isEmpty()) {
+            return new XsdValidationService.ValidationResult(true, List.of());
+        }
+        for (int i = pass.issues.size() - 1; i >= 0; i--) {
+            errors.add(0, pass.issues.get(i).format(0));
+        }
+        return new XsdValidationService.ValidationResult(valid, errors, pass.issues, false);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * State of one pass over a document
+     */
+    private static final class Pass {
+
+        private final LocalDate today;
+        private final List<ValidationIssue> issues = new ArrayList<>();
+        private final Map<String, String> sequenceTypeByMandate = new HashMap<>();
+
+        private String[] path = new String[16];
+        private int depth;
+        private final StringBuilder text = new StringBuilder();
+        private int line;
+
+        private final Totals group = new Totals();
+        private final Totals paymentInformation = new Totals();
+        private String paymentSequenceType;
+
+        private int transactionCount;
+        private boolean inTransaction;
+        private String transactionSequenceType;
+        private String mandateId;
+
+        Pass(LocalDate today) {
+            this.today = today;
+        }
+
+        void run(XMLStreamReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> startElement(reader);
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text.append(reader.getText());
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        line = reader.getLocation().getLineNumber();
+                        endElement(text.toString().strip());
+                        text.setLength(0);
+                        depth--;
+                    }
+                    default -> {
+                        // Whitespace, comments and processing instructions are irrelevant
+                    }
+                }
+            }
+        }
+
+        private void startElement(XMLStreamReader reader) {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            String name = reader.getLocalName();
+            path[depth++] = name;
+            text.setLength(0);
+            line = reader.getLocation().getLineNumber();
+
+            if (isTransaction(name)) {
+                transactionCount++;
+                group.count++;
+                paymentInformation.count++;
+                inTransaction = true;
+                transactionSequenceType = null;
+                mandateId = null;
+            } else if ("PmtInf".equals(name)) {
+                paymentInformation.reset();
+                paymentSequenceType = null;
+            }
+
+            String currency = reader.getAttributeValue(null, "Ccy");
+            if (currency != null && !CURRENCY.equals(currency)) {
+                report(ValidationIssue.Severity.ERROR,
+                        "Währung " + currency + " ist im SEPA-Zahlungsverkehr nicht zulässig (nur " + CURRENCY + ")");
+            }
+        }
+
+        private void endElement(String value) {
+            String name = path[depth - 1];
+            String parent = depth > 1 ? path[depth - 2] : "";
+            switch (name) {
+                case "NbOfTxs" -> totalsOf(parent, value, true);
+                case "CtrlSum" -> totalsOf(parent, value, false);
+                case "InstdAmt" -> {
+                    if (inTransaction) {
+                        BigDecimal amount = parseDecimal(value);
+                        if (amount != null) {
+                            group.add(amount);
+                            paymentInformation.add(amount);
+                        }
+                    }
+                }
+                case "SeqTp" -> {
+                    if (inTransaction) {
+                        transactionSequenceType = value;
+                    } else {
+                        paymentSequenceType = value;
+                    }
+                }
+                case "MndtId" -> {
+                    if (inTransaction) {
+                        mandateId = value;
+                    }
+                }
+                case "ReqdColltnDt" -> checkRequestedDate(value, "Einzugsdatum");
+                case "ReqdExctnDt" -> checkRequestedDate(value, "Ausführungsdatum");
+                case "Dt", "DtTm" -> {
+                    if ("ReqdExctnDt".equals(parent)) {
+                        checkRequestedDate(value, "Ausführungsdatum");
+                    }
+                }
+                case "PmtInf" -> paymentInformation.compare("im Zahlungsblock " + nonEmpty(paymentInformation.id));
+                case "PmtInfId" -> paymentInformation.id = value;
+                default -> {
+                    if (isTransaction(name)) {
+                        checkMandate();
+                        inTransaction = false;
+                    } else if (depth == 2) {
+                        group.compare("im Gruppenkopf");
+                    }
+                }
+            }
+        }
+
+        private void totalsOf(String parent, String value, boolean count) {
+            Totals totals = switch (parent) {
+                case "GrpHdr" -> group;
+                case "PmtInf" -> paymentInformation;
+                default -> null;
+            };
+            if (totals == null) {
+                return;
+            }
+            if (count) {
+                totals.declaredCount = value;
+                totals.declaredCountLine = line;
+            } else {
+                totals.declaredSum = parseDecimal(value);
+                totals.declaredSumLine = line;
+            }
+        }
+
+        private void checkRequestedDate(String value, String label) {
+            if (value.length() < 10) {
+                return;
+            }
+            try {
+                LocalDate date = LocalDate.parse(value.substring(0, 10));
+                if (date.isBefore(today)) {
+                    report(ValidationIssue.Severity.ERROR, label + " " + date + " liegt in der Vergangenheit");
+                }
+            } catch (DateTimeParseException e) {
+                // Malformed dates are reported by the XSD validation
+            }
+        }
+
+        private void checkMandate() {
+            String sequenceType = transactionSequenceType != null ? transactionSequenceType : paymentSequenceType;
+            if (mandateId == null || mandateId.isEmpty() || sequenceType == null) {
+                return;
+            }
+            String previous = sequenceTypeByMandate.putIfAbsent(mandateId, sequenceType);
+            if (previous == null) {
+                return;
+            }
+            if (previous.equals(sequenceType) && ("FRST".equals(sequenceType) || "OOFF".equals(sequenceType))) {
+                report(ValidationIssue.Severity.ERROR,
+                        "Mandat " + mandateId + " wird mehrfach mit Sequenz-Typ " + sequenceType + " eingereicht");
+            } else if (!previous.equals(sequenceType)) {
+                report(ValidationIssue.Severity.WARNING, "Mandat " + mandateId
+                        + " wird in derselben Datei mit " + previous + " und " + sequenceType + " eingereicht");
+            }
+        }
+
+        private void report(ValidationIssue.Severity severity, String message) {
+            issues.add(new ValidationIssue(severity, message, currentPath(), line, 0,
+                    inTransaction ? transactionCount : 0));
+        }
+
+        private void report(String message, int reportLine) {
+            issues.add(new ValidationIssue(ValidationIssue.Severity.ERROR, message, currentPath(), reportLine, 0, 0));
+        }
+
+        private String currentPath() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                builder.append('/').append(path[i]);
+            }
+            return builder.toString();
+        }
+
+        private static boolean isTransaction(String name) {
+            return "CdtTrfTxInf".equals(name) || "DrctDbtTxInf".equals(name);
+        }
+
+        private static BigDecimal parseDecimal(String value) {
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String nonEmpty(String value) {
+            return value == null || value.isEmpty() ? "?" : value;
+        }
+
+        /**
+         * Declared and counted transactions and amounts of the group header or a payment information block
+         */
+        private final class Totals {
+            private String id;
+            private String declaredCount;
+            private int declaredCountLine;
+            private BigDecimal declaredSum;
+            private int declaredSumLine;
+            private int count;
+            private BigDecimal sum = BigDecimal.ZERO;
+
+            void reset() {
+                id = null;
+                declaredCount = null;
+                declaredSum = null;
+                count = 0;
+                sum = BigDecimal.ZERO;
+            }
+
+            void add(BigDecimal amount) {
+                sum = sum.add(amount);
+            }
+
+            void compare(String scope) {
+                if (declaredCount != null && !declaredCount.equals(Integer.toString(count))) {
+                    report("NbOfTxs " + scope + " (" + declaredCount + ") stimmt nicht mit der Anzahl der Transaktionen ("
+                            + count + ") überein", declaredCountLine);
+                }
+                if (declaredSum != null && declaredSum.compareTo(sum) != 0) {
+                    report("CtrlSum " + scope + " (" + declaredSum.toPlainString()
+                            + ") stimmt nicht mit der Summe der Beträge (" + sum.toPlainString() + ") überein",
+                            declaredSumLine);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package de.agwu.apps.easysepa.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Validated SEPA XML files stored under the fingerprint of everything they were generated from.
+ * <p>
+ * Entries are written to a temporary file and moved into place, so a reader never sees a partial file
+ * and concurrent runs with the same fingerprint simply overwrite each other with identical content.
+ */
+public final class SepaOutputCache {
+
+    public static final String DEFAULT_DIRECTORY = "config/outputcache";
+    private static final String FILE_EXTENSION = ".xml";
+    private static final Pattern FINGERPRINT_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+
+    public SepaOutputCache() {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    public SepaOutputCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public boolean contains(String fingerprint) {
+        return Files.isRegularFile(entry(fingerprint));
+    }
+
+    /**
+     * Copy the cached XML for a fingerprint to the target file
+     *
+     * @return false if nothing is cached for the fingerprint
+     */
+    public boolean copyTo(String fingerprint, Path target) throws IOException {
+        Path entry = entry(fingerprint);
+        if (!Files.isRegularFile(entry)) {
+            return false;
+        }
+        Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Store a validated XML file under its fingerprint
+     */
+    public void store(String fingerprint, Path xmlFile) throws IOException {
+        Path entry = entry(fingerprint);
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, fingerprint, ".tmp");
+        try {
+            Files.copy(xmlFile, temporary, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Digest of the application's classes and resources, so a new build never reuses files of an older one.
+     * Computed once per process; if the code cannot be read, a random value disables reuse across runs.
+     */
+    public static String codeVersion() {
+        return CodeVersion.VALUE;
+    }
+
+    private Path entry(String fingerprint) {
+        if (fingerprint == null || !FINGERPRINT_PATTERN.matcher(fingerprint).matches()) {
+            throw new IllegalArgumentException("Ungültiger Fingerabdruck: " + fingerprint);
+        }
+        return directory.resolve(fingerprint + FILE_EXTENSION);
+    }
+
+    private static final class CodeVersion {
+        static final String VALUE = compute();
+
+        private static String compute() {
+            try {
+                CodeSource source = SepaOutputCache.class.getProtectionDomain().getCodeSource();
+                if (source == null || source.getLocation() == null) {
+                    return UUID.randomUUID().toString();
+                }
+                Path location = Path.of(source.getLocation().toURI());
+                Fingerprint fingerprint = new Fingerprint();
+                if (!Files.isDirectory(location)) {
+                    return fingerprint.addFile("code", location).toHex();
+                }
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(location)) {
+                    files = walk.filter(Files::isRegularFile).sorted().toList();
+                }
+                for (Path file : files) {
+                    fingerprint.addFile(location.relativize(file).toString().replace('\\', '/'), file);
+                }
+                return fingerprint.toHex();
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                return UUID.randomUUID().toString();
+            }
+        }
+    }
+
+    /**
+     * SHA-256 over named parts; every part is length-prefixed, so different splits of the same bytes differ
+     */
+    public static final class Fingerprint {
+        private final MessageDigest digest;
+
+        public Fingerprint() {
+            digest = newDigest();
+        }
+
+        public Fingerprint add(String name, String value) {
+            part(name.getBytes(StandardCharsets.UTF_8));
+            part(value == null ? new byte[]{0} : ("=" + value).getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        /**
+         * Add a map in key order, so the fingerprint does not depend on iteration order
+         */
+        public Fingerprint add(String name, Map<String, String> values) {
+            Map<String, String> sorted = new TreeMap<>(values);
+            add(name, Integer.toString(sorted.size()));
+            sorted.forEach((key, value) -> add(name + "." + key, value));
+            return this;
+        }
+
+        /**
+         * Add the digest of a file's content
+         */
+        public Fingerprint addFile(String name, Path file) throws IOException {
+            MessageDigest content = newDigest();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    content.update(buffer, 0, read);
+                }
+            }
+            return add(name, HexFormat.of().formatHex(content.digest()));
+        }
+
+        public String toHex() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void part(byte[] bytes) {
+            digest.update((byte) (bytes.length >>> 24));
+            digest.update((byte) (bytes.length >>> 16));
+            digest.update((byte) (bytes.length >>> 8));
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 nicht verfügbar", e);
+            }
+        }
+    }
+}
@@ -1,40 +1,113 @@
 package de.agwu.apps.easysepa.service;
 
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvException;
 import de.agwu.apps.easysepa.model.sepa.SepaField;
+import de.agwu.apps.easysepa.model.sepa.SepaFieldType;
 import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
 import de.agwu.apps.easysepa.model.sepa.TransactionValidationResult;
 import de.agwu.apps.easysepa.model.sepa.definition.ISepaFieldDefinition;
+import de.agwu.apps.easysepa.model.sepa.definition.SepaFieldLayout;
 import de.agwu.apps.easysepa.util.CsvUtil;
+import de.agwu.apps.easysepa.util.DateNormalizer;
+import de.agwu.apps.easysepa.util.FastDecodingReader;
 import de.agwu.apps.easysepa.util.FieldMappingConstants;
+import de.agwu.apps.easysepa.util.GenerationSettings;
+import de.agwu.apps.easysepa.util.ProjectingCsvReader;
+import de.agwu.apps.easysepa.util.SepaCharsetTransliterator;
 import de.agwu.apps.easysepa.util.TemplateValueResolver;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Locale;
+import java.util.Set;
 
 /**
  * Service to build SEPA transactions from CSV data
  */
 public class SepaTransactionBuilder {
 
+    private static final int DEFAULT_VALUE = -1;
+    private static final int MISSING_COLUMN = -2;
+
+    private static final String IBAN_SUFFIX = "IBAN";
+    private static final String BIC_SUFFIX = "BIC";
+
     private final CsvUtil csvUtil;
+    private final BankDirectoryService bankDirectory;
+    private final SepaCharsetTransliterator transliterator;
+    private final boolean truncateToMaxLength;
+    private final GenerationSettings settings;
 
     public SepaTransactionBuilder() {
         this(new CsvUtil());
     }
 
     public SepaTransactionBuilder(CsvUtil csvUtil) {
+        this(csvUtil, new BankDirectoryService());
+    }
+
+    public SepaTransactionBuilder(CsvUtil csvUtil, BankDirectoryService bankDirectory) {
+        this(csvUtil, bankDirectory, SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC), false);
+    }
+
+    /**
+     * @param transliterator replaces characters outside the SEPA character set in text fields
+     * @param truncateToMaxLength cut text fields to their maximum length instead of reporting an error
+     */
+    public SepaTransactionBuilder(CsvUtil csvUtil,
+                                  BankDirectoryService bankDirectory,
+                                  SepaCharsetTransliterator transliterator,
+                                  boolean truncateToMaxLength) {
+        this(csvUtil, bankDirectory, transliterator, truncateToMaxLength, GenerationSettings.live());
+    }
+
+    /**
+     * @param settings clock and seed for the placeholders in default and global values
+     */
+    public SepaTransactionBuilder(CsvUtil csvUtil,
+                                  BankDirectoryService bankDirectory,
+                                  SepaCharsetTransliterator transliterator,
+                                  boolean truncateToMaxLength,
+                                  GenerationSettings settings) {
         this.csvUtil = csvUtil;
+        this.bankDirectory = bankDirectory;
+        this.transliterator = transliterator;
+        this.truncateToMaxLength = truncateToMaxLength;
+        this.settings = settings;
+    }
+
+    /**
+     * Settings of this builder that change the transactions built from the same input:
+     * transliteration profile, truncation and the version of the bank code file used to derive missing BICs
+     *
+     * @see BankDirectoryService#getIndexVersion()
+     */
+    public Map<String, String> getOutputSettings() throws IOException {
+        return Map.of(
+                "transliteration", transliterator.getProfile().name(),
+                "truncate", Boolean.toString(truncateToMaxLength),
+                "bankDirectory", bankDirectory.getIndexVersion());
+    }
+
+    /**
+     * Build and validate SEPA transactions from a CSV file quoted with {@code "}
+     */
+    public TransactionValidationResult buildTransactions(
+            File csvFile,
+            char separator,
+            String encoding,
+            char decimalSeparator,
+            ISepaFieldDefinition fieldDefinition,
+            Map<String, String> globalFieldValues,
+            Map<String, String> columnMappings,
+            Map<String, String> defaultValues) throws IOException {
+        return buildTransactions(csvFile, separator, '"', encoding, decimalSeparator, fieldDefinition,
+                globalFieldValues, columnMappings, defaultValues);
     }
 
     /**
@@ -42,6 +115,7 @@ public class SepaTransactionBuilder {
      *
      * @param csvFile CSV file
      * @param separator CSV separator
+     * @param quoteChar CSV quote character
      * @param encoding CSV encoding
      * @param decimalSeparator Decimal separator used in CSV
      * @param fieldDefinition SEPA field definition
@@ -53,21 +127,20 @@ public class SepaTransactionBuilder {
     public TransactionValidationResult buildTransactions(
             File csvFile,
             char separator,
+            char quoteChar,
             String encoding,
             char decimalSeparator,
             ISepaFieldDefinition fieldDefinition,
             Map<String, String> globalFieldValues,
             Map<String, String> columnMappings,
-            Map<String, String> defaultValues) throws IOException, CsvException {
+            Map<String, String> defaultValues) throws IOException {
 
         TransactionValidationResult result = new TransactionValidationResult();
+        bankDirectory.refresh();
 
         // Read CSV file
-        try (FileInputStream fis = new FileInputStream(csvFile);
-             InputStreamReader isr = new InputStreamReader(fis, Charset.forName(encoding));
-             CSVReader reader = new CSVReaderBuilder(isr)
-                     .withCSVParser(csvUtil.createParser(separator))
-                     .build()) {
+        try (Reader input = FastDecodingReader.open(csvFile.toPath(), Charset.forName(encoding));
+             ProjectingCsvReader reader = new ProjectingCsvReader(input, separator, quoteChar)) {
 
             String[] headers = reader.readNext();
             if (headers == null) {
@@ -75,23 +148,39 @@ public class SepaTransactionBuilder {
             }
 
             Map<String, Integer> headerIndex = buildHeaderIndex(headers);
-            Map<String, Boolean> amountFields = precomputeAmountFields(fieldDefinition);
-            TemplateValueResolver.TemplateBindings defaultBindings = TemplateValueResolver.prepare(defaultValues);
+            SepaFieldLayout layout = fieldDefinition.getLayout();
+            int[] columnIndexBySlot = resolveColumnIndexes(layout, columnMappings, headerIndex);
+            TemplateValueResolver.TemplateBindings defaultBindings = TemplateValueResolver.prepare(defaultValues, settings);
+            // Unmapped columns of wide exports are skipped without creating Strings
+            reader.setProjection(projectedColumns(columnIndexBySlot, defaultBindings, headerIndex));
             Map<String, String> resolvedGlobalValues = TemplateValueResolver
-                    .prepare(globalFieldValues)
+                    .prepare(globalFieldValues, settings)
                     .resolveAll(1, 1);
+            deriveGlobalBics(layout, resolvedGlobalValues);
+            transliterateGlobalFields(layout, resolvedGlobalValues);
+            normalizeGlobalDates(layout, resolvedGlobalValues);
+            String[][] globalFields = collectGlobalFields(layout, resolvedGlobalValues);
+            TransactionRuleEngine rules = TransactionRuleEngine.compile(fieldDefinition);
+            List<String> globalErrors = rules.validateGlobalFields(resolvedGlobalValues);
+            int[] ibanSlotByBicSlot = resolveBicDerivations(layout);
+            DateNormalizer[] dateNormalizers = createDateNormalizers(layout);
 
             String[] row;
             int dataRowNumber = 1;
             int transactionIndex = 1;
             while ((row = reader.readNext()) != null) {
                 SepaTransaction transaction = new SepaTransaction(dataRowNumber);
-                List<String> errors = new ArrayList<>();
+                List<String> errors = new ArrayList<>(globalErrors);
+                String[] currentRow = row;
+                TemplateValueResolver.ColumnValues columns = column -> {
+                    Integer index = headerIndex.get(column);
+                    return index != null && index < currentRow.length ? currentRow[index] : null;
+                };
 
-                addGlobalFields(fieldDefinition, resolvedGlobalValues, transaction);
-                populateTransactionFields(fieldDefinition, columnMappings, decimalSeparator,
-                        headerIndex, row, transaction, errors, amountFields,
-                        defaultBindings, transactionIndex);
+                addGlobalFields(globalFields, transaction);
+                populateTransactionFields(layout, rules, columnIndexBySlot, dateNormalizers, decimalSeparator,
+                        row, columns, transaction, errors, defaultBindings, transactionIndex);
+                deriveTransactionBics(layout, ibanSlotByBicSlot, transaction);
 
                 if (errors.isEmpty()) {
                     result.addValidTransaction(transaction);
@@ -114,59 +203,227 @@ public class SepaTransactionBuilder {
         return headerIndex;
     }
 
-    private Map<String, Boolean> precomputeAmountFields(ISepaFieldDefinition fieldDefinition) {
-        Map<String, Boolean> amountFields = new HashMap<>();
-        for (SepaField field : fieldDefinition.getTransactionFields()) {
-            amountFields.put(field.getFieldName(), field.getFieldName().toLowerCase(Locale.ROOT).contains("amount"));
+    /**
+     * Resolve the CSV column of every transaction slot once per run.
+     * Returns {@link #DEFAULT_VALUE} for slots filled from default values and
+     * {@link #MISSING_COLUMN} for slots mapped to a column that is not in the header.
+     */
+    private int[] resolveColumnIndexes(SepaFieldLayout layout,
+                                       Map<String, String> columnMappings,
+                                       Map<String, Integer> headerIndex) {
+        int[] columnIndexBySlot = new int[layout.getTransactionFieldCount()];
+        for (int slot = 0; slot < columnIndexBySlot.length; slot++) {
+            String mappedColumn = columnMappings.get(layout.getFieldName(slot));
+            if (mappedColumn == null || FieldMappingConstants.FIXED_VALUE_OPTION.equals(mappedColumn)) {
+                columnIndexBySlot[slot] = DEFAULT_VALUE;
+            } else {
+                Integer columnIndex = headerIndex.get(mappedColumn);
+                columnIndexBySlot[slot] = columnIndex != null ? columnIndex : MISSING_COLUMN;
+            }
         }
-        return amountFields;
+        return columnIndexBySlot;
     }
 
-    private void addGlobalFields(ISepaFieldDefinition fieldDefinition,
-                                 Map<String, String> globalFieldValues,
-                                 SepaTransaction transaction) {
-        for (SepaField field : fieldDefinition.getGlobalFields()) {
-            String value = globalFieldValues.get(field.getFieldName());
+    /**
+     * Columns to materialise: the mapped ones and those read by default value templates
+     */
+    private int[] projectedColumns(int[] columnIndexBySlot,
+                                   TemplateValueResolver.TemplateBindings defaultBindings,
+                                   Map<String, Integer> headerIndex) {
+        Set<String> referencedColumns = defaultBindings.getReferencedColumns();
+        int[] columns = Arrays.copyOf(columnIndexBySlot, columnIndexBySlot.length + referencedColumns.size());
+        int position = columnIndexBySlot.length;
+        for (String column : referencedColumns) {
+            columns[position++] = headerIndex.getOrDefault(column, MISSING_COLUMN);
+        }
+        return columns;
+    }
+
+    /**
+     * Pair up global field names and their resolved values once per run
+     */
+    private String[][] collectGlobalFields(SepaFieldLayout layout, Map<String, String> globalFieldValues) {
+        List<String[]> pairs = new ArrayList<>();
+        for (int slot = 0; slot < layout.getGlobalFieldCount(); slot++) {
+            String fieldName = layout.getGlobalField(slot).getFieldName();
+            String value = globalFieldValues.get(fieldName);
             if (value != null) {
-                transaction.setField(field.getFieldName(), value);
+                pairs.add(new String[]{fieldName, value});
             }
         }
+        return pairs.toArray(new String[0][]);
+    }
+
+    private void addGlobalFields(String[][] globalFields, SepaTransaction transaction) {
+        for (String[] field : globalFields) {
+            transaction.setField(field[0], field[1]);
+        }
     }
 
-    private void populateTransactionFields(ISepaFieldDefinition fieldDefinition,
-                                           Map<String, String> columnMappings,
+    private void populateTransactionFields(SepaFieldLayout layout,
+                                           TransactionRuleEngine rules,
+                                           int[] columnIndexBySlot,
+                                           DateNormalizer[] dateNormalizers,
                                            char decimalSeparator,
-                                           Map<String, Integer> headerIndex,
                                            String[] row,
+                                           TemplateValueResolver.ColumnValues columns,
                                            SepaTransaction transaction,
                                            List<String> errors,
-                                           Map<String, Boolean> amountFields,
                                            TemplateValueResolver.TemplateBindings defaultBindings,
                                            int transactionIndex) {
 
-        for (SepaField field : fieldDefinition.getTransactionFields()) {
-            String fieldName = field.getFieldName();
+        for (int slot = 0; slot < columnIndexBySlot.length; slot++) {
+            String fieldName = layout.getFieldName(slot);
             String value = null;
 
-            String mappedColumn = columnMappings.get(fieldName);
-            if (mappedColumn != null && !FieldMappingConstants.FIXED_VALUE_OPTION.equals(mappedColumn)) {
-                Integer columnIndex = headerIndex.get(mappedColumn);
-                if (columnIndex != null && columnIndex < row.length) {
-                    value = row[columnIndex];
-                    if (value != null && Boolean.TRUE.equals(amountFields.get(fieldName))) {
-                        value = csvUtil.normalizeDecimalValue(value, decimalSeparator);
-                    }
+            int columnIndex = columnIndexBySlot[slot];
+            if (columnIndex == DEFAULT_VALUE) {
+                try {
+                    value = defaultBindings.resolveValue(fieldName, transactionIndex, transaction.getRowNumber(), columns);
+                } catch (IllegalArgumentException e) {
+                    errors.add(layout.getTransactionField(slot).getDisplayName() + ": " + e.getMessage());
+                    continue;
+                }
+            } else if (columnIndex >= 0 && columnIndex < row.length) {
+                value = row[columnIndex];
+                if (value != null && layout.getType(slot) == SepaFieldType.AMOUNT) {
+                    value = csvUtil.normalizeDecimalValue(value, decimalSeparator);
                 }
-            } else {
-                value = defaultBindings.resolveValue(fieldName, transactionIndex, transaction.getRowNumber());
             }
 
             if (value != null && !value.trim().isEmpty()) {
+                SepaFieldType type = layout.getType(slot);
+                if (isText(type)) {
+                    value = transliterator.transliterate(value, truncateToMaxLength ? layout.getMaxLength(slot) : 0);
+                } else {
+                    // Typed values must not carry padding from the CSV export
+                    value = value.trim();
+                    if (dateNormalizers[slot] != null) {
+                        value = dateNormalizers[slot].normalize(value);
+                    }
+                }
                 transaction.setField(fieldName, value);
-            } else if (field.isRequired()) {
-                errors.add(field.getDisplayName() + " fehlt");
+                String error = rules.validateTransactionField(slot, value);
+                if (error != null) {
+                    errors.add(error);
+                }
+            } else if (layout.isRequired(slot)) {
+                errors.add(layout.getTransactionField(slot).getDisplayName() + " fehlt");
+            }
+        }
+    }
+
+    /**
+     * Replace characters outside the SEPA character set in the global text fields
+     */
+    private void transliterateGlobalFields(SepaFieldLayout layout, Map<String, String> globalFieldValues) {
+        for (int slot = 0; slot < layout.getGlobalFieldCount(); slot++) {
+            SepaField field = layout.getGlobalField(slot);
+            String value = globalFieldValues.get(field.getFieldName());
+            if (value != null && isText(field.getType())) {
+                globalFieldValues.put(field.getFieldName(),
+                        transliterator.transliterate(value, truncateToMaxLength ? field.getMaxLength() : 0));
+            }
+        }
+    }
+
+    /**
+     * One date normalizer per date slot, so each column keeps its own detected format
+     */
+    private DateNormalizer[] createDateNormalizers(SepaFieldLayout layout) {
+        DateNormalizer[] dateNormalizers = new DateNormalizer[layout.getTransactionFieldCount()];
+        for (int slot = 0; slot < dateNormalizers.length; slot++) {
+            if (layout.getType(slot) == SepaFieldType.DATE) {
+                dateNormalizers[slot] = new DateNormalizer();
+            }
+        }
+        return dateNormalizers;
+    }
+
+    /**
+     * Convert global dates entered as dd.MM.yyyy or yyyyMMdd to ISO format
+     */
+    private void normalizeGlobalDates(SepaFieldLayout layout, Map<String, String> globalFieldValues) {
+        for (int slot = 0; slot < layout.getGlobalFieldCount(); slot++) {
+            SepaField field = layout.getGlobalField(slot);
+            String value = globalFieldValues.get(field.getFieldName());
+            if (value != null && field.getType() == SepaFieldType.DATE) {
+                globalFieldValues.put(field.getFieldName(), new DateNormalizer().normalize(value.trim()));
+            }
+        }
+    }
+
+    /**
+     * Free text that may be transliterated; identifiers must reach the bank exactly as they were
+     * agreed (e.g. the mandate reference) and are rejected instead if they contain other characters
+     */
+    private static boolean isText(SepaFieldType type) {
+        return type == SepaFieldType.TEXT || type == SepaFieldType.REMITTANCE;
+    }
+
+    /**
+     * Pair every BIC slot with the IBAN slot of the same party (e.g. debtorBIC - debtorIBAN).
+     * Returns -1 for slots without an IBAN counterpart.
+     */
+    private int[] resolveBicDerivations(SepaFieldLayout layout) {
+        int[] ibanSlotByBicSlot = new int[layout.getTransactionFieldCount()];
+        for (int slot = 0; slot < ibanSlotByBicSlot.length; slot++) {
+            ibanSlotByBicSlot[slot] = -1;
+            String ibanField = ibanFieldFor(layout.getFieldName(slot), layout.getType(slot));
+            if (ibanField != null) {
+                ibanSlotByBicSlot[slot] = layout.transactionSlotOf(ibanField);
             }
         }
+        return ibanSlotByBicSlot;
     }
 
+    /**
+     * Fill empty BICs of a transaction from the bank directory
+     */
+    private void deriveTransactionBics(SepaFieldLayout layout, int[] ibanSlotByBicSlot, SepaTransaction transaction) {
+        for (int slot = 0; slot < ibanSlotByBicSlot.length; slot++) {
+            int ibanSlot = ibanSlotByBicSlot[slot];
+            if (ibanSlot < 0) {
+                continue;
+            }
+            String bicField = layout.getFieldName(slot);
+            String bic = transaction.getField(bicField);
+            if (bic != null && !bic.trim().isEmpty()) {
+                continue;
+            }
+            String derived = bankDirectory.deriveBic(transaction.getField(layout.getFieldName(ibanSlot)));
+            if (derived != null) {
+                transaction.setField(bicField, derived);
+            }
+        }
+    }
+
+    /**
+     * Fill empty global BICs from the bank directory
+     */
+    private void deriveGlobalBics(SepaFieldLayout layout, Map<String, String> globalFieldValues) {
+        for (int slot = 0; slot < layout.getGlobalFieldCount(); slot++) {
+            SepaField field = layout.getGlobalField(slot);
+            String ibanField = ibanFieldFor(field.getFieldName(), field.getType());
+            if (ibanField == null) {
+                continue;
+            }
+            String bic = globalFieldValues.get(field.getFieldName());
+            if (bic != null && !bic.trim().isEmpty()) {
+                continue;
+            }
+            String iban = globalFieldValues.get(ibanField);
+            String derived = iban != null ? bankDirectory.deriveBic(iban.trim()) : null;
+            if (derived != null) {
+                globalFieldValues.put(field.getFieldName(), derived);
+            }
+        }
+    }
+
+    private static String ibanFieldFor(String fieldName, SepaFieldType type) {
+        if (type != SepaFieldType.BIC || !fieldName.endsWith(BIC_SUFFIX)) {
+            return null;
+        }
+        return fieldName.substring(0, fieldName.length() - BIC_SUFFIX.length()) + IBAN_SUFFIX;
+    }
 }
@@ -2,18 +2,24 @@ package de.agwu.apps.easysepa.service;
 
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
 import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
+import de.agwu.apps.easysepa.util.GenerationSettings;
+import de.agwu.apps.easysepa.util.TemplateValueResolver;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.FileOutputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
@@ -23,34 +29,116 @@ import java.math.RoundingMode;
 public class SepaXmlGenerator {
 
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    // Bump when the generated XML changes for the same input, so cached files are not reused
     private final XmlTemplateEngine templateEngine;
+    private final GenerationSettings settings;
+    private final SepaOutputCache outputCache;
 
     public SepaXmlGenerator() {
         this(new XmlTemplateEngine());
     }
 
     public SepaXmlGenerator(XmlTemplateEngine templateEngine) {
+        this(templateEngine, GenerationSettings.live());
+    }
+
+    /**
+     * @param settings clock for the creation timestamp
+     */
+    public SepaXmlGenerator(XmlTemplateEngine templateEngine, GenerationSettings settings) {
+        this(templateEngine, settings, null);
+    }
+
+    /**
+     * @param outputCache validated files reused in deterministic mode, or null
+     */
+    public SepaXmlGenerator(XmlTemplateEngine templateEngine, GenerationSettings settings, SepaOutputCache outputCache) {
         this.templateEngine = templateEngine;
+        this.settings = settings;
+        this.outputCache = outputCache;
+    }
+
+    /**
+     * Fingerprint of everything the XML for an input file depends on: application build, file content,
+     * mapping, builder settings, format, template, creation time and seed. Empty if the output is not
+     * reproducible, i.e. outside deterministic mode, without a cache, or if a mapping value uses a
+     * {@code {seq:...}} counter.
+     *
+     * @param mappingConfig   CSV settings, column mappings, fixed and global values
+     * @param builderSettings settings of the transaction builder, see {@link SepaTransactionBuilder#getOutputSettings()}
+     */
+    public Optional<String> outputFingerprint(Path inputFile, SepaFormat format, Map<String, String> mappingConfig,
+                                              Map<String, String> builderSettings) throws IOException {
+        if (outputCache == null || !settings.deterministic()
+                || mappingConfig.values().stream().anyMatch(TemplateValueResolver::usesPersistentSequence)) {
+            return Optional.empty();
+        }
+        return Optional.of(new SepaOutputCache.Fingerprint()
+                .add("code", SepaOutputCache.codeVersion())
+                .addFile("input", inputFile)
+                .add("mapping", mappingConfig)
+                .add("builder", builderSettings)
+                .add("format", format.getCode())
+                .add("template", templateEngine.loadTemplate(format.getCode()))
+                .add("time", settings.clock().instant().toString())
+                .add("zone", settings.clock().getZone().getId())
+                .add("seed", Long.toString(settings.seed()))
+                .toHex());
+    }
+
+    public boolean hasCachedXml(String fingerprint) {
+        return outputCache != null && outputCache.contains(fingerprint);
+    }
+
+    /**
+     * Copy a previously generated and validated XML to the output file
+     *
+     * @return false if nothing is cached for the fingerprint
+     */
+    public boolean copyCachedXml(String fingerprint, File outputFile) throws IOException {
+        return outputCache != null && outputCache.copyTo(fingerprint, outputFile.toPath());
+    }
+
+    /**
+     * Remember a generated XML that passed validation
+     */
+    public void cacheXml(String fingerprint, File validatedXml) throws IOException {
+        if (outputCache != null) {
+            outputCache.store(fingerprint, validatedXml.toPath());
+        }
     }
 
     /**
      * Generate SEPA XML file using format-specific templates
      */
     public void generateXml(File outputFile, SepaFormat format, List<SepaTransaction> transactions) throws IOException {
+        try (OutputStream out = new FileOutputStream(outputFile)) {
+            generateXml(out, format, transactions);
+        }
+    }
+
+    /**
+     * Write SEPA XML (UTF-8) to a stream, e.g. for validation without a temporary file.
+     * The stream is flushed but not closed.
+     */
+    public void generateXml(OutputStream out, SepaFormat format, List<SepaTransaction> transactions) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(renderXml(format, transactions));
+        writer.flush();
+    }
+
+    /**
+     * Render SEPA XML using format-specific templates
+     */
+    public String renderXml(SepaFormat format, List<SepaTransaction> transactions) throws IOException {
         // Load template for the format
         String template = templateEngine.loadTemplate(format.getCode());
-        
+
         // Prepare template data
         Map<String, Object> data = prepareTemplateData(format, transactions);
-        
+
         // Render template
-        String xml = templateEngine.render(template, data);
-        
-        // Write to file with UTF-8 encoding
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(outputFile), StandardCharsets.UTF_8)) {
-            writer.write(xml);
-        }
+        return templateEngine.render(template, data);
     }
 
     private Map<String, Object> prepareTemplateData(SepaFormat format, List<SepaTransaction> transactions) {
@@ -64,7 +152,7 @@ public class SepaXmlGenerator {
         
         // Add global fields from first transaction
         data.put("msgId", firstTx.getField("msgId"));
-        data.put("creationDateTime", LocalDateTime.now().format(TIMESTAMP_FORMATTER));
+        data.put("creationDateTime", LocalDateTime.now(settings.clock()).format(TIMESTAMP_FORMATTER));
         data.put("numberOfTransactions", String.valueOf(transactions.size()));
         data.put("controlSum", calculateControlSum(transactions));
         data.put("initiatorName", firstTx.getField("initiatorName"));
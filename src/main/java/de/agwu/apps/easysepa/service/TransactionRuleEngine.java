@@ -0,0 +1,207 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaField;
+import de.agwu.apps.easysepa.model.sepa.SepaFieldType;
+import de.agwu.apps.easysepa.model.sepa.definition.ISepaFieldDefinition;
+import de.agwu.apps.easysepa.model.sepa.definition.SepaFieldLayout;
+import de.agwu.apps.easysepa.util.CreditorReference;
+import de.agwu.apps.easysepa.util.IbanValidator;
+import de.agwu.apps.easysepa.util.SepaCharsetTransliterator;
+import de.agwu.apps.easysepa.util.SepaValueChecks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Business validation rules for the fields of one field definition.
+ * Rules are compiled once per definition; the error messages are prepared up front so a
+ * successful check allocates nothing.
+ */
+public final class TransactionRuleEngine {
+
+    // Identifiers are not transliterated, so they must already use the basic set every bank accepts
+    private static final SepaCharsetTransliterator IDENTIFIER_CHARSET =
+            SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC);
+
+    private final SepaFieldLayout layout;
+    private final FieldRule[] transactionRules;
+    private final FieldRule[] globalRules;
+
+    private TransactionRuleEngine(SepaFieldLayout layout, XsdConstraintTable constraints) {
+        this.layout = layout;
+        this.transactionRules = new FieldRule[layout.getTransactionFieldCount()];
+        for (int slot = 0; slot < transactionRules.length; slot++) {
+            transactionRules[slot] = compileRule(layout.getTransactionField(slot), constraints);
+        }
+        this.globalRules = new FieldRule[layout.getGlobalFieldCount()];
+        for (int slot = 0; slot < globalRules.length; slot++) {
+            globalRules[slot] = compileRule(layout.getGlobalField(slot), constraints);
+        }
+    }
+
+    /**
+     * Compile the rules for a field definition, including the XSD facets of the elements
+     * each field is written to
+     */
+    public static TransactionRuleEngine compile(ISepaFieldDefinition fieldDefinition) {
+        return new TransactionRuleEngine(fieldDefinition.getLayout(),
+                XsdConstraintTable.forFormat(fieldDefinition.getFormat()));
+    }
+
+    public SepaFieldLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Validate a non-empty value of a transaction field
+     *
+     * @return error message, or null if the value is valid
+     */
+    public String validateTransactionField(int slot, String value) {
+        return transactionRules[slot].check(value);
+    }
+
+    /**
+     * Validate the global field values, which are the same for every transaction
+     *
+     * @return error messages (empty if all values are valid)
+     */
+    public List<String> validateGlobalFields(Map<String, String> globalFieldValues) {
+        List<String> errors = new ArrayList<>();
+        for (int slot = 0; slot < globalRules.length; slot++) {
+            String value = globalFieldValues.get(layout.getGlobalField(slot).getFieldName());
+            if (value == null || value.trim().isEmpty()) {
+                continue;
+            }
+            String error = globalRules[slot].check(value);
+            if (error != null) {
+                errors.add(error);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Check of a single value, returns a prepared error message or null
+     */
+    @FunctionalInterface
+    private interface FieldRule {
+        String check(String value);
+    }
+
+    private static FieldRule compileRule(SepaField field, XsdConstraintTable constraints) {
+        String prefix = field.getDisplayName() + ": ";
+        FieldRule typeRule = compileTypeRule(field.getType(), prefix);
+        if (hasXsdCheck(field.getType())) {
+            for (XsdConstraint constraint : constraints.getConstraints(field.getFieldName())) {
+                typeRule = chain(typeRule, compileXsdRule(constraint, prefix));
+            }
+        }
+        FieldRule rule = typeRule;
+        if (field.hasMaxLength()) {
+            int maxLength = field.getMaxLength();
+            String tooLong = prefix + "darf maximal " + maxLength + " Zeichen haben";
+            FieldRule checked = rule;
+            rule = value -> value.length() > maxLength ? tooLong : checked.check(value);
+        }
+        if (field.getType() == SepaFieldType.BIC) {
+            // Checked as the generator writes it, so lower case or surrounding blanks do not reject the row
+            FieldRule bicRule = rule;
+            return value -> bicRule.check(value.trim().toUpperCase(Locale.ROOT));
+        }
+        return rule;
+    }
+
+    /**
+     * Values of these types are written as entered (BICs after trimming and upper-casing, see
+     * {@link #compileRule}); codes, booleans and sequence types are normalized by the generator,
+     * so their raw value is not what ends up in the XML
+     */
+    private static boolean hasXsdCheck(SepaFieldType type) {
+        return switch (type) {
+            case TEXT, IDENTIFIER, REMITTANCE, AMOUNT, DATE, IBAN, CREDITOR_ID, BIC -> true;
+            case BOOLEAN, CODE, SEQUENCE_TYPE -> false;
+        };
+    }
+
+    private static FieldRule chain(FieldRule first, FieldRule second) {
+        return value -> {
+            String error = first.check(value);
+            return error != null ? error : second.check(value);
+        };
+    }
+
+    private static FieldRule compileXsdRule(XsdConstraint constraint, String prefix) {
+        return value -> {
+            XsdConstraint.Violation violation = constraint.check(value);
+            return violation == null ? null : prefix + constraint.describe(violation);
+        };
+    }
+
+    private static FieldRule compileTypeRule(SepaFieldType type, String prefix) {
+        return switch (type) {
+            case IBAN -> {
+                String malformed = prefix + "Ungültiges IBAN-Format";
+                String unknownCountry = prefix + "Ländercode gehört nicht zum SEPA-Raum";
+                String wrongLength = prefix + "IBAN-Länge passt nicht zum Land";
+                String wrongChecksum = prefix + "IBAN-Prüfsumme ist falsch";
+                yield value -> switch (IbanValidator.check(value)) {
+                    case IbanValidator.VALID -> null;
+                    case IbanValidator.UNKNOWN_COUNTRY -> unknownCountry;
+                    case IbanValidator.WRONG_LENGTH -> wrongLength;
+                    case IbanValidator.WRONG_CHECKSUM -> wrongChecksum;
+                    default -> malformed;
+                };
+            }
+            case BIC -> {
+                String invalid = prefix + "Ungültiges BIC-Format";
+                yield value -> SepaValueChecks.isBic(value) ? null : invalid;
+            }
+            case AMOUNT -> {
+                String malformed = prefix + "Ungültiger Betrag (Format: 123.45)";
+                String notPositive = prefix + "Betrag muss größer als 0 sein";
+                String tooLarge = prefix + "Betrag ist zu groß";
+                yield value -> switch (SepaValueChecks.checkAmount(value)) {
+                    case SepaValueChecks.AMOUNT_VALID -> null;
+                    case SepaValueChecks.AMOUNT_NOT_POSITIVE -> notPositive;
+                    case SepaValueChecks.AMOUNT_TOO_LARGE -> tooLarge;
+                    default -> malformed;
+                };
+            }
+            case DATE -> {
+                String invalid = prefix + "Ungültiges Datum (Format: YYYY-MM-DD)";
+                yield value -> SepaValueChecks.isIsoDate(value) ? null : invalid;
+            }
+            case CREDITOR_ID -> {
+                String invalid = prefix + "Ungültige Gläubiger-ID";
+                String wrongChecksum = prefix + "Prüfziffer der Gläubiger-ID ist falsch";
+                yield value -> {
+                    if (!SepaValueChecks.isCreditorIdSyntax(value)) {
+                        return invalid;
+                    }
+                    return SepaValueChecks.isCreditorId(value) ? null : wrongChecksum;
+                };
+            }
+            case SEQUENCE_TYPE -> {
+                String invalid = prefix + "Gültige Werte: FRST, RCUR, OOFF, FNAL";
+                yield value -> SepaValueChecks.isSequenceType(value) ? null : invalid;
+            }
+            case BOOLEAN -> {
+                String invalid = prefix + "Gültige Werte: true, false";
+                yield value -> SepaValueChecks.isBoolean(value) ? null : invalid;
+            }
+            case REMITTANCE -> {
+                String wrongChecksum = prefix + "Prüfziffer der RF-Referenz ist falsch";
+                yield value -> CreditorReference.check(value.strip()) == CreditorReference.WRONG_CHECKSUM
+                        ? wrongChecksum : null;
+            }
+            case IDENTIFIER -> {
+                String invalid = prefix + "enthält unzulässige Zeichen (erlaubt: A-Z a-z 0-9 / - ? : ( ) . , ' + Leerzeichen)";
+                yield value -> IDENTIFIER_CHARSET.isClean(value) ? null : invalid;
+            }
+            case TEXT, CODE -> value -> null;
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package de.agwu.apps.easysepa.service;
+
+/**
+ * A distinct XSD validation problem.
+ * Repeated occurrences of the same problem at the same element are counted instead of listed.
+ */
+public class ValidationIssue {
+
+    /**
+     * Severity as reported by the XML parser
+     */
+    public enum Severity {
+        WARNING("Warnung"),
+        ERROR("Fehler"),
+        FATAL("Fataler Fehler");
+
+        private final String label;
+
+        Severity(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Severity severity;
+    private final String message;
+    private final String path;
+    private final int lineNumber;
+    private final int columnNumber;
+    private final int transactionIndex;
+    private int occurrences = 1;
+
+    public ValidationIssue(Severity severity, String message, String path,
+                           int lineNumber, int columnNumber, int transactionIndex) {
+        this.severity = severity;
+        this.message = message;
+        this.path = path;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.transactionIndex = transactionIndex;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Element path without positions (e.g. /Document/CstmrCdtTrfInitn/PmtInf/CdtTrfTxInf/Amt/InstdAmt),
+     * or null if the source was not parsed with path tracking
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * 1-based index of the transaction in which the first occurrence was found,
+     * or 0 if it was found outside of a transaction
+     */
+    public int getTransactionIndex() {
+        return transactionIndex;
+    }
+
+    /**
+     * How often this problem occurred (only the first occurrence is reported in detail)
+     */
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    void addOccurrence() {
+        occurrences++;
+    }
+
+    void addOccurrences(int count) {
+        occurrences += count;
+    }
+
+    /**
+     * Message for display, with the transaction and the CSV row if known
+     *
+     * @param rowNumber CSV row of the transaction, or 0 if unknown
+     */
+    public String format(int rowNumber) {
+        StringBuilder text = new StringBuilder();
+        text.append(severity.getLabel()).append(": ").append(message);
+        if (transactionIndex > 0) {
+            text.append(" [Transaktion ").append(transactionIndex);
+            if (rowNumber > 0) {
+                text.append(", CSV-Zeile ").append(rowNumber);
+            }
+            text.append(']');
+        } else if (lineNumber > 0) {
+            text.append(" [XML-Zeile ").append(lineNumber).append(']');
+        }
+        if (occurrences > 1) {
+            text.append(" (").append(occurrences).append("x)");
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format(0);
+    }
+}
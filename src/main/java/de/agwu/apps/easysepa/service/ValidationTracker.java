@@ -0,0 +1,204 @@
+package de.agwu.apps.easysepa.service;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sits between the XML parser and the schema validator, tracks the current element path and
+ * transaction, and collects the validator's errors as de-duplicated {@link ValidationIssue}s.
+ * Aborts the parse with {@link ErrorLimitReachedException} once the error limit is reached.
+ */
+class ValidationTracker extends XMLFilterImpl implements ErrorHandler {
+
+    private static final String CREDIT_TRANSFER_TRANSACTION = "CdtTrfTxInf";
+    private static final String DIRECT_DEBIT_TRANSACTION = "DrctDbtTxInf";
+
+    private final int maxErrors;
+    private final boolean trackPath;
+    private final StringBuilder path = new StringBuilder(128);
+    private int[] pathLengths = new int[16];
+    private int depth;
+    private int transactionIndex;
+    private int transactionDepth = -1;
+    private Locator locator;
+
+    // Origin of a fragment within the full document
+    private String rootPath;
+    private int transactionOffset;
+    private int lineOffset;
+    private int[] transactionIndexMap;
+
+    private final List<ValidationIssue> issues = new ArrayList<>();
+    private final Map<String, ValidationIssue> issuesByKey = new HashMap<>();
+    private int errorCount;
+    private boolean fatalErrorReported;
+
+    ValidationTracker(int maxErrors, boolean trackPath) {
+        this.maxErrors = maxErrors;
+        this.trackPath = trackPath;
+    }
+
+    /**
+     * Report positions of a fragment as positions in the full document
+     *
+     * @param rootPath path that replaces the fragment's root element
+     * @param transactionOffset number of transactions before the fragment's first transaction
+     * @param lineOffset number of lines before the fragment's first line
+     */
+    void setFragmentOrigin(String rootPath, int transactionOffset, int lineOffset) {
+        this.rootPath = rootPath;
+        this.transactionOffset = transactionOffset;
+        this.lineOffset = lineOffset;
+    }
+
+    /**
+     * Map the n-th transaction seen by this tracker to its index in the full document
+     */
+    void setTransactionIndexMap(int[] transactionIndexMap) {
+        this.transactionIndexMap = transactionIndexMap;
+    }
+
+    List<ValidationIssue> getIssues() {
+        return issues;
+    }
+
+    int getErrorCount() {
+        return errorCount;
+    }
+
+    boolean isFatalErrorReported() {
+        return fatalErrorReported;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        if (depth == pathLengths.length) {
+            pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+        }
+        pathLengths[depth] = path.length();
+        if (depth == 0 && rootPath != null) {
+            path.append(rootPath);
+        } else {
+            path.append('/').append(localName);
+        }
+        depth++;
+        if (transactionDepth < 0
+                && (CREDIT_TRANSFER_TRANSACTION.equals(localName) || DIRECT_DEBIT_TRANSACTION.equals(localName))) {
+            transactionIndex++;
+            transactionDepth = depth;
+        }
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        super.endElement(uri, localName, qName);
+        if (depth == transactionDepth) {
+            transactionDepth = -1;
+        }
+        path.setLength(pathLengths[--depth]);
+    }
+
+    @Override
+    public void warning(SAXParseException exception) throws SAXException {
+        record(ValidationIssue.Severity.WARNING, exception);
+    }
+
+    @Override
+    public void error(SAXParseException exception) throws SAXException {
+        record(ValidationIssue.Severity.ERROR, exception);
+    }
+
+    @Override
+    public void fatalError(SAXParseException exception) throws SAXException {
+        fatalErrorReported = true;
+        record(ValidationIssue.Severity.FATAL, exception);
+    }
+
+    private void record(ValidationIssue.Severity severity, SAXParseException exception) throws SAXException {
+        String message = exception.getMessage();
+        String currentPath = trackPath ? path.toString() : null;
+        String key = issueKey(severity, currentPath, message);
+
+        ValidationIssue issue = issuesByKey.get(key);
+        if (issue != null) {
+            issue.addOccurrence();
+        } else {
+            int line = exception.getLineNumber() > 0 || locator == null ? exception.getLineNumber() : locator.getLineNumber();
+            int column = exception.getColumnNumber() > 0 || locator == null ? exception.getColumnNumber() : locator.getColumnNumber();
+            issue = new ValidationIssue(severity, message, currentPath, line > 0 ? line + lineOffset : line, column,
+                    transactionDepth >= 0 ? documentTransactionIndex() : 0);
+            issuesByKey.put(key, issue);
+            issues.add(issue);
+        }
+
+        if (severity != ValidationIssue.Severity.WARNING && ++errorCount >= maxErrors) {
+            throw new ErrorLimitReachedException(maxErrors);
+        }
+    }
+
+    private int documentTransactionIndex() {
+        if (transactionIndexMap != null) {
+            return transactionIndex <= transactionIndexMap.length ? transactionIndexMap[transactionIndex - 1] : 0;
+        }
+        return transactionOffset + transactionIndex;
+    }
+
+    /**
+     * Key under which occurrences of the same problem are merged
+     */
+    static String issueKey(ValidationIssue.Severity severity, String path, String message) {
+        return severity.ordinal() + "|" + path + "|" + maskValues(message);
+    }
+
+    /**
+     * Replace quoted values in a parser message, so the same problem with different values
+     * (e.g. every invalid IBAN) is reported once
+     */
+    static String maskValues(String message) {
+        if (message == null || message.indexOf('\'') < 0) {
+            return message;
+        }
+        StringBuilder masked = new StringBuilder(message.length());
+        boolean quoted = false;
+        for (int i = 0; i < message.length(); i++) {
+            char ch = message.charAt(i);
+            if (ch == '\'') {
+                if (!quoted) {
+                    masked.append("'*'");
+                }
+                quoted = !quoted;
+            } else if (!quoted) {
+                masked.append(ch);
+            }
+        }
+        return masked.toString();
+    }
+
+    /**
+     * Thrown to stop parsing once the error limit is reached
+     */
+    static final class ErrorLimitReachedException extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        ErrorLimitReachedException(int maxErrors) {
+            super("Fehlerlimit erreicht: " + maxErrors);
+        }
+    }
+}
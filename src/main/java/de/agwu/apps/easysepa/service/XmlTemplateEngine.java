@@ -8,8 +8,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -23,6 +26,21 @@ public class XmlTemplateEngine {
     private static final Pattern SECTION_START_PATTERN = Pattern.compile("\\{\\{#([^}]+)\\}\\}");
     private static final Pattern SECTION_END_PATTERN = Pattern.compile("\\{\\{/([^}]+)\\}\\}");
     private static final Pattern INVERTED_SECTION_PATTERN = Pattern.compile("\\{\\{\\^([^}]+)\\}\\}");
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\{\\{[#^/]?([^}]+)\\}\\}");
+
+    private final RenderedFragmentCache fragmentCache;
+    private final Map<String, SectionKey> sectionKeys = new ConcurrentHashMap<>();
+
+    public XmlTemplateEngine() {
+        this(null);
+    }
+
+    /**
+     * @param fragmentCache rendered list items (e.g. {@code DrctDbtTxInf}) reused across runs, or null
+     */
+    public XmlTemplateEngine(RenderedFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
 
     /**
      * Load template from resources
@@ -44,7 +62,15 @@ public class XmlTemplateEngine {
      * Render template with data
      */
     public String render(String template, Map<String, Object> data) {
-        return renderWithData(template, data);
+        String result = renderWithData(template, data);
+        if (fragmentCache != null) {
+            try {
+                fragmentCache.save();
+            } catch (IOException e) {
+                // The new fragments are rendered again next time
+            }
+        }
+        return result;
     }
 
     private String renderWithData(String template, Map<String, Object> data) {
@@ -111,10 +137,7 @@ public class XmlTemplateEngine {
                     @SuppressWarnings("unchecked")
                     List<Map<String, Object>> list = (List<Map<String, Object>>) value;
                     for (Map<String, Object> item : list) {
-                        // Merge parent data with item data
-                        Map<String, Object> mergedData = new HashMap<>(data);
-                        mergedData.putAll(item);
-                        result.append(renderWithData(sectionContent, mergedData));
+                        result.append(renderItem(sectionContent, data, item));
                     }
                 } else if (value != null && !value.equals(false) && 
                            !(value instanceof String && ((String) value).isEmpty())) {
@@ -130,6 +153,60 @@ public class XmlTemplateEngine {
         return result.toString();
     }
 
+    /**
+     * Render one list item, or take it from the fragment cache if the same section was rendered
+     * with the same values before
+     */
+    private String renderItem(String sectionContent, Map<String, Object> data, Map<String, Object> item) {
+        String key = fragmentCache != null ? fragmentKey(sectionContent, data, item) : null;
+        if (key != null) {
+            String cached = fragmentCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Merge parent data with item data
+        Map<String, Object> mergedData = new HashMap<>(data);
+        mergedData.putAll(item);
+        String fragment = renderWithData(sectionContent, mergedData);
+        if (key != null) {
+            fragmentCache.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Digest of the section and every value it reads, or null if a value is not a plain string
+     */
+    private String fragmentKey(String sectionContent, Map<String, Object> data, Map<String, Object> item) {
+        SectionKey section = sectionKeys.computeIfAbsent(sectionContent, SectionKey::of);
+        SepaOutputCache.Fingerprint fingerprint = new SepaOutputCache.Fingerprint().add("section", section.digest());
+        for (String name : section.variables()) {
+            Object value = item.containsKey(name) ? item.get(name) : data.get(name);
+            if (value != null && !(value instanceof String)) {
+                return null;
+            }
+            fingerprint.add(name, (String) value);
+        }
+        return fingerprint.toHex();
+    }
+
+    /**
+     * Digest and referenced variable names of a section, computed once per template
+     */
+    private record SectionKey(String digest, List<String> variables) {
+        static SectionKey of(String sectionContent) {
+            Set<String> variables = new LinkedHashSet<>();
+            Matcher matcher = TAG_PATTERN.matcher(sectionContent);
+            while (matcher.find()) {
+                variables.add(matcher.group(1));
+            }
+            String digest = new SepaOutputCache.Fingerprint().add("content", sectionContent).toHex();
+            return new SectionKey(digest, List.copyOf(variables));
+        }
+    }
+
     private int findNextSection(String template, int fromIndex) {
         int normalSection = template.indexOf("{{#", fromIndex);
         int invertedSection = template.indexOf("{{^", fromIndex);
@@ -0,0 +1,198 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.util.SepaValueChecks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Facets of one XSD simple type (length, pattern, enumeration, digits), checked directly on a value.
+ * A check covers what the schema validator would report for the element content, without parsing XML.
+ */
+public final class XsdConstraint {
+
+    /**
+     * Reason a value does not satisfy the constraint
+     */
+    public enum Violation {
+        MALFORMED,
+        TOO_SHORT,
+        TOO_LONG,
+        PATTERN,
+        ENUMERATION,
+        TOTAL_DIGITS,
+        FRACTION_DIGITS,
+        MIN_INCLUSIVE
+    }
+
+    /**
+     * Built-in XSD type a simple type is derived from
+     */
+    public enum BaseType {
+        STRING,
+        DECIMAL,
+        DATE,
+        BOOLEAN,
+        OTHER
+    }
+
+    private final String typeName;
+    private final BaseType baseType;
+    private final int minLength;
+    private final int maxLength;
+    private final Pattern[] patterns;
+    private final String[] enumeration;
+    private final int totalDigits;
+    private final int fractionDigits;
+    private final BigDecimal minInclusive;
+
+    XsdConstraint(String typeName, BaseType baseType, int minLength, int maxLength, List<Pattern> patterns,
+                  List<String> enumeration, int totalDigits, int fractionDigits, BigDecimal minInclusive) {
+        this.typeName = typeName;
+        this.baseType = baseType;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.patterns = patterns.toArray(new Pattern[0]);
+        this.enumeration = enumeration.toArray(new String[0]);
+        this.totalDigits = totalDigits;
+        this.fractionDigits = fractionDigits;
+        this.minInclusive = minInclusive;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public BaseType getBaseType() {
+        return baseType;
+    }
+
+    /**
+     * Maximum length in characters, or -1 if unrestricted
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Check a value as it will be written into the element
+     *
+     * @return the violation, or null if the value is valid
+     */
+    public Violation check(String value) {
+        Violation violation = switch (baseType) {
+            case DECIMAL -> checkDecimal(value);
+            case DATE -> SepaValueChecks.isIsoDate(value) ? null : Violation.MALFORMED;
+            case BOOLEAN -> isXsdBoolean(value) ? null : Violation.MALFORMED;
+            case STRING, OTHER -> null;
+        };
+        if (violation != null) {
+            return violation;
+        }
+
+        int length = value.length();
+        if (maxLength >= 0 && length > maxLength && value.codePointCount(0, length) > maxLength) {
+            return Violation.TOO_LONG;
+        }
+        if (minLength > 0 && (length < minLength || value.codePointCount(0, length) < minLength)) {
+            return Violation.TOO_SHORT;
+        }
+        for (Pattern pattern : patterns) {
+            if (!pattern.matcher(value).matches()) {
+                return Violation.PATTERN;
+            }
+        }
+        if (enumeration.length > 0 && !isEnumerated(value)) {
+            return Violation.ENUMERATION;
+        }
+        return null;
+    }
+
+    /**
+     * German description of a violation, to be prefixed with the field name
+     */
+    public String describe(Violation violation) {
+        return switch (violation) {
+            case MALFORMED -> "ist laut XSD kein gültiger Wert (" + typeName + ")";
+            case TOO_SHORT -> minLength == 1
+                    ? "darf laut XSD nicht leer sein"
+                    : "muss laut XSD mindestens " + minLength + " Zeichen haben";
+            case TOO_LONG -> "darf laut XSD maximal " + maxLength + " Zeichen haben";
+            case PATTERN -> "entspricht nicht dem XSD-Muster " + patterns[0].pattern();
+            case ENUMERATION -> "Gültige Werte laut XSD: " + String.join(", ", enumeration);
+            case TOTAL_DIGITS -> "darf laut XSD maximal " + totalDigits + " Stellen haben";
+            case FRACTION_DIGITS -> "darf laut XSD maximal " + fractionDigits + " Nachkommastellen haben";
+            case MIN_INCLUSIVE -> "darf laut XSD nicht kleiner als " + minInclusive.toPlainString() + " sein";
+        };
+    }
+
+    private Violation checkDecimal(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        int integerStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        int integerEnd = i;
+        int fractionStart = i;
+        int fractionEnd = i;
+        if (i < length && value.charAt(i) == '.') {
+            fractionStart = ++i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            fractionEnd = i;
+        }
+        if (i != length || (integerEnd == integerStart && fractionEnd == fractionStart)) {
+            return Violation.MALFORMED;
+        }
+
+        // Leading and trailing zeros are not significant for the digit facets
+        while (integerStart < integerEnd && value.charAt(integerStart) == '0') {
+            integerStart++;
+        }
+        while (fractionEnd > fractionStart && value.charAt(fractionEnd - 1) == '0') {
+            fractionEnd--;
+        }
+        int integerDigits = integerEnd - integerStart;
+        int decimals = fractionEnd - fractionStart;
+        if (fractionDigits >= 0 && decimals > fractionDigits) {
+            return Violation.FRACTION_DIGITS;
+        }
+        if (totalDigits >= 0 && integerDigits + decimals > totalDigits) {
+            return Violation.TOTAL_DIGITS;
+        }
+        if (minInclusive != null) {
+            boolean belowMinimum = minInclusive.signum() == 0
+                    ? negative && integerDigits + decimals > 0
+                    : new BigDecimal(value).compareTo(minInclusive) < 0;
+            if (belowMinimum) {
+                return Violation.MIN_INCLUSIVE;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEnumerated(String value) {
+        for (String allowed : enumeration) {
+            if (allowed.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isXsdBoolean(String value) {
+        return value.equals("true") || value.equals("false") || value.equals("1") || value.equals("0");
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
@@ -0,0 +1,336 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * XSD facets per template variable of a SEPA format.
+ * The template of the format is walked along the element types of its XSD, so every
+ * {@code {{variable}}} that is the content of an element is linked to the facets of that element's type.
+ * Tables are built once per format and let rows be rejected before anything is rendered.
+ */
+public final class XsdConstraintTable {
+
+    private static final XsdConstraintTable EMPTY = new XsdConstraintTable(Map.of());
+    private static final Map<SepaFormat, XsdConstraintTable> TABLES = new ConcurrentHashMap<>();
+
+    private final Map<String, List<XsdConstraint>> constraintsByVariable;
+
+    private XsdConstraintTable(Map<String, List<XsdConstraint>> constraintsByVariable) {
+        this.constraintsByVariable = constraintsByVariable;
+    }
+
+    /**
+     * Constraint table of a format, empty if no XSD or template is shipped for it
+     */
+    public static XsdConstraintTable forFormat(SepaFormat format) {
+        return TABLES.computeIfAbsent(format, XsdConstraintTable::load);
+    }
+
+    /**
+     * Constraints of the elements a template variable is written to (usually one)
+     */
+    public List<XsdConstraint> getConstraints(String variable) {
+        return constraintsByVariable.getOrDefault(variable, List.of());
+    }
+
+    public Set<String> getVariables() {
+        return constraintsByVariable.keySet();
+    }
+
+    private static XsdConstraintTable load(SepaFormat format) {
+        String xsdPath = XsdSchemaCache.getXsdPath(format);
+        String template;
+        try {
+            template = new XmlTemplateEngine().loadTemplate(format.getCode());
+        } catch (IOException e) {
+            return EMPTY;
+        }
+
+        try (InputStream xsd = XsdConstraintTable.class.getResourceAsStream(xsdPath)) {
+            if (xsd == null) {
+                return EMPTY;
+            }
+            SchemaTypes types = SchemaTypes.parse(xsd);
+            return new XsdConstraintTable(linkTemplateVariables(new StringReader(template), types));
+        } catch (IOException | XMLStreamException e) {
+            throw new IllegalStateException("XSD-Einschränkungen konnten nicht gelesen werden: " + xsdPath, e);
+        }
+    }
+
+    /**
+     * Follow the element path of every variable in the template through the schema types
+     */
+    private static Map<String, List<XsdConstraint>> linkTemplateVariables(Reader template, SchemaTypes types)
+            throws XMLStreamException {
+        Map<String, List<XsdConstraint>> constraints = new LinkedHashMap<>();
+        XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(template);
+        try {
+            // Type of each open element; empty once the path leaves the known types
+            Deque<String> typeStack = new ArrayDeque<>();
+            StringBuilder text = new StringBuilder();
+            boolean leaf = false;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        String parentType = typeStack.isEmpty() ? null : typeStack.peek();
+                        String type = typeStack.isEmpty()
+                                ? types.globalElements.get(reader.getLocalName())
+                                : types.childType(parentType, reader.getLocalName());
+                        typeStack.push(type == null ? "" : type);
+                        text.setLength(0);
+                        leaf = true;
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> text.append(reader.getText());
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        String type = typeStack.pop();
+                        String variable = leaf ? variableName(text.toString().strip()) : null;
+                        if (variable != null && !type.isEmpty()) {
+                            XsdConstraint constraint = types.constraint(type);
+                            if (constraint != null) {
+                                List<XsdConstraint> list = constraints.computeIfAbsent(variable, key -> new ArrayList<>(1));
+                                if (!list.contains(constraint)) {
+                                    list.add(constraint);
+                                }
+                            }
+                        }
+                        text.setLength(0);
+                        leaf = false;
+                    }
+                    default -> {
+                        // Comments, processing instructions and the like carry no variables
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        constraints.replaceAll((variable, list) -> List.copyOf(list));
+        return Map.copyOf(constraints);
+    }
+
+    /**
+     * Name of a plain variable tag ({@code {{name}}}), null for section tags and other content
+     */
+    private static String variableName(String content) {
+        if (content.length() < 5 || !content.startsWith("{{") || !content.endsWith("}}")) {
+            return null;
+        }
+        String name = content.substring(2, content.length() - 2).strip();
+        if (name.isEmpty() || "#^/".indexOf(name.charAt(0)) >= 0 || name.contains("{") || name.contains("}")) {
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * Named types and global elements of an XSD
+     */
+    private static final class SchemaTypes {
+
+        private final Map<String, String> globalElements = new HashMap<>();
+        private final Map<String, Map<String, String>> complexTypes = new HashMap<>();
+        // Complex types with simple content: type name -> simple base type
+        private final Map<String, String> simpleContentBases = new HashMap<>();
+        private final Map<String, SimpleTypeDefinition> simpleTypes = new HashMap<>();
+        private final Map<String, XsdConstraint> constraints = new HashMap<>();
+
+        static SchemaTypes parse(InputStream xsd) throws XMLStreamException {
+            SchemaTypes types = new SchemaTypes();
+            XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(xsd);
+            try {
+                int depth = 0;
+                String complexType = null;
+                SimpleTypeDefinition simpleType = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        if (depth == 1) {
+                            complexType = null;
+                            simpleType = null;
+                        }
+                        continue;
+                    }
+                    if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    depth++;
+                    String name = reader.getAttributeValue(null, "name");
+                    switch (reader.getLocalName()) {
+                        case "element" -> {
+                            String type = typeName(reader, reader.getAttributeValue(null, "type"));
+                            if (name == null || type == null) {
+                                break;
+                            }
+                            if (depth == 2) {
+                                types.globalElements.put(name, type);
+                            } else if (complexType != null) {
+                                types.complexTypes.get(complexType).put(name, type);
+                            }
+                        }
+                        case "complexType" -> {
+                            if (depth == 2 && name != null) {
+                                complexType = name;
+                                types.complexTypes.put(name, new HashMap<>());
+                            }
+                        }
+                        case "extension" -> {
+                            if (complexType != null) {
+                                types.simpleContentBases.put(complexType,
+                                        typeName(reader, reader.getAttributeValue(null, "base")));
+                            }
+                        }
+                        case "simpleType" -> {
+                            if (depth == 2 && name != null) {
+                                simpleType = new SimpleTypeDefinition();
+                                types.simpleTypes.put(name, simpleType);
+                            }
+                        }
+                        case "restriction" -> {
+                            if (simpleType != null) {
+                                simpleType.base = typeName(reader, reader.getAttributeValue(null, "base"));
+                            }
+                        }
+                        default -> {
+                            if (simpleType != null) {
+                                simpleType.addFacet(reader.getLocalName(), reader.getAttributeValue(null, "value"));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return types;
+        }
+
+        String childType(String parentType, String element) {
+            Map<String, String> children = complexTypes.get(parentType);
+            return children == null ? null : children.get(element);
+        }
+
+        /**
+         * Constraint for the content of an element of a type, null for types without simple content
+         */
+        XsdConstraint constraint(String type) {
+            String simpleTypeName = simpleContentBases.getOrDefault(type, type);
+            if (complexTypes.containsKey(simpleTypeName)) {
+                return null;
+            }
+            return constraints.computeIfAbsent(simpleTypeName, this::buildConstraint);
+        }
+
+        private XsdConstraint buildConstraint(String typeName) {
+            int minLength = -1;
+            int maxLength = -1;
+            int totalDigits = -1;
+            int fractionDigits = -1;
+            BigDecimal minInclusive = null;
+            List<Pattern> patterns = new ArrayList<>();
+            List<String> enumeration = null;
+
+            // Walk up the restriction chain; facets of derived types take precedence, patterns all apply
+            String current = typeName;
+            SimpleTypeDefinition definition;
+            while ((definition = simpleTypes.get(current)) != null) {
+                minLength = minLength < 0 ? definition.minLength : minLength;
+                maxLength = maxLength < 0 ? definition.maxLength : maxLength;
+                totalDigits = totalDigits < 0 ? definition.totalDigits : totalDigits;
+                fractionDigits = fractionDigits < 0 ? definition.fractionDigits : fractionDigits;
+                minInclusive = minInclusive == null ? definition.minInclusive : minInclusive;
+                patterns.addAll(definition.patterns);
+                if (enumeration == null && !definition.enumeration.isEmpty()) {
+                    enumeration = definition.enumeration;
+                }
+                current = definition.base;
+            }
+            return new XsdConstraint(typeName, baseType(current), Math.max(minLength, 0), maxLength, patterns,
+                    enumeration == null ? List.of() : enumeration, totalDigits, fractionDigits, minInclusive);
+        }
+
+        private static XsdConstraint.BaseType baseType(String builtInType) {
+            if (builtInType == null || !builtInType.startsWith("xs:")) {
+                return XsdConstraint.BaseType.OTHER;
+            }
+            return switch (builtInType.substring(3)) {
+                case "string", "normalizedString", "token" -> XsdConstraint.BaseType.STRING;
+                case "decimal" -> XsdConstraint.BaseType.DECIMAL;
+                case "date" -> XsdConstraint.BaseType.DATE;
+                case "boolean" -> XsdConstraint.BaseType.BOOLEAN;
+                default -> XsdConstraint.BaseType.OTHER;
+            };
+        }
+
+        /**
+         * Local name of a referenced type; built-in types are returned as {@code xs:name}
+         */
+        private static String typeName(XMLStreamReader reader, String qualifiedName) {
+            if (qualifiedName == null) {
+                return null;
+            }
+            int colon = qualifiedName.indexOf(':');
+            String prefix = colon < 0 ? XMLConstants.DEFAULT_NS_PREFIX : qualifiedName.substring(0, colon);
+            String localName = qualifiedName.substring(colon + 1);
+            String namespace = reader.getNamespaceContext().getNamespaceURI(prefix);
+            return XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(namespace) ? "xs:" + localName : localName;
+        }
+    }
+
+    /**
+     * Facets declared directly on one named simple type
+     */
+    private static final class SimpleTypeDefinition {
+
+        private String base;
+        private int minLength = -1;
+        private int maxLength = -1;
+        private int totalDigits = -1;
+        private int fractionDigits = -1;
+        private BigDecimal minInclusive;
+        private final List<Pattern> patterns = new ArrayList<>(1);
+        private final List<String> enumeration = new ArrayList<>();
+
+        void addFacet(String facet, String value) {
+            if (value == null) {
+                return;
+            }
+            switch (facet) {
+                case "minLength" -> minLength = Integer.parseInt(value);
+                case "maxLength" -> maxLength = Integer.parseInt(value);
+                case "length" -> {
+                    minLength = Integer.parseInt(value);
+                    maxLength = minLength;
+                }
+                case "totalDigits" -> totalDigits = Integer.parseInt(value);
+                case "fractionDigits" -> fractionDigits = Integer.parseInt(value);
+                case "minInclusive" -> minInclusive = new BigDecimal(value);
+                case "pattern" -> patterns.add(Pattern.compile(value));
+                case "enumeration" -> enumeration.add(value);
+                default -> {
+                    // Facets without a pre-render check (whiteSpace, maxInclusive, ...) are left to the XSD validation
+                }
+            }
+        }
+    }
+}
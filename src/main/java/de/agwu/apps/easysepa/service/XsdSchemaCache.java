@@ -0,0 +1,214 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.model.sepa.SepaFormatType;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled XSD schemas per SEPA format.
+ * A {@link Schema} is immutable and thread-safe, so each schema is compiled once per process;
+ * validators and validator handlers are not thread-safe and are kept per thread instead.
+ */
+public final class XsdSchemaCache {
+
+    private static final String XSD_PATH = "/de/agwu/apps/easysepa/xsd/";
+
+    /** Root element of the derived schema for batches of transaction fragments */
+    public static final String TRANSACTION_BATCH_ELEMENT = "EasySepaTxBatch";
+
+    private static final Map<SepaFormat, Schema> SCHEMAS = new ConcurrentHashMap<>();
+    private static final Map<SepaFormat, Schema> TRANSACTION_BATCH_SCHEMAS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<SepaFormat, Validator>> VALIDATORS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(SepaFormat.class));
+    private static final ThreadLocal<Map<Schema, ValidatorHandler>> VALIDATOR_HANDLERS =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private XsdSchemaCache() {
+        // Utility class
+    }
+
+    /**
+     * Resource path of the XSD of a format
+     */
+    public static String getXsdPath(SepaFormat format) {
+        return XSD_PATH + format.getCode() + ".xsd";
+    }
+
+    /**
+     * Compiled schema of a format
+     *
+     * @return the schema, or null if no XSD is shipped for the format
+     */
+    public static Schema getSchema(SepaFormat format) throws SAXException {
+        Schema schema = SCHEMAS.get(format);
+        if (schema != null) {
+            return schema;
+        }
+        synchronized (SCHEMAS) {
+            schema = SCHEMAS.get(format);
+            if (schema == null) {
+                schema = compile(format);
+                if (schema != null) {
+                    SCHEMAS.put(format, schema);
+                }
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Schema for validating transaction fragments (CdtTrfTxInf / DrctDbtTxInf) on their own.
+     * Derived from the shipped XSD: it includes the XSD and adds a global element
+     * {@link #TRANSACTION_BATCH_ELEMENT} holding any number of transactions of the XSD's transaction type.
+     *
+     * @return the schema, or null if no XSD is shipped for the format
+     */
+    public static Schema getTransactionBatchSchema(SepaFormat format) throws SAXException {
+        Schema schema = TRANSACTION_BATCH_SCHEMAS.get(format);
+        if (schema != null) {
+            return schema;
+        }
+        synchronized (TRANSACTION_BATCH_SCHEMAS) {
+            schema = TRANSACTION_BATCH_SCHEMAS.get(format);
+            if (schema == null) {
+                schema = compileTransactionBatchSchema(format);
+                if (schema != null) {
+                    TRANSACTION_BATCH_SCHEMAS.put(format, schema);
+                }
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Element name of a single transaction in a format
+     */
+    public static String getTransactionElement(SepaFormat format) {
+        return format.getType() == SepaFormatType.DIRECT_DEBIT ? "DrctDbtTxInf" : "CdtTrfTxInf";
+    }
+
+    /**
+     * Validator of the calling thread for a format, reset and ready for use
+     *
+     * @return the validator, or null if no XSD is shipped for the format
+     */
+    public static Validator getValidator(SepaFormat format) throws SAXException {
+        Map<SepaFormat, Validator> validators = VALIDATORS.get();
+        Validator validator = validators.get(format);
+        if (validator == null) {
+            Schema schema = getSchema(format);
+            if (schema == null) {
+                return null;
+            }
+            validator = schema.newValidator();
+            validators.put(format, validator);
+        } else {
+            validator.reset();
+        }
+        return validator;
+    }
+
+    /**
+     * Validator handler of the calling thread for a schema; a handler resets itself at the start of each document
+     */
+    public static ValidatorHandler getValidatorHandler(Schema schema) {
+        return VALIDATOR_HANDLERS.get().computeIfAbsent(schema, Schema::newValidatorHandler);
+    }
+
+    /**
+     * Compile all schemas and their constraint tables on a background thread,
+     * so the first import or validation does not wait for it
+     */
+    public static Thread prewarmAsync() {
+        return Thread.ofPlatform()
+                .name("xsd-schema-prewarm")
+                .daemon(true)
+                .start(() -> {
+                    for (SepaFormat format : SepaFormat.values()) {
+                        try {
+                            getSchema(format);
+                            XsdConstraintTable.forFormat(format);
+                        } catch (SAXException | IllegalStateException e) {
+                            // Reported again on first use
+                        }
+                    }
+                });
+    }
+
+    private static Schema compileTransactionBatchSchema(SepaFormat format) throws SAXException {
+        URL xsd = XsdSchemaCache.class.getResource(getXsdPath(format));
+        if (xsd == null) {
+            return null;
+        }
+
+        String transactionElement = getTransactionElement(format);
+        String targetNamespace = null;
+        String transactionType = null;
+        try (InputStream in = xsd.openStream()) {
+            XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext() && transactionType == null) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("schema".equals(reader.getLocalName())) {
+                        targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+                    } else if ("element".equals(reader.getLocalName())
+                            && transactionElement.equals(reader.getAttributeValue(null, "name"))) {
+                        transactionType = reader.getAttributeValue(null, "type");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new SAXException("XSD konnte nicht gelesen werden: " + getXsdPath(format), e);
+        }
+        if (targetNamespace == null || transactionType == null) {
+            throw new SAXException("Transaktionstyp nicht im XSD gefunden: " + getXsdPath(format));
+        }
+        String localType = transactionType.substring(transactionType.indexOf(':') + 1);
+
+        String wrapper = "<xs:schema xmlns:xs=\"" + XMLConstants.W3C_XML_SCHEMA_NS_URI + "\""
+                + " xmlns=\"" + targetNamespace + "\" targetNamespace=\"" + targetNamespace + "\""
+                + " elementFormDefault=\"qualified\">"
+                + "<xs:include schemaLocation=\"" + xsd.toExternalForm() + "\"/>"
+                + "<xs:element name=\"" + TRANSACTION_BATCH_ELEMENT + "\"><xs:complexType><xs:sequence>"
+                + "<xs:element name=\"" + transactionElement + "\" type=\"" + localType + "\" maxOccurs=\"unbounded\"/>"
+                + "</xs:sequence></xs:complexType></xs:element>"
+                + "</xs:schema>";
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        // The wrapper needs a system id of its own, otherwise the include is taken for a self-reference
+        String wrapperSystemId = xsd.toExternalForm().replace(".xsd", "-transactions.xsd");
+        return schemaFactory.newSchema(new StreamSource(new StringReader(wrapper), wrapperSystemId));
+    }
+
+    private static Schema compile(SepaFormat format) throws SAXException {
+        URL xsd = XsdSchemaCache.class.getResource(getXsdPath(format));
+        if (xsd == null) {
+            return null;
+        }
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        return schemaFactory.newSchema(new StreamSource(xsd.toExternalForm()));
+    }
+}
@@ -1,24 +1,83 @@
 package de.agwu.apps.easysepa.service;
 
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
- * Service for validating SEPA XML files against XSD schemas
+ * Service for validating SEPA XML files against XSD schemas.
+ * Schemas are compiled once and shared via {@link XsdSchemaCache}.
  */
 public class XsdValidationService {
 
+    /** Default number of errors after which validation stops */
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    private static final ThreadLocal<XMLReader> XML_READERS = ThreadLocal.withInitial(() -> {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            // Input may come from untrusted sources; SEPA documents never carry a DOCTYPE
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setXIncludeAware(false);
+            return factory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("XML Parser nicht verfügbar", e);
+        }
+    });
+
+    private static final XMLInputFactory PEEK_FACTORY = createPeekFactory();
+    private static final String DEFAULT_BATCH_GLOB = "**.xml";
+
+    private final int maxErrors;
+
+    public XsdValidationService() {
+        this(DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * @param maxErrors number of errors after which validation stops
+     */
+    public XsdValidationService(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
     /**
      * Validate SEPA XML file against its XSD schema
      *
@@ -27,60 +86,253 @@ public class XsdValidationService {
      * @return Validation result with errors (empty list if valid)
      */
     public ValidationResult validateXml(File xmlFile, SepaFormat format) {
+        return validateXml(new StreamSource(xmlFile), format);
+    }
+
+    /**
+     * Validate SEPA XML held in memory (e.g. received over IPC).
+     * The buffer is read from its position to its limit; its position is not changed.
+     */
+    public ValidationResult validateXml(ByteBuffer xml, SepaFormat format) {
+        InputStream stream;
+        if (xml.hasArray()) {
+            stream = new ByteArrayInputStream(xml.array(), xml.arrayOffset() + xml.position(), xml.remaining());
+        } else {
+            stream = new ByteBufferInputStream(xml.duplicate());
+        }
+        return validateXml(stream, format);
+    }
+
+    /**
+     * Validate SEPA XML read from a stream; the stream is not closed
+     */
+    public ValidationResult validateXml(InputStream xml, SepaFormat format) {
+        return validateXml(new StreamSource(xml), format);
+    }
+
+    /**
+     * Validate SEPA XML from any source, e.g. a {@link StreamSource} fed by the generator.
+     * Stream and SAX sources are parsed with element tracking, so every issue carries its
+     * element path and transaction index; validation stops once the error limit is reached.
+     *
+     * @param source XML source to validate
+     * @param format SEPA format
+     * @return Validation result with errors (empty list if valid)
+     */
+    public ValidationResult validateXml(Source source, SepaFormat format) {
         List<String> errors = new ArrayList<>();
+        InputSource inputSource = SAXSource.sourceToInputSource(source);
+        ValidationTracker tracker = new ValidationTracker(maxErrors, inputSource != null);
+        boolean aborted = false;
 
         try {
-            // Load XSD schema from resources
-            String xsdPath = "/de/agwu/apps/easysepa/xsd/" + format.getCode() + ".xsd";
-            InputStream xsdStream = getClass().getResourceAsStream(xsdPath);
-
-            if (xsdStream == null) {
-                errors.add("XSD Schema nicht gefunden: " + xsdPath);
+            Schema schema = XsdSchemaCache.getSchema(format);
+            if (schema == null) {
+                errors.add("XSD Schema nicht gefunden: " + XsdSchemaCache.getXsdPath(format));
                 return new ValidationResult(false, errors);
             }
 
-            // Create schema
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = schemaFactory.newSchema(new StreamSource(xsdStream));
+            if (inputSource != null) {
+                validate(schema, inputSource, tracker);
+            } else {
+                Validator validator = XsdSchemaCache.getValidator(format);
+                validator.setErrorHandler(tracker);
+                validator.validate(source);
+            }
+        } catch (ValidationTracker.ErrorLimitReachedException e) {
+            aborted = true;
+        } catch (SAXException e) {
+            if (!tracker.isFatalErrorReported()) {
+                errors.add("XML Parse Fehler: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            errors.add("I/O Fehler: " + e.getMessage());
+        }
 
-            // Create validator
-            Validator validator = schema.newValidator();
+        return buildResult(tracker.getIssues(), errors, aborted);
+    }
 
-            // Collect validation errors
-            List<String> validationErrors = new ArrayList<>();
-            validator.setErrorHandler(new org.xml.sax.ErrorHandler() {
-                @Override
-                public void warning(org.xml.sax.SAXParseException exception) {
-                    validationErrors.add("Warnung: " + exception.getMessage());
-                }
+    /**
+     * Validate a large SEPA file in parallel: the document skeleton (group header, payment
+     * information blocks and their first transaction) is validated against the full schema, all
+     * other transactions in batches against a derived transaction schema on all cores.
+     * Accepts and rejects the same documents as {@link #validateXml(File, SepaFormat)}.
+     */
+    public ValidationResult validateXmlParallel(File xmlFile, SepaFormat format) {
+        return validateXmlParallel(xmlFile, format, Runtime.getRuntime().availableProcessors());
+    }
 
-                @Override
-                public void error(org.xml.sax.SAXParseException exception) {
-                    validationErrors.add("Fehler: " + exception.getMessage());
-                }
+    /**
+     * @param parallelism number of threads validating transaction batches
+     */
+    public ValidationResult validateXmlParallel(File xmlFile, SepaFormat format, int parallelism) {
+        ParallelXsdValidator.Outcome outcome = new ParallelXsdValidator(format, maxErrors, parallelism)
+                .validate(xmlFile.toPath());
+        return buildResult(outcome.issues(), outcome.errors(), outcome.aborted());
+    }
 
-                @Override
-                public void fatalError(org.xml.sax.SAXParseException exception) {
-                    validationErrors.add("Fataler Fehler: " + exception.getMessage());
-                }
-            });
+    /**
+     * Validate all XML files below a directory, or all files matching a glob such as
+     * {@code archive/2025/**.xml}, on all cores
+     *
+     * @param directoryOrGlob a directory (all {@code *.xml} files in it and its subdirectories),
+     *                        a single file or a path whose last segments are a glob
+     */
+    public BatchValidationReport validateBatch(String directoryOrGlob) throws IOException {
+        int globStart = indexOfGlob(directoryOrGlob);
+        if (globStart < 0) {
+            Path path = Paths.get(directoryOrGlob);
+            if (Files.isRegularFile(path)) {
+                Path parent = path.toAbsolutePath().getParent();
+                return validateBatch(parent, path.getFileName().toString(), Runtime.getRuntime().availableProcessors());
+            }
+            return validateBatch(path, DEFAULT_BATCH_GLOB, Runtime.getRuntime().availableProcessors());
+        }
+        int separator = Math.max(directoryOrGlob.lastIndexOf('/', globStart), directoryOrGlob.lastIndexOf('\\', globStart));
+        Path directory = Paths.get(separator < 0 ? "." : directoryOrGlob.substring(0, Math.max(separator, 1)));
+        return validateBatch(directory, directoryOrGlob.substring(separator + 1), Runtime.getRuntime().availableProcessors());
+    }
 
-            // Validate
-            validator.validate(new StreamSource(xmlFile));
+    /**
+     * Validate the files below a directory whose relative path matches a glob.
+     * Files are validated concurrently on virtual threads, each of which detects the format of a file
+     * from its namespace and validates it against the shared compiled schema.
+     *
+     * @param glob        glob relative to the directory, e.g. {@code **.xml}
+     * @param parallelism number of files validated at the same time
+     */
+    public BatchValidationReport validateBatch(Path directory, String glob, int parallelism) throws IOException {
+        long start = System.nanoTime();
+        Path baseDirectory = directory.toAbsolutePath().normalize();
+        if (!Files.isDirectory(baseDirectory)) {
+            throw new IOException("Verzeichnis nicht gefunden: " + directory);
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        Path[] files;
+        try (Stream<Path> paths = Files.walk(baseDirectory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(baseDirectory.relativize(file)))
+                    .sorted()
+                    .toArray(Path[]::new);
+        }
 
-            if (!validationErrors.isEmpty()) {
-                return new ValidationResult(false, validationErrors);
+        // A fixed number of workers pulls files, so the per-thread parsers are reused across files
+        BatchValidationReport.FileResult[] results = new BatchValidationReport.FileResult[files.length];
+        AtomicInteger next = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < Math.max(1, Math.min(parallelism, files.length)); worker++) {
+                executor.execute(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < files.length) {
+                        results[index] = validateBatchFile(files[index]);
+                    }
+                });
             }
+        }
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+        return new BatchValidationReport(baseDirectory, Arrays.asList(results), durationMillis);
+    }
 
-            return new ValidationResult(true, List.of());
+    /**
+     * Detect the SEPA format of a file from the namespace of its root element.
+     * Only the start of the file is read.
+     *
+     * @return the format, or null if the file is no XML or uses an unsupported namespace
+     */
+    public static SepaFormat detectFormat(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader reader = PEEK_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        return formatOfNamespace(reader.getNamespaceURI());
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            return null;
+        }
+    }
 
-        } catch (SAXException e) {
-            errors.add("XML Parse Fehler: " + e.getMessage());
-            return new ValidationResult(false, errors);
+    private BatchValidationReport.FileResult validateBatchFile(Path file) {
+        SepaFormat format;
+        try {
+            format = detectFormat(file);
         } catch (IOException e) {
-            errors.add("I/O Fehler: " + e.getMessage());
-            return new ValidationResult(false, errors);
+            return new BatchValidationReport.FileResult(file, null,
+                    new ValidationResult(false, List.of("I/O Fehler: " + e.getMessage())));
+        }
+        if (format == null) {
+            return new BatchValidationReport.FileResult(file, null,
+                    new ValidationResult(false, List.of("Kein unterstütztes SEPA-Format erkannt")));
+        }
+        return new BatchValidationReport.FileResult(file, format, validateXml(file.toFile(), format));
+    }
+
+    private static SepaFormat formatOfNamespace(String namespace) {
+        if (namespace == null) {
+            return null;
+        }
+        String code = namespace.substring(namespace.lastIndexOf(':') + 1);
+        for (SepaFormat format : SepaFormat.values()) {
+            if (format.getCode().equals(code)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if ("*?[{".indexOf(path.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static XMLInputFactory createPeekFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Parse a document with the reader and validator handler of the calling thread
+     */
+    static void validate(Schema schema, InputSource inputSource, ValidationTracker tracker)
+            throws SAXException, IOException {
+        ValidatorHandler validatorHandler = XsdSchemaCache.getValidatorHandler(schema);
+        validatorHandler.setErrorHandler(tracker);
+        tracker.setContentHandler(validatorHandler);
+
+        XMLReader reader = XML_READERS.get();
+        reader.setContentHandler(tracker);
+        reader.setErrorHandler(tracker);
+        try {
+            reader.parse(inputSource);
+        } finally {
+            reader.setContentHandler(null);
+            reader.setErrorHandler(null);
+            validatorHandler.setErrorHandler(null);
+        }
+    }
+
+    private ValidationResult buildResult(List<ValidationIssue> issues, List<String> errors, boolean aborted) {
+        if (errors.isEmpty() && issues.isEmpty()) {
+            return new ValidationResult(true, List.of());
+        }
+        for (int i = issues.size() - 1; i >= 0; i--) {
+            errors.add(0, issues.get(i).format(0));
         }
+        if (aborted) {
+            errors.add("Validierung nach " + maxErrors + " Fehlern abgebrochen");
+        }
+        return new ValidationResult(false, errors, issues, aborted);
     }
 
     /**
@@ -89,10 +341,18 @@ public class XsdValidationService {
     public static class ValidationResult {
         private final boolean valid;
         private final List<String> errors;
+        private final List<ValidationIssue> issues;
+        private final boolean aborted;
 
         public ValidationResult(boolean valid, List<String> errors) {
+            this(valid, errors, List.of(), false);
+        }
+
+        public ValidationResult(boolean valid, List<String> errors, List<ValidationIssue> issues, boolean aborted) {
             this.valid = valid;
             this.errors = errors;
+            this.issues = issues;
+            this.aborted = aborted;
         }
 
         public boolean isValid() {
@@ -103,8 +363,93 @@ public class XsdValidationService {
             return errors;
         }
 
+        /**
+         * Distinct issues with element path and transaction index
+         */
+        public List<ValidationIssue> getIssues() {
+            return issues;
+        }
+
+        /**
+         * True if validation stopped at the error limit, so further errors may exist
+         */
+        public boolean isAborted() {
+            return aborted;
+        }
+
         public String getErrorsAsString() {
             return String.join("\n", errors);
         }
+
+        /**
+         * Combine with the result of another check of the same document, e.g. the business rules
+         */
+        public ValidationResult merge(ValidationResult other) {
+            if (other.errors.isEmpty()) {
+                return valid == other.valid ? this : new ValidationResult(false, errors, issues, aborted);
+            }
+            if (errors.isEmpty() && valid == other.valid) {
+                return other;
+            }
+            List<ValidationIssue> mergedIssues = new ArrayList<>(issues);
+            mergedIssues.addAll(other.issues);
+            // Keeps the issue messages in front of the other messages, as getErrorsAsString expects
+            List<String> mergedErrors = new ArrayList<>(errors.subList(0, issues.size()));
+            mergedErrors.addAll(other.errors.subList(0, other.issues.size()));
+            mergedErrors.addAll(errors.subList(issues.size(), errors.size()));
+            mergedErrors.addAll(other.errors.subList(other.issues.size(), other.errors.size()));
+            return new ValidationResult(valid && other.valid, mergedErrors, mergedIssues, aborted || other.aborted);
+        }
+
+        /**
+         * Error messages with the CSV row of each failing transaction
+         *
+         * @param transactions the transactions in the order they were written to the XML
+         */
+        public String getErrorsAsString(List<SepaTransaction> transactions) {
+            List<String> lines = new ArrayList<>(errors.size());
+            for (ValidationIssue issue : issues) {
+                int index = issue.getTransactionIndex();
+                int rowNumber = index > 0 && index <= transactions.size()
+                        ? transactions.get(index - 1).getRowNumber() : 0;
+                lines.add(issue.format(rowNumber));
+            }
+            lines.addAll(errors.subList(issues.size(), errors.size()));
+            return String.join("\n", lines);
+        }
+    }
+
+    /**
+     * Reads a direct buffer without copying it to the heap first
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
 }
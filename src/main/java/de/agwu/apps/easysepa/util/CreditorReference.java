@@ -0,0 +1,98 @@
+package de.agwu.apps.easysepa.util;
+
+/**
+ * ISO 11649 structured creditor reference ("RF" + 2 check digits + up to 21 alphanumeric characters).
+ * Accepts the electronic format and the print format with spaces between groups of four.
+ */
+public final class CreditorReference {
+
+    /** The value is free text, not a structured reference */
+    public static final int NOT_STRUCTURED = 0;
+    public static final int VALID = 1;
+    public static final int WRONG_CHECKSUM = 2;
+
+    private static final int MIN_LENGTH = 5;
+    private static final int MAX_LENGTH = 25;
+
+    private CreditorReference() {
+        // Utility class
+    }
+
+    public static boolean isValid(CharSequence value) {
+        return check(value) == VALID;
+    }
+
+    /**
+     * Classify a remittance value.
+     * Only values that consist entirely of an RF reference are checked; other text is
+     * {@link #NOT_STRUCTURED} and left to the unstructured remittance rules.
+     *
+     * @return {@link #NOT_STRUCTURED}, {@link #VALID} or {@link #WRONG_CHECKSUM}
+     */
+    public static int check(CharSequence value) {
+        int length = value.length();
+        if (length < MIN_LENGTH || value.charAt(0) != 'R' || value.charAt(1) != 'F'
+                || !isDigit(value.charAt(2)) || !isDigit(value.charAt(3))) {
+            return NOT_STRUCTURED;
+        }
+
+        // Reference part first, then "RF" and the check digits, skipping print-format spaces
+        int remainder = 0;
+        int significant = 4;
+        for (int i = 4; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch == ' ') {
+                continue;
+            }
+            if (!isDigit(ch) && (ch < 'A' || ch > 'Z')) {
+                return NOT_STRUCTURED;
+            }
+            remainder = Mod97.update(remainder, value, i, i + 1);
+            significant++;
+        }
+        if (significant < MIN_LENGTH || significant > MAX_LENGTH) {
+            return NOT_STRUCTURED;
+        }
+
+        remainder = Mod97.update(remainder, value, 0, 4);
+        return remainder == 1 ? VALID : WRONG_CHECKSUM;
+    }
+
+    /**
+     * Build a reference in electronic format from up to 21 letters and digits.
+     * Spaces are dropped and letters upper-cased.
+     *
+     * @return the reference, or null if the input is empty, too long or not alphanumeric
+     */
+    public static String create(CharSequence reference) {
+        StringBuilder builder = new StringBuilder(MAX_LENGTH).append("RF00");
+        for (int i = 0; i < reference.length(); i++) {
+            char ch = reference.charAt(i);
+            if (ch == ' ') {
+                continue;
+            }
+            if (ch >= 'a' && ch <= 'z') {
+                ch = (char) (ch - 'a' + 'A');
+            } else if (!isDigit(ch) && (ch < 'A' || ch > 'Z')) {
+                return null;
+            }
+            if (builder.length() == MAX_LENGTH) {
+                return null;
+            }
+            builder.append(ch);
+        }
+        if (builder.length() < MIN_LENGTH) {
+            return null;
+        }
+
+        int remainder = Mod97.update(0, builder, 4, builder.length());
+        int checkDigits = Mod97.checkDigits(Mod97.update(remainder, builder, 0, 4));
+        builder.setCharAt(2, (char) ('0' + checkDigits / 10));
+        builder.setCharAt(3, (char) ('0' + checkDigits % 10));
+        return builder.toString();
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
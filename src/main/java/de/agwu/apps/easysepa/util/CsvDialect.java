@@ -0,0 +1,36 @@
+package de.agwu.apps.easysepa.util;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * CSV dialect of a file as inferred by {@link CsvDialectSniffer}.
+ * Confidences range from 0 (guess) to 1 (unambiguous).
+ *
+ * @param charset                  encoding the sample was decoded with
+ * @param separator                field separator
+ * @param quoteChar                quote character
+ * @param hasHeader                whether the first row holds column names
+ * @param lineSeparator            dominant line ending ({@code "\r\n"}, {@code "\n"} or {@code "\r"})
+ * @param decimalSeparator         decimal separator of the numeric columns as a whole
+ * @param columnDecimalSeparators  decimal separator per column, {@code '\0'} for columns without decimal numbers
+ */
+public record CsvDialect(Charset charset,
+                         char separator,
+                         char quoteChar,
+                         boolean hasHeader,
+                         String lineSeparator,
+                         char decimalSeparator,
+                         List<Character> columnDecimalSeparators,
+                         double separatorConfidence,
+                         double quoteConfidence,
+                         double headerConfidence,
+                         double decimalConfidence) {
+
+    /**
+     * Lowest of the separator, quote, header and decimal confidences
+     */
+    public double confidence() {
+        return Math.min(Math.min(separatorConfidence, quoteConfidence), Math.min(headerConfidence, decimalConfidence));
+    }
+}
@@ -0,0 +1,417 @@
+package de.agwu.apps.easysepa.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Infers the CSV dialect of a file from a bounded sample: the start of the file plus a few
+ * windows at evenly spaced offsets, so a file of any size costs at most {@link #MAX_SAMPLE_BYTES} of reading.
+ */
+public final class CsvDialectSniffer {
+
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int WINDOW_BYTES = 16 * 1024;
+    private static final int WINDOW_COUNT = 3;
+    static final int MAX_SAMPLE_BYTES = HEAD_BYTES + WINDOW_COUNT * WINDOW_BYTES;
+
+    private static final char[] SEPARATORS = {';', ',', '\t', '|'};
+    private static final char[] QUOTES = {'"', '\''};
+    private static final int HEADER_BODY_ROWS = 200;
+
+    private static final char NO_DECIMALS = '\0';
+    private static final char INTEGER = 'i';
+    private static final char AMBIGUOUS = '?';
+
+    private CsvDialectSniffer() {
+        // Utility class
+    }
+
+    /**
+     * Sniff a file whose encoding is detected first (for headless runs)
+     */
+    public static CsvDialect sniff(Path file) throws IOException {
+        return sniff(file, Charset.forName(EncodingDetector.analyze(file).encoding()));
+    }
+
+    /**
+     * Sniff a file in a known encoding
+     */
+    public static CsvDialect sniff(Path file, Charset charset) throws IOException {
+        String head;
+        List<String> windows = new ArrayList<>(WINDOW_COUNT);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= MAX_SAMPLE_BYTES) {
+                head = read(channel, 0, (int) size, charset);
+            } else {
+                head = read(channel, 0, HEAD_BYTES, charset);
+                // The head ends in the middle of a record
+                head = head.substring(0, Math.max(lastLineBreak(head), 0));
+                for (int i = 1; i <= WINDOW_COUNT; i++) {
+                    long offset = HEAD_BYTES + (size - HEAD_BYTES - WINDOW_BYTES) * i / WINDOW_COUNT;
+                    windows.add(completeLines(read(channel, offset, WINDOW_BYTES, charset)));
+                }
+            }
+        }
+        return sniff(head, windows, charset);
+    }
+
+    /**
+     * Sniff CSV text; the head starts at the beginning of the file, windows hold complete lines from further on
+     */
+    static CsvDialect sniff(String head, List<String> windows, Charset charset) {
+        String lineSeparator = dominantLineSeparator(head);
+        int[] quoteCounts = countBoundaryQuotes(head);
+        int quoteIndex = quoteCounts[1] > quoteCounts[0] ? 1 : 0;
+        char quote = QUOTES[quoteIndex];
+        int quoteTotal = quoteCounts[0] + quoteCounts[1];
+        // Without any quotes the default applies and nothing contradicts it
+        double quoteConfidence = quoteTotal == 0 ? 1 : (double) quoteCounts[quoteIndex] / quoteTotal;
+
+        List<String> records = splitRecords(head, quote);
+        List<String> sampled = new ArrayList<>(records);
+        for (String window : windows) {
+            sampled.addAll(splitRecords(window, quote));
+        }
+
+        // Separator: the candidate that splits the most records into the same number of fields
+        char separator = SEPARATORS[0];
+        double bestShare = -1;
+        int bestFields = 0;
+        double secondShare = 0;
+        for (char candidate : SEPARATORS) {
+            int[] modal = modalFieldCount(sampled, candidate, quote);
+            double share = modal[0] < 2 || sampled.isEmpty() ? 0 : (double) modal[1] / sampled.size();
+            if (share > bestShare || (share == bestShare && modal[0] > bestFields)) {
+                secondShare = Math.max(secondShare, bestShare);
+                bestShare = share;
+                bestFields = modal[0];
+                separator = candidate;
+            } else {
+                secondShare = Math.max(secondShare, share);
+            }
+        }
+        double separatorConfidence = bestShare <= 0 ? 0 : bestShare * (secondShare < bestShare ? 1 : 0.5);
+
+        List<List<String>> rows = new ArrayList<>();
+        for (String record : records) {
+            rows.add(splitFields(record, separator, quote));
+        }
+        double headerScore = headerScore(rows);
+
+        int columns = rows.isEmpty() ? 0 : rows.get(0).size();
+        List<Character> columnDecimals = new ArrayList<>(columns);
+        int commaColumns = 0;
+        int dotColumns = 0;
+        int firstBodyRow = headerScore >= 0.5 ? 1 : 0;
+        for (int column = 0; column < columns; column++) {
+            char decimal = columnDecimalSeparator(rows, column, firstBodyRow, separator);
+            columnDecimals.add(decimal);
+            if (decimal == ',') {
+                commaColumns++;
+            } else if (decimal == '.') {
+                dotColumns++;
+            }
+        }
+        char decimalSeparator = dotColumns > commaColumns ? '.' : ',';
+        double decimalConfidence = commaColumns + dotColumns == 0
+                ? 0.5 : (double) Math.max(commaColumns, dotColumns) / (commaColumns + dotColumns);
+
+        return new CsvDialect(charset, separator, quote, headerScore >= 0.5, lineSeparator, decimalSeparator,
+                Collections.unmodifiableList(columnDecimals), separatorConfidence, quoteConfidence,
+                Math.abs(headerScore - 0.5) * 2, decimalConfidence);
+    }
+
+    private static String read(FileChannel channel, long offset, int length, Charset charset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        String text = decoder.decode(buffer).toString();
+        // A byte order mark is not part of the first column name
+        return offset == 0 && !text.isEmpty() && text.charAt(0) == '\uFEFF' ? text.substring(1) : text;
+    }
+
+    /**
+     * Cut a window read from the middle of the file down to its complete lines
+     */
+    private static String completeLines(String window) {
+        int start = window.indexOf('\n') + 1;
+        int end = lastLineBreak(window);
+        return start > 0 && end > start ? window.substring(start, end) : "";
+    }
+
+    private static int lastLineBreak(String text) {
+        return Math.max(text.lastIndexOf('\n'), text.lastIndexOf('\r'));
+    }
+
+    private static String dominantLineSeparator(String text) {
+        int crlf = 0;
+        int lf = 0;
+        int cr = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '\r') {
+                if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    crlf++;
+                    i++;
+                } else {
+                    cr++;
+                }
+            } else if (ch == '\n') {
+                lf++;
+            }
+        }
+        if (crlf >= lf && crlf >= cr && crlf > 0) {
+            return "\r\n";
+        }
+        return cr > lf ? "\r" : "\n";
+    }
+
+    /**
+     * How often each of the {@link #QUOTES} opens or closes a field
+     */
+    private static int[] countBoundaryQuotes(String text) {
+        int[] counts = new int[QUOTES.length];
+        for (int q = 0; q < QUOTES.length; q++) {
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != QUOTES[q]) {
+                    continue;
+                }
+                char before = i > 0 ? text.charAt(i - 1) : '\n';
+                char after = i + 1 < text.length() ? text.charAt(i + 1) : '\n';
+                if (isBoundary(before) || isBoundary(after)) {
+                    counts[q]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static boolean isBoundary(char ch) {
+        return ch == '\n' || ch == '\r' || ch == ';' || ch == ',' || ch == '\t' || ch == '|';
+    }
+
+    /**
+     * Split text into records at line breaks outside of quotes; blank lines are dropped
+     */
+    private static List<String> splitRecords(String text, char quote) {
+        List<String> records = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : '\n';
+            if (ch == quote) {
+                quoted = !quoted;
+            } else if ((ch == '\n' || ch == '\r') && !quoted) {
+                if (i > start && !text.substring(start, i).isBlank()) {
+                    records.add(text.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Most frequent number of fields per record and how many records have it
+     */
+    private static int[] modalFieldCount(List<String> records, char separator, char quote) {
+        Map<Integer, Integer> frequencies = new HashMap<>();
+        for (String record : records) {
+            frequencies.merge(countFields(record, separator, quote), 1, Integer::sum);
+        }
+        int[] modal = {0, 0};
+        frequencies.forEach((fields, count) -> {
+            if (count > modal[1] || (count == modal[1] && fields > modal[0])) {
+                modal[0] = fields;
+                modal[1] = count;
+            }
+        });
+        return modal;
+    }
+
+    private static int countFields(String record, char separator, char quote) {
+        int fields = 1;
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char ch = record.charAt(i);
+            if (ch == quote) {
+                quoted = !quoted;
+            } else if (ch == separator && !quoted) {
+                fields++;
+            }
+        }
+        return fields;
+    }
+
+    private static List<String> splitFields(String record, char separator, char quote) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char ch = record.charAt(i);
+            if (ch == quote) {
+                if (quoted && i + 1 < record.length() && record.charAt(i + 1) == quote) {
+                    field.append(quote);
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (ch == separator && !quoted) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Likelihood (0..1) that the first row is a header: typed body columns whose first value is text
+     * speak for it, typed first values against it. Without typed columns, distinct non-empty names are
+     * taken as a header.
+     */
+    private static double headerScore(List<List<String>> rows) {
+        if (rows.isEmpty()) {
+            return 0.5;
+        }
+        List<String> first = rows.get(0);
+        if (rows.size() == 1) {
+            return isNameRow(first) ? 0.75 : 0.25;
+        }
+        int forHeader = 0;
+        int againstHeader = 0;
+        for (int column = 0; column < first.size(); column++) {
+            int typed = 0;
+            int values = 0;
+            for (int row = 1; row < rows.size() && row <= HEADER_BODY_ROWS; row++) {
+                List<String> fields = rows.get(row);
+                if (column < fields.size() && !fields.get(column).isEmpty()) {
+                    values++;
+                    if (isTyped(fields.get(column))) {
+                        typed++;
+                    }
+                }
+            }
+            if (values == 0 || typed * 2 < values) {
+                continue;
+            }
+            if (isTyped(first.get(column))) {
+                againstHeader++;
+            } else if (!first.get(column).isEmpty()) {
+                forHeader++;
+            }
+        }
+        if (forHeader + againstHeader == 0) {
+            return isNameRow(first) ? 0.75 : 0.25;
+        }
+        return 0.5 + 0.5 * (forHeader - againstHeader) / (double) (forHeader + againstHeader);
+    }
+
+    private static boolean isNameRow(List<String> fields) {
+        return fields.stream().noneMatch(String::isEmpty) && fields.stream().distinct().count() == fields.size();
+    }
+
+    private static boolean isTyped(String value) {
+        if (numberKind(value, '\0') != NO_DECIMALS) {
+            return true;
+        }
+        DateNormalizer.Format format = DateNormalizer.detect(value);
+        return format != null && DateNormalizer.parseEpochDay(value, format) != DateNormalizer.INVALID;
+    }
+
+    private static char columnDecimalSeparator(List<List<String>> rows, int column, int firstRow, char separator) {
+        int comma = 0;
+        int dot = 0;
+        for (int row = firstRow; row < rows.size(); row++) {
+            List<String> fields = rows.get(row);
+            if (column >= fields.size()) {
+                continue;
+            }
+            char kind = numberKind(fields.get(column), separator);
+            if (kind == ',') {
+                comma++;
+            } else if (kind == '.') {
+                dot++;
+            }
+        }
+        if (comma == dot) {
+            return NO_DECIMALS;
+        }
+        return comma > dot ? ',' : '.';
+    }
+
+    /**
+     * Decimal convention a value shows: ',' or '.', {@link #INTEGER} for whole numbers,
+     * {@link #AMBIGUOUS} for values like 1.234, or {@link #NO_DECIMALS} if the value is no number
+     */
+    private static char numberKind(String value, char separator) {
+        String number = value.trim();
+        int start = number.startsWith("-") || number.startsWith("+") ? 1 : 0;
+        if (start >= number.length()) {
+            return NO_DECIMALS;
+        }
+        int digits = 0;
+        int commas = 0;
+        int dots = 0;
+        int lastMark = -1;
+        for (int i = start; i < number.length(); i++) {
+            char ch = number.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits++;
+            } else if ((ch == ',' || ch == '.') && ch != separator && i > start) {
+                if (ch == ',') {
+                    commas++;
+                } else {
+                    dots++;
+                }
+                lastMark = i;
+            } else {
+                return NO_DECIMALS;
+            }
+        }
+        if (digits == 0 || lastMark == number.length() - 1) {
+            return NO_DECIMALS;
+        }
+        if (lastMark < 0) {
+            return INTEGER;
+        }
+        char last = number.charAt(lastMark);
+        if (commas > 0 && dots > 0) {
+            // The mark that comes last separates the decimals, the other one groups thousands
+            return last;
+        }
+        if (commas + dots > 1) {
+            // Repeated marks group thousands, so the other character is the decimal separator;
+            // groups other than three digits (01.02.2025) make the value no number at all
+            for (int i = number.indexOf(last, start); i >= 0; i = number.indexOf(last, i + 1)) {
+                int next = number.indexOf(last, i + 1);
+                if ((next < 0 ? number.length() : next) - i - 1 != 3) {
+                    return NO_DECIMALS;
+                }
+            }
+            return last == ',' ? '.' : ',';
+        }
+        return number.length() - lastMark - 1 == 3 ? AMBIGUOUS : last;
+    }
+}
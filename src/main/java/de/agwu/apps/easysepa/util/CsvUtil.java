@@ -1,15 +1,7 @@
 package de.agwu.apps.easysepa.util;
 
-import com.opencsv.CSVParser;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.exceptions.CsvException;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 
 /**
@@ -20,16 +12,9 @@ public class CsvUtil {
     /**
      * Read CSV headers from file
      */
-    public String[] readHeaders(File file, char separator, String encoding) throws IOException, CsvException {
-        CSVParser parser = new CSVParserBuilder()
-            .withSeparator(separator)
-            .build();
-
-        try (CSVReader reader = new CSVReaderBuilder(
-                new InputStreamReader(new FileInputStream(file), Charset.forName(encoding)))
-                .withCSVParser(parser)
-                .build()) {
-
+    public String[] readHeaders(File file, char separator, char quoteChar, String encoding) throws IOException {
+        try (ProjectingCsvReader reader = new ProjectingCsvReader(
+                FastDecodingReader.open(file.toPath(), Charset.forName(encoding)), separator, quoteChar)) {
             return reader.readNext();
         }
     }
@@ -47,6 +32,19 @@ public class CsvUtil {
         };
     }
 
+    /**
+     * Convert a separator character to its display name, or null if it has none
+     */
+    public String formatSeparator(char separator) {
+        return switch (separator) {
+            case ',' -> "Komma (,)";
+            case ';' -> "Semikolon (;)";
+            case '\t' -> "Tab (\\t)";
+            case '|' -> "Pipe (|)";
+            default -> null;
+        };
+    }
+
     /**
      * Convert decimal separator display name to character
      */
@@ -59,12 +57,10 @@ public class CsvUtil {
     }
 
     /**
-     * Create CSV parser with given separator
+     * Convert a decimal separator character to its display name
      */
-    public CSVParser createParser(char separator) {
-        return new CSVParserBuilder()
-                .withSeparator(separator)
-                .build();
+    public String formatDecimalSeparator(char decimalSeparator) {
+        return decimalSeparator == '.' ? "Punkt (.)" : "Komma (,)";
     }
 
     /**
@@ -0,0 +1,161 @@
+package de.agwu.apps.easysepa.util;
+
+/**
+ * Normalizes the dates of one CSV column to ISO format (YYYY-MM-DD).
+ * The input format is detected from the first value and then reused for the rest of the column;
+ * parsing works directly on the digits and never throws.
+ */
+public final class DateNormalizer {
+
+    /** Returned by {@link #parseEpochDay} for values that are not a valid date */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Supported input formats
+     */
+    public enum Format {
+        ISO,        // yyyy-MM-dd
+        GERMAN,     // dd.MM.yyyy
+        COMPACT     // yyyyMMdd
+    }
+
+    private Format format;
+
+    /**
+     * Format detected for this column, or null if no date has been seen yet
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Convert a date to ISO format.
+     * ISO dates are returned as the same instance; values that are not a date in any
+     * supported format are returned unchanged, so validation can report them.
+     */
+    public String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (format == null) {
+            format = detect(value);
+            if (format == null) {
+                return value;
+            }
+        }
+
+        Format valueFormat = format;
+        long epochDay = parseEpochDay(value, valueFormat);
+        if (epochDay == INVALID) {
+            // Mixed exports: fall back to the format of this value without changing the column format
+            valueFormat = detect(value);
+            if (valueFormat == null || valueFormat == format) {
+                return value;
+            }
+            epochDay = parseEpochDay(value, valueFormat);
+            if (epochDay == INVALID) {
+                return value;
+            }
+        }
+        return valueFormat == Format.ISO ? value : formatIso(epochDay);
+    }
+
+    /**
+     * Detect the format of a date value from its shape, or null if it matches no format
+     */
+    public static Format detect(CharSequence value) {
+        int length = value.length();
+        if (length == 10) {
+            if (value.charAt(4) == '-' && value.charAt(7) == '-') {
+                return Format.ISO;
+            }
+            if (value.charAt(2) == '.' && value.charAt(5) == '.') {
+                return Format.GERMAN;
+            }
+        } else if (length == 8 && SepaValueChecks.parseDigits(value, 0, 8) >= 0) {
+            return Format.COMPACT;
+        }
+        return null;
+    }
+
+    /**
+     * Parse a date in the given format
+     *
+     * @return days since 1970-01-01, or {@link #INVALID}
+     */
+    public static long parseEpochDay(CharSequence value, Format format) {
+        int year;
+        int month;
+        int day;
+        switch (format) {
+            case ISO -> {
+                if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+                    return INVALID;
+                }
+                year = SepaValueChecks.parseDigits(value, 0, 4);
+                month = SepaValueChecks.parseDigits(value, 5, 7);
+                day = SepaValueChecks.parseDigits(value, 8, 10);
+            }
+            case GERMAN -> {
+                if (value.length() != 10 || value.charAt(2) != '.' || value.charAt(5) != '.') {
+                    return INVALID;
+                }
+                day = SepaValueChecks.parseDigits(value, 0, 2);
+                month = SepaValueChecks.parseDigits(value, 3, 5);
+                year = SepaValueChecks.parseDigits(value, 6, 10);
+            }
+            default -> {
+                if (value.length() != 8) {
+                    return INVALID;
+                }
+                year = SepaValueChecks.parseDigits(value, 0, 4);
+                month = SepaValueChecks.parseDigits(value, 4, 6);
+                day = SepaValueChecks.parseDigits(value, 6, 8);
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > SepaValueChecks.daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date
+     */
+    public static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Format an epoch day as ISO date (YYYY-MM-DD), years 0-9999
+     */
+    public static String formatIso(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        char[] chars = new char[10];
+        chars[0] = (char) ('0' + year / 1000 % 10);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        chars[5] = (char) ('0' + month / 10);
+        chars[6] = (char) ('0' + month % 10);
+        chars[7] = '-';
+        chars[8] = (char) ('0' + day / 10);
+        chars[9] = (char) ('0' + day % 10);
+        return new String(chars);
+    }
+}
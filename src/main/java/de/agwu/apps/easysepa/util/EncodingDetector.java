@@ -1,138 +1,229 @@
 package de.agwu.apps.easysepa.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Utility to detect file encoding
  */
 public class EncodingDetector {
 
+    public static final String UTF_8 = "UTF-8";
+    public static final String ISO_8859_1 = "ISO-8859-1";
+    public static final String WINDOWS_1252 = "Windows-1252";
+
+    // Files are mapped in windows of this size, so files larger than 2 GB can be scanned as well
+    private static final int MAP_WINDOW = 1 << 26;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Result of a full-file scan: the best encoding and, per candidate, how likely decoding the
+     * file with it yields the intended text (0..1; encodings that decode the file identically
+     * get the same value)
+     */
+    public record Detection(String encoding, Map<String, Double> confidences, long bytesScanned) {
+
+        public double confidence(String candidate) {
+            return confidences.getOrDefault(candidate, 0.0);
+        }
+    }
+
     /**
      * Detect encoding of a file
      * Returns best guess based on byte patterns
      */
     public static String detectEncoding(File file) throws IOException {
-        // Read first few bytes to check for BOM
-        byte[] bom = new byte[4];
-        try (FileInputStream fis = new FileInputStream(file)) {
-            int bytesRead = fis.read(bom);
-            
-            if (bytesRead >= 3) {
-                // UTF-8 BOM: EF BB BF
-                if (bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF) {
-                    return "UTF-8";
-                }
-                
-                // UTF-16 BE BOM: FE FF
-                if (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF) {
-                    return "UTF-16BE";
-                }
-                
-                // UTF-16 LE BOM: FF FE
-                if (bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE) {
-                    return "UTF-16LE";
-                }
+        return analyze(file.toPath()).encoding();
+    }
+
+    /**
+     * Scan the whole file and rate UTF-8, ISO-8859-1 and Windows-1252.
+     * The file is memory-mapped and opened once; ASCII runs are skipped eight bytes at a time.
+     */
+    public static Detection analyze(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return rate(new ByteScan(), 0);
+            }
+            ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW));
+            Detection bomDetection = detectBom(first, size);
+            if (bomDetection != null) {
+                return bomDetection;
+            }
+
+            ByteScan scan = new ByteScan();
+            scan.scan(first);
+            for (long offset = first.limit(); offset < size; offset += MAP_WINDOW) {
+                scan.scan(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, MAP_WINDOW)));
             }
+            scan.finish();
+            return rate(scan, size);
         }
-        
-        // No BOM found, try to detect by content
-        return detectByContent(file);
     }
 
     /**
-     * Detect encoding by analyzing file content
+     * Rate the bytes between position and limit of a buffer; the position is not changed
      */
-    private static String detectByContent(File file) throws IOException {
-        byte[] buffer = new byte[4096];
-        int bytesRead;
-        
-        try (FileInputStream fis = new FileInputStream(file)) {
-            bytesRead = fis.read(buffer);
+    public static Detection analyze(ByteBuffer content) {
+        ByteBuffer bytes = content.slice();
+        Detection bomDetection = detectBom(bytes, bytes.remaining());
+        if (bomDetection != null) {
+            return bomDetection;
         }
-        
-        if (bytesRead <= 0) {
-            return "UTF-8"; // Default
+        ByteScan scan = new ByteScan();
+        scan.scan(bytes);
+        scan.finish();
+        return rate(scan, bytes.remaining());
+    }
+
+    private static Detection detectBom(ByteBuffer bytes, long size) {
+        int length = Math.min(bytes.limit(), 3);
+        int b0 = length > 0 ? bytes.get(0) & 0xFF : -1;
+        int b1 = length > 1 ? bytes.get(1) & 0xFF : -1;
+        int b2 = length > 2 ? bytes.get(2) & 0xFF : -1;
+        String encoding = null;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            encoding = UTF_8;
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            encoding = "UTF-16BE";
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            encoding = "UTF-16LE";
         }
-        
-        // Check for typical German encoding byte sequences
-        boolean hasGermanISO = false;
-        for (int i = 0; i < bytesRead; i++) {
-            int b = buffer[i] & 0xFF;
-            // Check for German umlauts in ISO-8859-1/Windows-1252 range
-            // ä=0xE4, ö=0xF6, ü=0xFC, Ä=0xC4, Ö=0xD6, Ü=0xDC, ß=0xDF
-            if (b == 0xE4 || b == 0xF6 || b == 0xFC || 
-                b == 0xC4 || b == 0xD6 || b == 0xDC || b == 0xDF) {
-                hasGermanISO = true;
-                break;
+        return encoding == null ? null : new Detection(encoding, Map.of(encoding, 1.0), size);
+    }
+
+    private static Detection rate(ByteScan scan, long size) {
+        double utf8;
+        double iso;
+        double windows;
+        if (scan.highBytes == 0) {
+            // Pure ASCII decodes identically in all candidates
+            utf8 = iso = windows = 1.0;
+        } else {
+            // Random Latin-1 text rarely forms valid multi-byte sequences, so each one is strong evidence;
+            // the share of invalid sequences weighs against it, so a single stray byte in a large file does not
+            double evidence = 1.0 - Math.pow(0.05, scan.validSequences);
+            utf8 = evidence * scan.validSequences / (scan.validSequences + scan.invalidSequences);
+            double singleByte = 1.0 - utf8;
+            if (scan.c1Bytes == 0) {
+                iso = windows = singleByte;
+            } else {
+                // 0x80-0x9F are control characters in ISO-8859-1 but typographic characters (€, „, “) in Windows-1252
+                windows = singleByte * (scan.c1Bytes - scan.undefinedWindowsBytes) / scan.c1Bytes;
+                iso = singleByte * 0.05;
             }
         }
-        
-        if (hasGermanISO) {
-            // Found German umlauts in ISO-8859-1 range
-            return "ISO-8859-1";
-        }
-        
-        // Test if valid UTF-8
-        if (isValidUTF8(buffer, bytesRead)) {
-            return "UTF-8";
+
+        Map<String, Double> confidences = new LinkedHashMap<>();
+        confidences.put(UTF_8, utf8);
+        confidences.put(ISO_8859_1, iso);
+        confidences.put(WINDOWS_1252, windows);
+        String best = UTF_8;
+        for (Map.Entry<String, Double> entry : confidences.entrySet()) {
+            if (entry.getValue() > confidences.get(best)) {
+                best = entry.getKey();
+            }
         }
-        
-        // Default to ISO-8859-1 for compatibility
-        return "ISO-8859-1";
+        return new Detection(best, Collections.unmodifiableMap(confidences), size);
     }
 
     /**
-     * Check if byte sequence is valid UTF-8
+     * Streaming UTF-8 validation and single-byte statistics; state carries over between mapped windows
      */
-    private static boolean isValidUTF8(byte[] buffer, int length) {
-        int i = 0;
-        while (i < length) {
-            if ((buffer[i] & 0x80) == 0) {
-                // Single-byte character (ASCII)
-                i++;
-            } else if ((buffer[i] & 0xE0) == 0xC0) {
-                // Two-byte character
-                if (i + 1 >= length || (buffer[i + 1] & 0xC0) != 0x80) {
-                    return false;
+    private static final class ByteScan {
+        private int pendingContinuations;
+        private int lowerBound = 0x80;
+        private int upperBound = 0xBF;
+
+        private long highBytes;
+        private long c1Bytes;
+        private long undefinedWindowsBytes;
+        private long validSequences;
+        private long invalidSequences;
+
+        void scan(ByteBuffer bytes) {
+            int limit = bytes.limit();
+            int i = 0;
+            while (i < limit) {
+                if (pendingContinuations == 0) {
+                    // SWAR: skip eight ASCII bytes per step
+                    while (i + 8 <= limit && (bytes.getLong(i) & HIGH_BITS) == 0) {
+                        i += 8;
+                    }
+                    if (i == limit) {
+                        break;
+                    }
                 }
-                i += 2;
-            } else if ((buffer[i] & 0xF0) == 0xE0) {
-                // Three-byte character
-                if (i + 2 >= length || 
-                    (buffer[i + 1] & 0xC0) != 0x80 || 
-                    (buffer[i + 2] & 0xC0) != 0x80) {
-                    return false;
+                int b = bytes.get(i++) & 0xFF;
+                if (b < 0x80) {
+                    if (pendingContinuations > 0) {
+                        invalid();
+                    }
+                    continue;
                 }
-                i += 3;
-            } else if ((buffer[i] & 0xF8) == 0xF0) {
-                // Four-byte character
-                if (i + 3 >= length || 
-                    (buffer[i + 1] & 0xC0) != 0x80 || 
-                    (buffer[i + 2] & 0xC0) != 0x80 ||
-                    (buffer[i + 3] & 0xC0) != 0x80) {
-                    return false;
+
+                highBytes++;
+                if (b <= 0x9F) {
+                    c1Bytes++;
+                    if (b == 0x81 || b == 0x8D || b == 0x8F || b == 0x90 || b == 0x9D) {
+                        undefinedWindowsBytes++;
+                    }
                 }
-                i += 4;
+                if (pendingContinuations > 0) {
+                    if (b >= lowerBound && b <= upperBound) {
+                        lowerBound = 0x80;
+                        upperBound = 0xBF;
+                        if (--pendingContinuations == 0) {
+                            validSequences++;
+                        }
+                        continue;
+                    }
+                    invalid();
+                }
+                startSequence(b);
+            }
+        }
+
+        /**
+         * A sequence cut off by the end of the file is invalid
+         */
+        void finish() {
+            if (pendingContinuations > 0) {
+                invalid();
+            }
+        }
+
+        private void startSequence(int lead) {
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                pendingContinuations = 1;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                pendingContinuations = 2;
+                // No overlong forms (E0 80..9F) and no surrogates (ED A0..BF)
+                lowerBound = lead == 0xE0 ? 0xA0 : 0x80;
+                upperBound = lead == 0xED ? 0x9F : 0xBF;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                pendingContinuations = 3;
+                // No overlong forms (F0 80..8F) and nothing above U+10FFFF (F4 90..BF)
+                lowerBound = lead == 0xF0 ? 0x90 : 0x80;
+                upperBound = lead == 0xF4 ? 0x8F : 0xBF;
             } else {
-                return false;
+                invalidSequences++;
             }
         }
-        return true;
-    }
 
-    /**
-     * Check if buffer contains German characters in given encoding
-     */
-    private static boolean containsGermanChars(byte[] buffer, int length, String encoding) {
-        try {
-            String text = new String(buffer, 0, length, Charset.forName(encoding));
-            // Look for German umlauts
-            return text.matches(".*[äöüÄÖÜß].*");
-        } catch (Exception e) {
-            return false;
+        private void invalid() {
+            invalidSequences++;
+            pendingContinuations = 0;
+            lowerBound = 0x80;
+            upperBound = 0xBF;
         }
     }
 
@@ -155,10 +246,10 @@ public class EncodingDetector {
      */
     public static String getEncodingPreview(File file, String encoding) throws IOException {
         StringBuilder preview = new StringBuilder();
-        
+
         try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(new FileInputStream(file), Charset.forName(encoding)))) {
-            
+
             String line;
             int lineCount = 0;
             while ((line = reader.readLine()) != null && lineCount < 5) {
@@ -166,7 +257,7 @@ public class EncodingDetector {
                 lineCount++;
             }
         }
-        
+
         return preview.toString();
     }
 }
@@ -0,0 +1,223 @@
+package de.agwu.apps.easysepa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reader for CSV input that decodes the common encodings without the general {@link CharsetDecoder}:
+ * ISO-8859-1 and US-ASCII bytes are widened to chars directly, Windows-1252 only looks up 0x80-0x9F,
+ * and UTF-8 copies ASCII runs and decodes two-byte sequences (umlauts) inline, leaving only rarer
+ * sequences to the decoder. Malformed input is replaced like {@link InputStreamReader} does.
+ */
+public final class FastDecodingReader extends Reader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final Charset WINDOWS_1252 = windows1252();
+
+    private enum Mode { LATIN1, ASCII, WINDOWS_1252, UTF_8 }
+
+    private final InputStream in;
+    private final Mode mode;
+    private final char[] highChars;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    // UTF-8 only: decoder for sequences the inline path does not handle
+    private final CharsetDecoder decoder;
+    private final CharBuffer pending = CharBuffer.allocate(2).flip();
+
+    private FastDecodingReader(InputStream in, Mode mode, char[] highChars, CharsetDecoder decoder) {
+        this.in = in;
+        this.mode = mode;
+        this.highChars = highChars;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Open a file for reading in the given encoding
+     */
+    public static Reader open(Path file, Charset charset) throws IOException {
+        return wrap(Files.newInputStream(file), charset);
+    }
+
+    /**
+     * Decode a stream; encodings without a fast path get a plain {@link InputStreamReader}
+     */
+    public static Reader wrap(InputStream in, Charset charset) {
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            return new FastDecodingReader(in, Mode.LATIN1, null, null);
+        }
+        if (charset.equals(StandardCharsets.US_ASCII)) {
+            return new FastDecodingReader(in, Mode.ASCII, null, null);
+        }
+        if (charset.equals(WINDOWS_1252)) {
+            return new FastDecodingReader(in, Mode.WINDOWS_1252, highChars(charset), null);
+        }
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            return new FastDecodingReader(in, Mode.UTF_8, null, decoder);
+        }
+        return new InputStreamReader(in, charset);
+    }
+
+    @Override
+    public int read(char[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (mode == Mode.UTF_8) {
+            return readUtf8(target, offset, length);
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        byte[] source = bytes;
+        int start = position;
+        switch (mode) {
+            case LATIN1 -> {
+                for (int i = 0; i < count; i++) {
+                    target[offset + i] = (char) (source[start + i] & 0xFF);
+                }
+            }
+            case ASCII -> {
+                for (int i = 0; i < count; i++) {
+                    byte b = source[start + i];
+                    target[offset + i] = b >= 0 ? (char) b : REPLACEMENT;
+                }
+            }
+            default -> {
+                for (int i = 0; i < count; i++) {
+                    byte b = source[start + i];
+                    target[offset + i] = b >= 0 ? (char) b : highChars[b & 0x7F];
+                }
+            }
+        }
+        position += count;
+        return count;
+    }
+
+    private int readUtf8(char[] target, int offset, int length) throws IOException {
+        int count = 0;
+        while (pending.hasRemaining() && count < length) {
+            target[offset + count++] = pending.get();
+        }
+        byte[] source = bytes;
+        while (count < length) {
+            if (position == limit) {
+                if (count > 0 || !fill()) {
+                    break;
+                }
+            }
+            byte b = source[position];
+            if (b >= 0) {
+                target[offset + count++] = (char) b;
+                position++;
+                continue;
+            }
+            if (b >= (byte) 0xC2 && b <= (byte) 0xDF && position + 1 < limit && (source[position + 1] & 0xC0) == 0x80) {
+                target[offset + count++] = (char) (((b & 0x1F) << 6) | (source[position + 1] & 0x3F));
+                position += 2;
+                continue;
+            }
+            if (count > 0) {
+                break;
+            }
+            return decodeSlow(target, offset, length);
+        }
+        return count == 0 && endOfInput && position == limit ? -1 : count;
+    }
+
+    /**
+     * Decode with the general decoder, refilling while a sequence is cut off at the end of the buffer
+     */
+    private int decodeSlow(char[] target, int offset, int length) throws IOException {
+        while (true) {
+            ByteBuffer input = ByteBuffer.wrap(bytes, position, limit - position);
+            CharBuffer output = CharBuffer.wrap(target, offset, length);
+            CoderResult result = decoder.decode(input, output, endOfInput);
+            position = input.position();
+            if (endOfInput && !input.hasRemaining()) {
+                decoder.flush(output);
+            }
+            int count = output.position() - offset;
+            if (count > 0) {
+                return count;
+            }
+            if (result.isOverflow()) {
+                // A supplementary character does not fit into a single char
+                pending.clear();
+                decoder.decode(input, pending, endOfInput);
+                position = input.position();
+                pending.flip();
+                target[offset] = pending.get();
+                return 1;
+            }
+            if (endOfInput) {
+                return -1;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Read more bytes, keeping unconsumed ones; false once the stream is exhausted and nothing is left
+     */
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        while (!endOfInput && limit < bytes.length) {
+            int read = in.read(bytes, limit, bytes.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+            } else if (read > 0) {
+                limit += read;
+                break;
+            }
+        }
+        return position < limit;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Chars of bytes 0x80-0xFF in a single-byte charset
+     */
+    private static char[] highChars(Charset charset) {
+        byte[] high = new byte[128];
+        for (int i = 0; i < high.length; i++) {
+            high[i] = (byte) (0x80 + i);
+        }
+        return new String(high, charset).toCharArray();
+    }
+
+    private static Charset windows1252() {
+        try {
+            return Charset.forName(EncodingDetector.WINDOWS_1252);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.agwu.apps.easysepa.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Time and randomness used for one generation run.
+ * <p>
+ * In deterministic mode the clock is fixed and random placeholders ({@code {uuid}}, {@code {ulid}},
+ * {@code {random}}, ...) are derived from the seed, the placeholder and the row instead of a random source,
+ * so identical input produces byte-identical XML. Persistent {@code {seq:...}} counters still continue
+ * across runs and are therefore not reproducible.
+ *
+ * @param clock         clock for creation timestamps and date placeholders
+ * @param deterministic whether random placeholders are derived from the seed
+ * @param seed          seed for deterministic mode
+ */
+public record GenerationSettings(Clock clock, boolean deterministic, long seed) {
+
+    /** Fixed creation time (ISO-8601 instant) that switches on deterministic mode */
+    public static final String TIME_PROPERTY = "easysepa.deterministic.time";
+    /** Seed for deterministic mode, 0 if not set */
+    public static final String SEED_PROPERTY = "easysepa.deterministic.seed";
+
+    /**
+     * System clock and random placeholders
+     */
+    public static GenerationSettings live() {
+        return live(Clock.systemDefaultZone());
+    }
+
+    public static GenerationSettings live(Clock clock) {
+        return new GenerationSettings(clock, false, 0L);
+    }
+
+    /**
+     * Fixed time and seeded placeholders
+     */
+    public static GenerationSettings deterministic(Instant time, ZoneId zone, long seed) {
+        return new GenerationSettings(Clock.fixed(time, zone), true, seed);
+    }
+
+    /**
+     * Deterministic mode if {@value #TIME_PROPERTY} is set, for scheduled and regression runs; live otherwise
+     *
+     * @throws IllegalArgumentException if a property is malformed
+     */
+    public static GenerationSettings fromSystemProperties() {
+        String time = System.getProperty(TIME_PROPERTY);
+        if (time == null || time.isBlank()) {
+            return live();
+        }
+        try {
+            String seed = System.getProperty(SEED_PROPERTY, "0");
+            return deterministic(Instant.parse(time.trim()), ZoneId.systemDefault(), Long.parseLong(seed.trim()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Ungültige Einstellung für den deterministischen Modus: " + e.getMessage(), e);
+        }
+    }
+}
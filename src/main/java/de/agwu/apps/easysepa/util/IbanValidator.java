@@ -0,0 +1,135 @@
+package de.agwu.apps.easysepa.util;
+
+/**
+ * Full IBAN validation according to ISO 13616: country code, country-specific length and mod-97 check digits.
+ * Works on {@link CharSequence} slices and allocates nothing, so it can run directly on tokenizer buffers.
+ */
+public final class IbanValidator {
+
+    public static final int VALID = 0;
+    public static final int MALFORMED = 1;
+    public static final int UNKNOWN_COUNTRY = 2;
+    public static final int WRONG_LENGTH = 3;
+    public static final int WRONG_CHECKSUM = 4;
+
+    /** IBAN length per country, indexed by (first letter * 26 + second letter); 0 = not a SEPA country */
+    private static final byte[] LENGTHS = new byte[26 * 26];
+
+    static {
+        register("AD", 24); // Andorra
+        register("AL", 28); // Albania
+        register("AT", 20); // Austria
+        register("BE", 16); // Belgium
+        register("BG", 22); // Bulgaria
+        register("CH", 21); // Switzerland
+        register("CY", 28); // Cyprus
+        register("CZ", 24); // Czech Republic
+        register("DE", 22); // Germany
+        register("DK", 18); // Denmark
+        register("EE", 20); // Estonia
+        register("ES", 24); // Spain
+        register("FI", 18); // Finland (incl. Åland)
+        register("FR", 27); // France (incl. overseas departments)
+        register("GB", 22); // United Kingdom (incl. Guernsey, Jersey, Isle of Man)
+        register("GI", 23); // Gibraltar
+        register("GR", 27); // Greece
+        register("HR", 21); // Croatia
+        register("HU", 28); // Hungary
+        register("IE", 22); // Ireland
+        register("IS", 26); // Iceland
+        register("IT", 27); // Italy
+        register("LI", 21); // Liechtenstein
+        register("LT", 20); // Lithuania
+        register("LU", 20); // Luxembourg
+        register("LV", 21); // Latvia
+        register("MC", 27); // Monaco
+        register("MD", 24); // Moldova
+        register("ME", 22); // Montenegro
+        register("MK", 19); // North Macedonia
+        register("MT", 31); // Malta
+        register("NL", 18); // Netherlands
+        register("NO", 15); // Norway
+        register("PL", 28); // Poland
+        register("PT", 25); // Portugal
+        register("RO", 24); // Romania
+        register("SE", 24); // Sweden
+        register("SI", 19); // Slovenia
+        register("SK", 24); // Slovakia
+        register("SM", 27); // San Marino
+        register("VA", 22); // Vatican City
+    }
+
+    private IbanValidator() {
+        // Utility class
+    }
+
+    private static void register(String countryCode, int length) {
+        LENGTHS[countryIndex(countryCode.charAt(0), countryCode.charAt(1))] = (byte) length;
+    }
+
+    private static int countryIndex(char first, char second) {
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    /**
+     * Expected IBAN length for a country code, or 0 if the country is not part of the SEPA scheme
+     */
+    public static int expectedLength(char first, char second) {
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+            return 0;
+        }
+        return LENGTHS[countryIndex(first, second)];
+    }
+
+    public static boolean isValid(CharSequence iban) {
+        return check(iban, 0, iban.length()) == VALID;
+    }
+
+    public static boolean isValid(CharSequence value, int start, int end) {
+        return check(value, start, end) == VALID;
+    }
+
+    public static int check(CharSequence iban) {
+        return check(iban, 0, iban.length());
+    }
+
+    /**
+     * Validate the IBAN in {@code value[start, end)} (electronic format, no spaces)
+     *
+     * @return one of {@link #VALID}, {@link #MALFORMED}, {@link #UNKNOWN_COUNTRY},
+     *         {@link #WRONG_LENGTH}, {@link #WRONG_CHECKSUM}
+     */
+    public static int check(CharSequence value, int start, int end) {
+        int length = end - start;
+        if (length < 5 || length > 34) {
+            return MALFORMED;
+        }
+        char first = value.charAt(start);
+        char second = value.charAt(start + 1);
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z'
+                || !isDigit(value.charAt(start + 2)) || !isDigit(value.charAt(start + 3))) {
+            return MALFORMED;
+        }
+
+        // The check digits are computed over BBAN + country code + check digits
+        int remainder = Mod97.update(0, value, start + 4, end);
+        if (remainder < 0) {
+            return MALFORMED;
+        }
+
+        int expected = LENGTHS[countryIndex(first, second)];
+        if (expected == 0) {
+            return UNKNOWN_COUNTRY;
+        }
+        if (expected != length) {
+            return WRONG_LENGTH;
+        }
+
+        remainder = Mod97.update(remainder, value, start, start + 4);
+        return remainder == 1 ? VALID : WRONG_CHECKSUM;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+}
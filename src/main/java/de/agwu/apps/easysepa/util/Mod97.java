@@ -0,0 +1,45 @@
+package de.agwu.apps.easysepa.util;
+
+/**
+ * ISO 7064 MOD 97-10 kernel shared by the IBAN, creditor identifier and RF reference checks.
+ * The remainder is carried across calls, so a check can be fed from several slices of a value
+ * (e.g. the rearranged parts of an IBAN) without building an intermediate string.
+ */
+public final class Mod97 {
+
+    /** Returned by {@link #update} if a character is not alphanumeric */
+    public static final int INVALID = -1;
+
+    private Mod97() {
+        // Utility class
+    }
+
+    /**
+     * Continue a mod-97 computation over {@code value[start, end)}.
+     * Digits count as their value, letters as two digits (A=10 ... Z=35, case-insensitive).
+     *
+     * @return the new remainder, or {@link #INVALID} if a character is not alphanumeric
+     */
+    public static int update(int remainder, CharSequence value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                remainder = (remainder * 10 + (ch - '0')) % 97;
+            } else if (ch >= 'A' && ch <= 'Z') {
+                remainder = (remainder * 100 + (ch - 'A' + 10)) % 97;
+            } else if (ch >= 'a' && ch <= 'z') {
+                remainder = (remainder * 100 + (ch - 'a' + 10)) % 97;
+            } else {
+                return INVALID;
+            }
+        }
+        return remainder;
+    }
+
+    /**
+     * Check digits (2..98) for a remainder computed over the payload followed by "00"
+     */
+    public static int checkDigits(int remainder) {
+        return 98 - remainder;
+    }
+}
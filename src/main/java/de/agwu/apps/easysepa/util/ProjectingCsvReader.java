@@ -0,0 +1,195 @@
+package de.agwu.apps.easysepa.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CSV reader that only materialises the columns it is asked for. After {@link #setProjection(int...)}
+ * every other field is scanned for separators, quotes and line breaks but never copied into a String,
+ * so a mapping that uses 9 of 60 columns allocates 9 Strings per row.
+ * <p>
+ * Quoting follows RFC 4180: a field starting with the quote character (after optional blanks) runs to the
+ * closing quote, a doubled quote stands for one quote, and line breaks inside quotes are kept as {@code \n}.
+ * Records end at {@code \r\n}, {@code \n} or {@code \r}; an empty line is a record with one empty field.
+ */
+public final class ProjectingCsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader input;
+    private final char separator;
+    private final char quoteChar;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    private boolean[] projected;
+    private int width = -1;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> allFields = new ArrayList<>();
+
+    public ProjectingCsvReader(Reader input, char separator) {
+        this(input, separator, '"');
+    }
+
+    public ProjectingCsvReader(Reader input, char separator, char quoteChar) {
+        this.input = input;
+        this.separator = separator;
+        this.quoteChar = quoteChar;
+    }
+
+    /**
+     * Restrict the following records to the given column indexes; negative indexes are ignored.
+     * Records then have at most as many entries as the highest projected column plus one, and
+     * entries of other columns are null.
+     */
+    public void setProjection(int... columns) {
+        int highest = -1;
+        for (int column : columns) {
+            highest = Math.max(highest, column);
+        }
+        projected = new boolean[highest + 1];
+        for (int column : columns) {
+            if (column >= 0) {
+                projected[column] = true;
+            }
+        }
+        width = highest + 1;
+    }
+
+    /**
+     * Read the next record, or null at the end of the input
+     */
+    public String[] readNext() throws IOException {
+        if (position == limit && !fill()) {
+            return null;
+        }
+        if (width < 0) {
+            allFields.clear();
+            readRecord(null);
+            return allFields.toArray(new String[0]);
+        }
+        String[] record = new String[width];
+        int fields = readRecord(record);
+        return fields < width ? Arrays.copyOf(record, fields) : record;
+    }
+
+    /**
+     * Parse one record, storing fields into the projection array or, without projection, into
+     * {@link #allFields}; returns the number of fields of the record
+     */
+    private int readRecord(String[] record) throws IOException {
+        int column = 0;
+        while (true) {
+            boolean keep = record == null || (column < width && projected[column]);
+            int end = readField(keep);
+            if (keep) {
+                String value = field.toString();
+                if (record == null) {
+                    allFields.add(value);
+                } else {
+                    record[column] = value;
+                }
+                field.setLength(0);
+            }
+            column++;
+            if (end != separator) {
+                return column;
+            }
+        }
+    }
+
+    /**
+     * Scan one field, appending it to {@link #field} if it is kept.
+     *
+     * @return the separator if another field follows, otherwise '\n'
+     */
+    private int readField(boolean keep) throws IOException {
+        boolean quoted = false;
+        boolean leadingBlanks = true;
+        while (true) {
+            if (position == limit && !fill()) {
+                return '\n';
+            }
+            char ch = buffer[position++];
+            if (quoted) {
+                if (ch == quoteChar) {
+                    if (peek() == quoteChar) {
+                        position++;
+                        if (keep) {
+                            field.append(quoteChar);
+                        }
+                    } else {
+                        quoted = false;
+                    }
+                } else if (ch == '\r') {
+                    skipLineFeed();
+                    if (keep) {
+                        field.append('\n');
+                    }
+                } else if (keep) {
+                    field.append(ch);
+                }
+            } else if (ch == separator) {
+                return separator;
+            } else if (ch == '\n') {
+                return '\n';
+            } else if (ch == '\r') {
+                skipLineFeed();
+                return '\n';
+            } else if (ch == quoteChar && leadingBlanks) {
+                quoted = true;
+                leadingBlanks = false;
+                if (keep) {
+                    // Blanks before the opening quote are not part of the value
+                    field.setLength(0);
+                }
+            } else {
+                leadingBlanks &= ch == ' ' || ch == '\t';
+                if (keep) {
+                    field.append(ch);
+                }
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private void skipLineFeed() throws IOException {
+        if (peek() == '\n') {
+            position++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        int read;
+        do {
+            read = input.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,223 @@
+package de.agwu.apps.easysepa.util;
+
+import java.text.Normalizer;
+
+/**
+ * Transliterates text to the character set accepted by the banks.
+ * Replacements are looked up in precomputed tables; values that are already clean are returned
+ * unchanged without allocating.
+ */
+public final class SepaCharsetTransliterator {
+
+    /**
+     * Accepted character set
+     */
+    public enum Profile {
+        /** EPC basic Latin: a-z A-Z 0-9 / - ? : ( ) . , ' + space */
+        EPC_BASIC,
+        /** German banking industry (DK) set: EPC basic plus ÄÖÜäöüß & * $ % */
+        GERMAN_EXTENDED
+    }
+
+    /** Replacement for characters without a sensible transliteration */
+    private static final String UNKNOWN = ".";
+
+    private static final int LATIN_LIMIT = 0x0250;
+    private static final int PUNCTUATION_START = 0x2000;
+    private static final int PUNCTUATION_END = 0x20B0;
+
+    private static final SepaCharsetTransliterator EPC_BASIC = new SepaCharsetTransliterator(Profile.EPC_BASIC);
+    private static final SepaCharsetTransliterator GERMAN_EXTENDED = new SepaCharsetTransliterator(Profile.GERMAN_EXTENDED);
+
+    private final Profile profile;
+    /** Replacement per character below {@link #LATIN_LIMIT}; null = character is allowed */
+    private final String[] latin = new String[LATIN_LIMIT];
+    /** Replacement per character of the general punctuation and currency blocks */
+    private final String[] punctuation = new String[PUNCTUATION_END - PUNCTUATION_START];
+
+    private SepaCharsetTransliterator(Profile profile) {
+        this.profile = profile;
+        buildTables(profile == Profile.GERMAN_EXTENDED);
+    }
+
+    public static SepaCharsetTransliterator forProfile(Profile profile) {
+        return profile == Profile.GERMAN_EXTENDED ? GERMAN_EXTENDED : EPC_BASIC;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Transliterate a value and optionally cut it to a maximum length
+     *
+     * @param maxLength maximum length of the result, or 0 for no limit
+     * @return the value itself if it is clean and short enough
+     */
+    public String transliterate(String value, int maxLength) {
+        if (value == null) {
+            return null;
+        }
+        int length = value.length();
+        int limit = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+
+        // Fast path: scan for the first character that needs a replacement
+        int clean = 0;
+        while (clean < length && replacementFor(value.charAt(clean)) == null) {
+            clean++;
+        }
+        if (clean == length) {
+            return length <= limit ? value : value.substring(0, limit);
+        }
+        if (clean >= limit) {
+            return value.substring(0, limit);
+        }
+
+        StringBuilder result = new StringBuilder(Math.min(length + 8, limit));
+        result.append(value, 0, clean);
+        for (int i = clean; i < length && result.length() < limit; i++) {
+            char ch = value.charAt(i);
+            String replacement = replacementFor(ch);
+            if (replacement == null) {
+                result.append(ch);
+            } else {
+                result.append(replacement);
+            }
+        }
+        if (result.length() > limit) {
+            result.setLength(limit);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Check whether a value only contains allowed characters
+     */
+    public boolean isClean(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (replacementFor(value.charAt(i)) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String replacementFor(char ch) {
+        if (ch < LATIN_LIMIT) {
+            return latin[ch];
+        }
+        if (ch >= PUNCTUATION_START && ch < PUNCTUATION_END) {
+            return punctuation[ch - PUNCTUATION_START];
+        }
+        return UNKNOWN;
+    }
+
+    private void buildTables(boolean germanExtended) {
+        for (char ch = 0; ch < LATIN_LIMIT; ch++) {
+            latin[ch] = defaultReplacement(ch);
+        }
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            latin[ch] = null;
+            latin[Character.toUpperCase(ch)] = null;
+        }
+        for (char ch = '0'; ch <= '9'; ch++) {
+            latin[ch] = null;
+        }
+        for (char ch : "/-?:().,'+ ".toCharArray()) {
+            latin[ch] = null;
+        }
+
+        // ASCII characters outside the set
+        latin['&'] = "+";
+        latin['"'] = "'";
+        latin['`'] = "'";
+        latin['_'] = "-";
+        latin['='] = "-";
+        latin[';'] = ",";
+        latin['<'] = "(";
+        latin['>'] = ")";
+        latin['['] = "(";
+        latin[']'] = ")";
+        latin['{'] = "(";
+        latin['}'] = ")";
+        latin['\\'] = "/";
+        latin['|'] = "/";
+        latin['\t'] = " ";
+        latin['\r'] = " ";
+        latin['\n'] = " ";
+
+        // Latin-1 supplement and Latin Extended-A/B
+        latin['\u00A0'] = " ";
+        latin['Ä'] = "Ae";
+        latin['Ö'] = "Oe";
+        latin['Ü'] = "Ue";
+        latin['ä'] = "ae";
+        latin['ö'] = "oe";
+        latin['ü'] = "ue";
+        latin['ß'] = "ss";
+        latin['Æ'] = "AE";
+        latin['æ'] = "ae";
+        latin['Ø'] = "O";
+        latin['ø'] = "o";
+        latin['Ð'] = "D";
+        latin['ð'] = "d";
+        latin['Þ'] = "TH";
+        latin['þ'] = "th";
+        latin['Đ'] = "D";
+        latin['đ'] = "d";
+        latin['Ł'] = "L";
+        latin['ł'] = "l";
+        latin['Œ'] = "OE";
+        latin['œ'] = "oe";
+        latin['ı'] = "i";
+        latin['´'] = "'";
+        latin['«'] = "'";
+        latin['»'] = "'";
+        latin['×'] = "x";
+
+        if (germanExtended) {
+            for (char ch : "ÄÖÜäöüß&*$%".toCharArray()) {
+                latin[ch] = null;
+            }
+        }
+
+        for (int i = 0; i < punctuation.length; i++) {
+            punctuation[i] = UNKNOWN;
+        }
+        for (char ch = '\u2000'; ch <= '\u200A'; ch++) {
+            setPunctuation(ch, " "); // typographic spaces
+        }
+        setPunctuation('\u202F', " ");
+        for (char ch = '\u2010'; ch <= '\u2015'; ch++) {
+            setPunctuation(ch, "-"); // hyphens and dashes
+        }
+        for (char ch = '\u2018'; ch <= '\u201F'; ch++) {
+            setPunctuation(ch, "'"); // smart quotes
+        }
+        setPunctuation('\u2032', "'");
+        setPunctuation('\u2033', "'");
+        setPunctuation('\u2039', "'");
+        setPunctuation('\u203A', "'");
+        setPunctuation('\u2026', "...");
+        setPunctuation('\u20AC', "EUR");
+    }
+
+    private void setPunctuation(char ch, String replacement) {
+        punctuation[ch - PUNCTUATION_START] = replacement;
+    }
+
+    /**
+     * Base letter of an accented character (é -> e), or {@link #UNKNOWN}
+     */
+    private static String defaultReplacement(char ch) {
+        if (ch < 0x80) {
+            return Character.isISOControl(ch) ? "" : UNKNOWN;
+        }
+        String decomposed = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD);
+        char base = decomposed.charAt(0);
+        if ((base >= 'a' && base <= 'z') || (base >= 'A' && base <= 'Z')) {
+            return String.valueOf(base);
+        }
+        return Character.isISOControl(ch) ? "" : UNKNOWN;
+    }
+}
@@ -0,0 +1,220 @@
+package de.agwu.apps.easysepa.util;
+
+/**
+ * Regex-free syntax checks for SEPA field values.
+ * All checks work directly on the characters and allocate nothing, so they can run on every CSV row.
+ */
+public final class SepaValueChecks {
+
+    /** Largest amount accepted, in cents (999,999,999.99) */
+    public static final long MAX_AMOUNT_CENTS = 99_999_999_999L;
+
+    /** Amount check results */
+    public static final int AMOUNT_VALID = 0;
+    public static final int AMOUNT_MALFORMED = 1;
+    public static final int AMOUNT_NOT_POSITIVE = 2;
+    public static final int AMOUNT_TOO_LARGE = 3;
+
+    private SepaValueChecks() {
+        // Utility class
+    }
+
+    /**
+     * BIC syntax of ISO 9362:2014 as used by the current pain XSDs: [A-Z0-9]{4}[A-Z]{2}[A-Z0-9]{2}([A-Z0-9]{3})?.
+     * Older schemas such as pain.001.001.03 restrict the location code further; that is left to their XSD pattern.
+     */
+    public static boolean isBic(CharSequence value) {
+        int length = value.length();
+        if (length != 8 && length != 11) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            boolean countryCode = i == 4 || i == 5;
+            if (!isUpperLetter(ch) && (countryCode || !isDigit(ch))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check an amount in SEPA notation (digits, optional dot with 1-2 decimals).
+     *
+     * @return one of the {@code AMOUNT_*} constants
+     */
+    public static int checkAmount(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        long cents = 0;
+        int integerDigits = 0;
+        while (i < length && isDigit(value.charAt(i))) {
+            if (cents <= MAX_AMOUNT_CENTS) {
+                cents = cents * 10 + (value.charAt(i) - '0');
+            }
+            integerDigits++;
+            i++;
+        }
+        if (integerDigits == 0) {
+            return AMOUNT_MALFORMED;
+        }
+        cents *= 100;
+        if (i < length) {
+            if (value.charAt(i) != '.') {
+                return AMOUNT_MALFORMED;
+            }
+            int decimals = length - i - 1;
+            if (decimals < 1 || decimals > 2) {
+                return AMOUNT_MALFORMED;
+            }
+            char first = value.charAt(i + 1);
+            if (!isDigit(first)) {
+                return AMOUNT_MALFORMED;
+            }
+            cents += (first - '0') * 10L;
+            if (decimals == 2) {
+                char second = value.charAt(i + 2);
+                if (!isDigit(second)) {
+                    return AMOUNT_MALFORMED;
+                }
+                cents += second - '0';
+            }
+        }
+        if (cents <= 0) {
+            return AMOUNT_NOT_POSITIVE;
+        }
+        if (cents > MAX_AMOUNT_CENTS) {
+            return AMOUNT_TOO_LARGE;
+        }
+        return AMOUNT_VALID;
+    }
+
+    /**
+     * ISO date (YYYY-MM-DD) that exists in the calendar
+     */
+    public static boolean isIsoDate(CharSequence value) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return false;
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+        return year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month);
+    }
+
+    /**
+     * Creditor identifier syntax: country code, check digits, 3-35 alphanumeric characters.
+     * German creditor identifiers must have exactly 18 characters.
+     */
+    public static boolean isCreditorIdSyntax(CharSequence value) {
+        int length = value.length();
+        if (length < 7 || length > 39) {
+            return false;
+        }
+        if (!isUpperLetter(value.charAt(0)) || !isUpperLetter(value.charAt(1))
+                || !isDigit(value.charAt(2)) || !isDigit(value.charAt(3))) {
+            return false;
+        }
+        for (int i = 4; i < length; i++) {
+            char ch = value.charAt(i);
+            if (!isUpperLetter(ch) && !isDigit(ch)) {
+                return false;
+            }
+        }
+        return !(value.charAt(0) == 'D' && value.charAt(1) == 'E' && length != 18);
+    }
+
+    /**
+     * Creditor identifier with valid check digits.
+     * The check digits cover the national identifier and the country code; the business code
+     * (positions 5-7) is not part of the computation.
+     */
+    public static boolean isCreditorId(CharSequence value) {
+        if (!isCreditorIdSyntax(value)) {
+            return false;
+        }
+        int remainder = Mod97.update(0, value, 7, value.length());
+        return Mod97.update(remainder, value, 0, 4) == 1;
+    }
+
+    /**
+     * Direct debit sequence type (FRST, RCUR, OOFF, FNAL)
+     */
+    public static boolean isSequenceType(CharSequence value) {
+        if (value.length() != 4) {
+            return false;
+        }
+        return contentEquals(value, "FRST") || contentEquals(value, "RCUR")
+                || contentEquals(value, "OOFF") || contentEquals(value, "FNAL");
+    }
+
+    /**
+     * Boolean literal (true/false, case-insensitive)
+     */
+    public static boolean isBoolean(CharSequence value) {
+        return equalsIgnoreCase(value, "true") || equalsIgnoreCase(value, "false");
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    public static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Parse a fixed run of ASCII digits, returns -1 if any character is not a digit
+     */
+    public static int parseDigits(CharSequence value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char ch = value.charAt(i);
+            if (!isDigit(ch)) {
+                return -1;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return result;
+    }
+
+    private static boolean contentEquals(CharSequence value, String expected) {
+        if (value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (value.charAt(i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence value, String expected) {
+        if (value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                ch = (char) (ch + ('a' - 'A'));
+            }
+            if (ch != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isUpperLetter(char ch) {
+        return ch >= 'A' && ch <= 'Z';
+    }
+}
@@ -0,0 +1,231 @@
+package de.agwu.apps.easysepa.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Named counters that continue across runs and are shared between concurrent processes.
+ * <p>
+ * Each sequence is a small memory-mapped file holding the first value nobody has reserved yet.
+ * A process reserves a block of values under a file lock and forces the new mark to disk before
+ * handing out any of them, so values are never issued twice, even after a crash; a crash only
+ * leaves a gap. Within a block values are drawn without file access. On {@link #close()} the unused rest of
+ * the last block is returned if no other process has reserved behind it.
+ */
+public final class SequenceStore implements Closeable {
+
+    public static final String DEFAULT_DIRECTORY = "config/sequences";
+    private static final String FILE_EXTENSION = ".seq";
+    private static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    // File layout: magic, next unreserved value
+    private static final long MAGIC = 0x455A5345510001L;
+    private static final int FILE_SIZE = 16;
+    private static final int MARK_OFFSET = 8;
+
+    private static volatile SequenceStore defaultStore;
+
+    private final Path directory;
+    private final int blockSize;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    // Draws share the lock, close takes it exclusively, so no sequence is opened or reserved after close
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public SequenceStore(Path directory) {
+        this(directory, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize values reserved per file access
+     */
+    public SequenceStore(Path directory, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Blockgröße muss positiv sein: " + blockSize);
+        }
+        this.directory = directory;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Store in {@value #DEFAULT_DIRECTORY}, closed when the JVM shuts down
+     */
+    public static SequenceStore getDefault() {
+        SequenceStore store = defaultStore;
+        if (store == null) {
+            synchronized (SequenceStore.class) {
+                store = defaultStore;
+                if (store == null) {
+                    SequenceStore created = new SequenceStore(Paths.get(DEFAULT_DIRECTORY));
+                    Runtime.getRuntime().addShutdownHook(new Thread(created::close, "sequence-store-close"));
+                    defaultStore = store = created;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Next value of a sequence
+     *
+     * @param start first value if the sequence does not exist yet
+     * @throws UncheckedIOException if the sequence file cannot be read or written
+     */
+    public long next(String name, long start) {
+        lifecycle.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Sequenzspeicher ist geschlossen");
+            }
+            return sequences.computeIfAbsent(sanitizeName(name), key -> open(key, start)).next();
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return unused reserved values and release all files
+     */
+    @Override
+    public void close() {
+        lifecycle.writeLock().lock();
+        try {
+            closed = true;
+            for (Sequence sequence : sequences.values()) {
+                sequence.close();
+            }
+            sequences.clear();
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+    }
+
+    private Sequence open(String name, long start) {
+        try {
+            Files.createDirectories(directory);
+            FileChannel channel = FileChannel.open(directory.resolve(name + FILE_EXTENSION),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    boolean empty = channel.size() == 0;
+                    if (!empty && channel.size() != FILE_SIZE) {
+                        throw new IOException("Sequenzdatei ungültig: " + name + FILE_EXTENSION);
+                    }
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+                    // A crash before the first force leaves the magic zero; no value was handed out yet
+                    if (empty || buffer.getLong(0) == 0) {
+                        buffer.putLong(MARK_OFFSET, start);
+                        buffer.putLong(0, MAGIC);
+                        buffer.force();
+                    } else if (buffer.getLong(0) != MAGIC) {
+                        throw new IOException("Sequenzdatei ungültig: " + name + FILE_EXTENSION);
+                    }
+                    return new Sequence(channel, buffer);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sequenz " + name + " konnte nicht geöffnet werden: " + e.getMessage(), e);
+        }
+    }
+
+    private static String sanitizeName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Sequenzname darf nicht leer sein");
+        }
+        return name.trim().replaceAll("[^a-zA-Z0-9_\\-]", "_");
+    }
+
+    /**
+     * One sequence file and the block of values this process has reserved from it
+     */
+    private final class Sequence {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong next = new AtomicLong(Long.MIN_VALUE);
+        private volatile long limit = Long.MIN_VALUE;
+
+        Sequence(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        long next() {
+            while (true) {
+                long value = next.get();
+                if (value < limit) {
+                    if (next.compareAndSet(value, value + 1)) {
+                        return value;
+                    }
+                } else {
+                    reserve();
+                }
+            }
+        }
+
+        /**
+         * Reserve the next block unless another thread already did
+         */
+        private synchronized void reserve() {
+            if (next.get() < limit) {
+                return;
+            }
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    long low = buffer.getLong(MARK_OFFSET);
+                    long high = Math.addExact(low, blockSize);
+                    buffer.putLong(MARK_OFFSET, high);
+                    buffer.force();
+                    // The block start is published before the limit, so no thread draws from the old range
+                    next.set(low);
+                    limit = high;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Sequenz konnte nicht reserviert werden: " + e.getMessage(), e);
+            }
+        }
+
+        synchronized void close() {
+            // Claim the rest of the block first, so a draw racing with close cannot succeed any more
+            long unused = next.getAndSet(Long.MAX_VALUE);
+            long reserved = limit;
+            limit = Long.MIN_VALUE;
+            try (channel) {
+                if (unused < reserved) {
+                    FileLock lock = channel.lock();
+                    try {
+                        if (buffer.getLong(MARK_OFFSET) == reserved) {
+                            buffer.putLong(MARK_OFFSET, unused);
+                            buffer.force();
+                        }
+                    } finally {
+                        lock.release();
+                    }
+                }
+            } catch (IOException e) {
+                // Unused values stay reserved; the sequence only gets a gap
+            }
+        }
+    }
+}
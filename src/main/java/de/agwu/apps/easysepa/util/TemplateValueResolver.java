@@ -1,22 +1,29 @@
 package de.agwu.apps.easysepa.util;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
 
 /**
  * Parses and evaluates dynamic placeholder expressions that can be used in default values.
+ * Compiled expressions and bindings are immutable apart from atomic counters, so they can be
+ * rendered from many threads at once.
  */
 public final class TemplateValueResolver {
 
@@ -26,8 +33,24 @@ public final class TemplateValueResolver {
 
     /**
      * Compile the provided template string. Returns empty when the template does not contain placeholders.
+     * {@code {seq:...}} placeholders use {@link SequenceStore#getDefault()}.
      */
     public static Optional<TemplateExpression> compile(String template) {
+        return compile(template, null);
+    }
+
+    /**
+     * Whether the template draws from a persistent {@code {seq:...}} counter, so its values differ
+     * between runs even in deterministic mode
+     */
+    public static boolean usesPersistentSequence(String template) {
+        return compile(template).map(TemplateExpression::usesPersistentSequence).orElse(false);
+    }
+
+    /**
+     * Compile a template whose {@code {seq:...}} placeholders draw from the given store
+     */
+    public static Optional<TemplateExpression> compile(String template, SequenceStore sequences) {
         if (template == null) {
             return Optional.empty();
         }
@@ -37,6 +60,7 @@ public final class TemplateValueResolver {
 
         List<Segment> segments = new ArrayList<>();
         Map<String, Placeholder> placeholderCache = new ConcurrentHashMap<>();
+        int[] counterSlots = {0};
 
         int index = 0;
         while (index < template.length()) {
@@ -60,14 +84,15 @@ public final class TemplateValueResolver {
             if (rawPlaceholder.isEmpty()) {
                 segments.add(new LiteralSegment("{}"));
             } else {
-                Placeholder placeholder = placeholderCache.computeIfAbsent(rawPlaceholder, TemplateValueResolver::createPlaceholder);
+                Placeholder placeholder = placeholderCache.computeIfAbsent(rawPlaceholder,
+                        raw -> createPlaceholder(raw, counterSlots, sequences));
                 segments.add(new PlaceholderSegment(placeholder));
             }
             index = end + 1;
         }
 
         return segments.stream().anyMatch(segment -> segment instanceof PlaceholderSegment)
-                ? Optional.of(new TemplateExpression(segments))
+                ? Optional.of(new TemplateExpression(segments, counterSlots[0], template.hashCode()))
                 : Optional.empty();
     }
 
@@ -75,10 +100,34 @@ public final class TemplateValueResolver {
      * Prepare a reusable binding helper for a set of key/value mappings that may contain placeholders.
      */
     public static TemplateBindings prepare(Map<String, String> values) {
+        return prepare(values, GenerationSettings.live());
+    }
+
+    /**
+     * Prepare bindings for one batch: the clock is read once, and placeholders that do not depend on
+     * the row (dates and times) are rendered right away, so templates like {@code {date}} become static values.
+     */
+    public static TemplateBindings prepare(Map<String, String> values, Clock clock) {
+        return prepare(values, GenerationSettings.live(clock));
+    }
+
+    /**
+     * Prepare bindings for one batch with the clock and, in deterministic mode, the seed of the settings
+     */
+    public static TemplateBindings prepare(Map<String, String> values, GenerationSettings settings) {
+        return prepare(values, settings, null);
+    }
+
+    /**
+     * Prepare bindings for one batch whose {@code {seq:...}} placeholders draw from the given store
+     */
+    public static TemplateBindings prepare(Map<String, String> values, GenerationSettings settings,
+                                           SequenceStore sequences) {
         if (values == null || values.isEmpty()) {
             return TemplateBindings.EMPTY;
         }
 
+        Snapshot snapshot = Snapshot.of(settings);
         Map<String, TemplateExpression> expressions = new ConcurrentHashMap<>();
         Map<String, String> staticValues = new ConcurrentHashMap<>();
 
@@ -88,40 +137,133 @@ public final class TemplateValueResolver {
             if (key == null) {
                 continue;
             }
-            compile(value).ifPresentOrElse(
-                    expression -> expressions.put(key, expression),
-                    () -> staticValues.put(key, value));
+            Optional<TemplateExpression> compiled = compile(value, sequences).map(expression -> expression.bind(snapshot, key));
+            if (compiled.isPresent() && !compiled.get().isConstant()) {
+                expressions.put(key, compiled.get());
+            } else {
+                staticValues.put(key, compiled.map(expression -> expression.render(1, 1, snapshot, ColumnValues.NONE))
+                        .orElse(value));
+            }
         }
 
-        return new TemplateBindings(expressions, staticValues);
+        return new TemplateBindings(expressions, staticValues, snapshot);
+    }
+
+    /**
+     * CSV values of the row being rendered, looked up by column name
+     */
+    @FunctionalInterface
+    public interface ColumnValues {
+        ColumnValues NONE = column -> null;
+
+        /**
+         * @return the value, or null if the row has no such column
+         */
+        String get(String column);
     }
 
     public static final class TemplateExpression {
         private final List<Segment> segments;
+        private final int counterSlots;
+        // Distinguishes the random values of different templates in deterministic mode
+        private final long salt;
 
-        private TemplateExpression(List<Segment> segments) {
+        private TemplateExpression(List<Segment> segments, int counterSlots, long salt) {
             this.segments = segments;
+            this.counterSlots = counterSlots;
+            this.salt = salt;
         }
 
-        public synchronized String render(int transactionIndex, int rowNumber) {
-            TemplateContext context = TemplateContext.now(transactionIndex, rowNumber);
+        /**
+         * Render with the current time; counters advance once per call
+         */
+        public String render(int transactionIndex, int rowNumber) {
+            return render(transactionIndex, rowNumber, ColumnValues.NONE);
+        }
+
+        /**
+         * Render with the current time and the CSV values of the row
+         *
+         * @throws IllegalArgumentException if a row value cannot be used, e.g. for {@code {rf:...}}
+         */
+        public String render(int transactionIndex, int rowNumber, ColumnValues columns) {
+            return render(transactionIndex, rowNumber, Snapshot.of(GenerationSettings.live()), columns);
+        }
+
+        /**
+         * CSV columns read by placeholders such as {@code {rf:Rechnungsnummer}}
+         */
+        public Set<String> getReferencedColumns() {
+            Set<String> columns = new LinkedHashSet<>();
+            for (Segment segment : segments) {
+                if (segment instanceof PlaceholderSegment placeholderSegment
+                        && placeholderSegment.placeholder.referencedColumn() != null) {
+                    columns.add(placeholderSegment.placeholder.referencedColumn());
+                }
+            }
+            return columns;
+        }
+
+        /**
+         * Whether a placeholder draws from a {@link SequenceStore}
+         */
+        public boolean usesPersistentSequence() {
+            return segments.stream().anyMatch(segment -> segment instanceof PlaceholderSegment placeholderSegment
+                    && placeholderSegment.placeholder.isPersistent());
+        }
+
+        private String render(int transactionIndex, int rowNumber, Snapshot now, ColumnValues columns) {
+            TemplateContext context = new TemplateContext(transactionIndex, rowNumber, now, counterSlots, salt, columns);
             StringBuilder builder = new StringBuilder();
             for (Segment segment : segments) {
                 segment.append(builder, context);
             }
             return builder.toString();
         }
+
+        /**
+         * Copy of this expression with the row-invariant placeholders rendered for the given time
+         * and merged with neighbouring literals; counters stay shared with this expression
+         */
+        private TemplateExpression bind(Snapshot now, String key) {
+            TemplateContext context = new TemplateContext(1, 1, now, 0, salt, ColumnValues.NONE);
+            List<Segment> bound = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (Segment segment : segments) {
+                if (segment.isRowInvariant()) {
+                    segment.append(literal, context);
+                    continue;
+                }
+                if (!literal.isEmpty()) {
+                    bound.add(new LiteralSegment(literal.toString()));
+                    literal.setLength(0);
+                }
+                bound.add(segment);
+            }
+            if (!literal.isEmpty()) {
+                bound.add(new LiteralSegment(literal.toString()));
+            }
+            return new TemplateExpression(List.copyOf(bound), counterSlots, salt * 31 + key.hashCode());
+        }
+
+        private boolean isConstant() {
+            return segments.stream().allMatch(Segment::isRowInvariant);
+        }
     }
 
     public static final class TemplateBindings {
-        private static final TemplateBindings EMPTY = new TemplateBindings(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        private static final TemplateBindings EMPTY = new TemplateBindings(new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>(), null);
 
         private final Map<String, TemplateExpression> expressions;
         private final Map<String, String> staticValues;
+        private final Snapshot snapshot;
 
-        private TemplateBindings(Map<String, TemplateExpression> expressions, Map<String, String> staticValues) {
+        private TemplateBindings(Map<String, TemplateExpression> expressions, Map<String, String> staticValues,
+                                 Snapshot snapshot) {
             this.expressions = expressions;
             this.staticValues = staticValues;
+            this.snapshot = snapshot;
         }
 
         public Map<String, String> resolveAll(int transactionIndex, int rowNumber) {
@@ -130,22 +272,43 @@ public final class TemplateValueResolver {
             }
             Map<String, String> resolved = new ConcurrentHashMap<>(staticValues);
             for (Map.Entry<String, TemplateExpression> entry : expressions.entrySet()) {
-                resolved.put(entry.getKey(), entry.getValue().render(transactionIndex, rowNumber));
+                resolved.put(entry.getKey(),
+                        entry.getValue().render(transactionIndex, rowNumber, snapshot, ColumnValues.NONE));
             }
             return resolved;
         }
 
         public String resolveValue(String key, int transactionIndex, int rowNumber) {
+            return resolveValue(key, transactionIndex, rowNumber, ColumnValues.NONE);
+        }
+
+        /**
+         * @throws IllegalArgumentException if a row value cannot be used, e.g. for {@code {rf:...}}
+         */
+        public String resolveValue(String key, int transactionIndex, int rowNumber, ColumnValues columns) {
             TemplateExpression expression = expressions.get(key);
             if (expression != null) {
-                return expression.render(transactionIndex, rowNumber);
+                return expression.render(transactionIndex, rowNumber, snapshot, columns);
             }
             return staticValues.get(key);
         }
+
+        /**
+         * CSV columns read by any of the bound templates
+         */
+        public Set<String> getReferencedColumns() {
+            Set<String> columns = new LinkedHashSet<>();
+            for (TemplateExpression expression : expressions.values()) {
+                columns.addAll(expression.getReferencedColumns());
+            }
+            return columns;
+        }
     }
 
     private interface Segment {
         void append(StringBuilder builder, TemplateContext context);
+
+        boolean isRowInvariant();
     }
 
     private static final class LiteralSegment implements Segment {
@@ -159,6 +322,11 @@ public final class TemplateValueResolver {
         public void append(StringBuilder builder, TemplateContext context) {
             builder.append(literal);
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return true;
+        }
     }
 
     private static final class PlaceholderSegment implements Segment {
@@ -172,13 +340,39 @@ public final class TemplateValueResolver {
         public void append(StringBuilder builder, TemplateContext context) {
             builder.append(placeholder.resolve(context));
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return placeholder.isRowInvariant();
+        }
     }
 
     private interface Placeholder {
         String resolve(TemplateContext context);
+
+        /**
+         * Whether the value only depends on the batch time, so it can be rendered once per batch
+         */
+        default boolean isRowInvariant() {
+            return false;
+        }
+
+        /**
+         * CSV column the value is computed from, or null
+         */
+        default String referencedColumn() {
+            return null;
+        }
+
+        /**
+         * Whether the value continues across runs
+         */
+        default boolean isPersistent() {
+            return false;
+        }
     }
 
-    private static Placeholder createPlaceholder(String rawPlaceholder) {
+    private static Placeholder createPlaceholder(String rawPlaceholder, int[] counterSlots, SequenceStore sequences) {
         String key;
         String argument = "";
         int separatorIndex = rawPlaceholder.indexOf(':');
@@ -190,13 +384,17 @@ public final class TemplateValueResolver {
         }
 
         return switch (key) {
-            case "id", "counter" -> new IdPlaceholder(argument);
+            case "id", "counter" -> new IdPlaceholder(argument, counterSlots[0]++);
+            case "seq", "sequence" -> new SequencePlaceholder(argument, counterSlots[0]++, sequences);
+            case "rf", "creditorreference" -> RfPlaceholder.create(argument, counterSlots, sequences);
             case "today", "date" -> new DatePlaceholder(argument);
             case "datetime", "timestamp" -> new DateTimePlaceholder(argument);
             case "time" -> new TimePlaceholder(argument);
             case "row", "rownumber" -> context -> Integer.toString(Math.max(1, context.getRowNumber()));
             case "index", "tx", "transaction" -> context -> Integer.toString(Math.max(1, context.getTransactionIndex()));
-            case "uuid" -> new UuidPlaceholder(argument);
+            case "uuid" -> new UuidPlaceholder(argument, false);
+            case "uuid7" -> new UuidPlaceholder(argument, true);
+            case "ulid" -> context -> TimeOrderedIdSource.current().nextUlid(context);
             case "random", "randomdigits" -> new RandomDigitsPlaceholder(argument);
             case "randomalpha" -> new RandomAlphaPlaceholder(argument, false);
             case "randomalnum", "randommixed" -> new RandomAlphaPlaceholder(argument, true);
@@ -204,26 +402,43 @@ public final class TemplateValueResolver {
         };
     }
 
+    /**
+     * Batch time and settings, captured once per batch
+     */
+    private record Snapshot(LocalDateTime dateTime, long epochMillis, GenerationSettings settings) {
+
+        static Snapshot of(GenerationSettings settings) {
+            Instant now = settings.clock().instant();
+            return new Snapshot(LocalDateTime.ofInstant(now, settings.clock().getZone()), now.toEpochMilli(), settings);
+        }
+    }
+
+    /**
+     * State of one render call. Counters are drawn at most once per call, so a counter used
+     * twice in a template yields the same value in both places.
+     */
     private static final class TemplateContext {
         private final int transactionIndex;
         private final int rowNumber;
-        private final LocalDate date;
+        private final Snapshot snapshot;
         private final LocalDateTime dateTime;
-        private final LocalTime time;
-        private final Map<Placeholder, String> cache = new IdentityHashMap<>();
+        private final long[] counterValues;
+        private final boolean[] drawnCounters;
+        private final ColumnValues columns;
+
+        private final long salt;
+        private RandomGenerator seededRandom;
 
-        private TemplateContext(int transactionIndex, int rowNumber, LocalDate date,
-                                LocalDateTime dateTime, LocalTime time) {
+        private TemplateContext(int transactionIndex, int rowNumber, Snapshot snapshot, int counterSlots, long salt,
+                                ColumnValues columns) {
+            this.salt = salt;
+            this.columns = columns;
             this.transactionIndex = transactionIndex;
             this.rowNumber = rowNumber;
-            this.date = date;
-            this.dateTime = dateTime;
-            this.time = time;
-        }
-
-        private static TemplateContext now(int transactionIndex, int rowNumber) {
-            LocalDateTime now = LocalDateTime.now();
-            return new TemplateContext(transactionIndex, rowNumber, now.toLocalDate(), now, now.toLocalTime());
+            this.snapshot = snapshot;
+            this.dateTime = snapshot.dateTime();
+            this.counterValues = new long[counterSlots];
+            this.drawnCounters = new boolean[counterSlots];
         }
 
         int getTransactionIndex() {
@@ -235,7 +450,7 @@ public final class TemplateValueResolver {
         }
 
         LocalDate getDate() {
-            return date;
+            return dateTime.toLocalDate();
         }
 
         LocalDateTime getDateTime() {
@@ -243,11 +458,45 @@ public final class TemplateValueResolver {
         }
 
         LocalTime getTime() {
-            return time;
+            return dateTime.toLocalTime();
+        }
+
+        long getEpochMillis() {
+            return snapshot.epochMillis();
+        }
+
+        boolean isDeterministic() {
+            return snapshot.settings().deterministic();
+        }
+
+        /**
+         * Random source for this call: thread-local normally; in deterministic mode a generator seeded from
+         * the settings seed and the row, so values do not depend on the order rows are rendered in
+         */
+        RandomGenerator random() {
+            if (!isDeterministic()) {
+                return ThreadLocalRandom.current();
+            }
+            if (seededRandom == null) {
+                long seed = snapshot.settings().seed();
+                seed = seed * 0x9E3779B97F4A7C15L + salt;
+                seed = seed * 0x9E3779B97F4A7C15L + transactionIndex;
+                seed = seed * 0x9E3779B97F4A7C15L + rowNumber;
+                seededRandom = new SplittableRandom(seed);
+            }
+            return seededRandom;
+        }
+
+        String getColumnValue(String column) {
+            return columns.get(column);
         }
 
-        String computeIfAbsent(Placeholder placeholder, Supplier<String> supplier) {
-            return cache.computeIfAbsent(placeholder, key -> supplier.get());
+        long counterValue(int slot, CounterPlaceholder counter) {
+            if (!drawnCounters[slot]) {
+                counterValues[slot] = counter.draw();
+                drawnCounters[slot] = true;
+            }
+            return counterValues[slot];
         }
     }
 
@@ -262,14 +511,27 @@ public final class TemplateValueResolver {
         public String resolve(TemplateContext context) {
             return literal;
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return true;
+        }
     }
 
-    private static final class IdPlaceholder implements Placeholder {
-        private long nextValue;
+    /**
+     * Placeholder whose value is drawn at most once per render call
+     */
+    private interface CounterPlaceholder extends Placeholder {
+        long draw();
+    }
+
+    private static final class IdPlaceholder implements CounterPlaceholder {
+        private final AtomicLong nextValue;
         private final long step;
         private final int padding;
+        private final int slot;
 
-        private IdPlaceholder(String argument) {
+        private IdPlaceholder(String argument, int slot) {
             long start = 1L;
             long stepValue = 1L;
             int pad = 0;
@@ -302,21 +564,125 @@ public final class TemplateValueResolver {
                     }
                 }
             }
-            this.nextValue = start;
+            this.nextValue = new AtomicLong(start);
             this.step = Math.max(1L, stepValue);
             this.padding = Math.max(0, pad);
+            this.slot = slot;
         }
 
         @Override
         public String resolve(TemplateContext context) {
-            return context.computeIfAbsent(this, () -> {
-                long current = nextValue;
-                nextValue += step;
-                if (padding > 0) {
-                    return String.format(Locale.ROOT, "%0" + padding + "d", current);
+            long current = context.counterValue(slot, this);
+            return padding > 0 ? zeroPad(current, padding) : Long.toString(current);
+        }
+
+        @Override
+        public long draw() {
+            return nextValue.getAndAdd(step);
+        }
+    }
+
+    /**
+     * Counter persisted in a {@link SequenceStore}: {@code {seq:name,start=1,pad=8}}. The start only
+     * applies when the sequence is created; afterwards it continues where the last run stopped.
+     */
+    private static final class SequencePlaceholder implements CounterPlaceholder {
+        private final String name;
+        private final long start;
+        private final int padding;
+        private final int slot;
+        private final SequenceStore sequences;
+
+        private SequencePlaceholder(String argument, int slot, SequenceStore sequences) {
+            String sequenceName = "default";
+            long startValue = 1L;
+            int pad = 0;
+            for (String raw : argument.split(",")) {
+                String part = raw.trim();
+                String lower = part.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("start=")) {
+                    startValue = parseLongSafely(part.substring(6), 1L);
+                } else if (lower.startsWith("pad=") || lower.startsWith("width=")) {
+                    pad = Math.max(0, parseIntSafely(part.substring(part.indexOf('=') + 1), 0));
+                } else if (!part.isEmpty()) {
+                    sequenceName = part;
                 }
-                return Long.toString(current);
-            });
+            }
+            this.name = sequenceName;
+            this.start = startValue;
+            this.padding = pad;
+            this.slot = slot;
+            this.sequences = sequences;
+        }
+
+        @Override
+        public String resolve(TemplateContext context) {
+            long current = context.counterValue(slot, this);
+            return padding > 0 ? zeroPad(current, padding) : Long.toString(current);
+        }
+
+        @Override
+        public long draw() {
+            return (sequences != null ? sequences : SequenceStore.getDefault()).next(name, start);
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return true;
+        }
+    }
+
+    /**
+     * ISO 11649 creditor reference computed from a CSV column ({@code {rf:Rechnungsnummer}} or
+     * {@code {rf:column=...}}), the row or transaction number ({@code {rf:row}}, {@code {rf:index}})
+     * or a persistent sequence ({@code {rf:seq=name}}). Values that cannot form a reference (empty,
+     * longer than 21 characters or not alphanumeric) are rejected with an {@link IllegalArgumentException}.
+     */
+    private static final class RfPlaceholder implements Placeholder {
+        private final String column;
+        private final Placeholder source;
+
+        private RfPlaceholder(String column, Placeholder source) {
+            this.column = column;
+            this.source = source;
+        }
+
+        static RfPlaceholder create(String argument, int[] counterSlots, SequenceStore sequences) {
+            String lower = argument.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("seq=")) {
+                return new RfPlaceholder(null,
+                        new SequencePlaceholder(argument.substring(4), counterSlots[0]++, sequences));
+            }
+            return switch (lower) {
+                case "row", "rownumber" -> new RfPlaceholder(null,
+                        context -> Integer.toString(Math.max(1, context.getRowNumber())));
+                case "index", "tx", "transaction" -> new RfPlaceholder(null,
+                        context -> Integer.toString(Math.max(1, context.getTransactionIndex())));
+                default -> new RfPlaceholder(
+                        lower.startsWith("column=") ? argument.substring(7).trim() : argument, null);
+            };
+        }
+
+        @Override
+        public String resolve(TemplateContext context) {
+            String reference = source != null ? source.resolve(context) : context.getColumnValue(column);
+            String trimmed = reference == null ? "" : reference.trim();
+            String structured = CreditorReference.create(trimmed);
+            if (structured == null) {
+                throw new IllegalArgumentException("RF-Referenz kann nicht aus \"" + trimmed
+                        + "\" gebildet werden (1 bis 21 Buchstaben und Ziffern)");
+            }
+            return structured;
+        }
+
+        @Override
+        public String referencedColumn() {
+            return column;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return source != null && source.isPersistent();
         }
     }
 
@@ -331,6 +697,11 @@ public final class TemplateValueResolver {
         public String resolve(TemplateContext context) {
             return context.getDate().format(formatter);
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return true;
+        }
     }
 
     private static final class DateTimePlaceholder implements Placeholder {
@@ -344,6 +715,11 @@ public final class TemplateValueResolver {
         public String resolve(TemplateContext context) {
             return context.getDateTime().format(formatter);
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return true;
+        }
     }
 
     private static final class TimePlaceholder implements Placeholder {
@@ -357,13 +733,24 @@ public final class TemplateValueResolver {
         public String resolve(TemplateContext context) {
             return context.getTime().format(formatter);
         }
+
+        @Override
+        public boolean isRowInvariant() {
+            return true;
+        }
     }
 
+    /**
+     * Random (version 4) or time-ordered (version 7) UUID built from a thread-local source instead of
+     * {@link UUID#randomUUID()}, whose shared {@code SecureRandom} contends when rows are mapped in parallel
+     */
     private static final class UuidPlaceholder implements Placeholder {
+        private final boolean timeOrdered;
         private final boolean stripDashes;
         private final int length;
 
-        private UuidPlaceholder(String argument) {
+        private UuidPlaceholder(String argument, boolean timeOrdered) {
+            this.timeOrdered = timeOrdered;
             boolean noDashes = false;
             int requestedLength = 0;
             if (!argument.isEmpty()) {
@@ -389,10 +776,21 @@ public final class TemplateValueResolver {
 
         @Override
         public String resolve(TemplateContext context) {
-            String value = UUID.randomUUID().toString();
-            if (stripDashes) {
-                value = value.replace("-", "");
+            long mostSignificant;
+            long leastSignificant;
+            if (timeOrdered) {
+                TimeOrderedIdSource source = TimeOrderedIdSource.current();
+                source.next(context);
+                mostSignificant = source.millis << 16 | 0x7000 | source.sequence;
+                leastSignificant = source.random;
+            } else {
+                RandomGenerator random = context.random();
+                mostSignificant = random.nextLong() & ~0xF000L | 0x4000L;
+                leastSignificant = random.nextLong();
             }
+            // RFC 9562 variant
+            leastSignificant = leastSignificant & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+            String value = formatUuid(mostSignificant, leastSignificant, !stripDashes);
             if (length > 0 && length < value.length()) {
                 return value.substring(0, length);
             }
@@ -400,6 +798,63 @@ public final class TemplateValueResolver {
         }
     }
 
+    /**
+     * Per-thread state for time-ordered IDs: 48 bits of epoch milliseconds, a 12-bit sequence that
+     * starts at a random value in every millisecond and keeps IDs of one thread strictly increasing,
+     * and random bits from {@link ThreadLocalRandom}. IDs of different threads are ordered by millisecond.
+     */
+    private static final class TimeOrderedIdSource {
+        private static final ThreadLocal<TimeOrderedIdSource> CURRENT = ThreadLocal.withInitial(TimeOrderedIdSource::new);
+        private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+        private long millis = -1;
+        private int sequence;
+        private long random;
+
+        static TimeOrderedIdSource current() {
+            return CURRENT.get();
+        }
+
+        void next(TemplateContext context) {
+            RandomGenerator threadRandom = context.random();
+            if (context.isDeterministic()) {
+                // Batch time plus the transaction index keeps IDs ordered by transaction
+                long offset = Math.max(0, context.getTransactionIndex() - 1);
+                millis = context.getEpochMillis() + offset / 0x1000;
+                sequence = (int) (offset % 0x1000);
+                random = threadRandom.nextLong();
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now > millis) {
+                millis = now;
+                // Leave room for at least 2048 increments within the millisecond
+                sequence = threadRandom.nextInt(0x800);
+            } else if (++sequence > 0xFFF) {
+                // Sequence exhausted or clock went backwards: borrow the next millisecond
+                millis++;
+                sequence = threadRandom.nextInt(0x800);
+            }
+            random = threadRandom.nextLong();
+        }
+
+        /**
+         * 26 characters of Crockford Base32: 48-bit time, 12-bit sequence and 68 random bits
+         */
+        String nextUlid(TemplateContext context) {
+            next(context);
+            long high = millis << 16 | (long) sequence << 4 | (random >>> 60);
+            long low = random << 4 | context.random().nextInt(16);
+            char[] chars = new char[26];
+            for (int i = chars.length - 1; i >= 0; i--) {
+                chars[i] = CROCKFORD[(int) (low & 31)];
+                low = low >>> 5 | high << 59;
+                high >>>= 5;
+            }
+            return new String(chars);
+        }
+    }
+
     private static final class RandomDigitsPlaceholder implements Placeholder {
         private final int length;
 
@@ -410,7 +865,7 @@ public final class TemplateValueResolver {
         @Override
         public String resolve(TemplateContext context) {
             StringBuilder builder = new StringBuilder(length);
-            ThreadLocalRandom random = ThreadLocalRandom.current();
+            RandomGenerator random = context.random();
             for (int i = 0; i < length; i++) {
                 builder.append(random.nextInt(10));
             }
@@ -429,7 +884,7 @@ public final class TemplateValueResolver {
 
         @Override
         public String resolve(TemplateContext context) {
-            ThreadLocalRandom random = ThreadLocalRandom.current();
+            RandomGenerator random = context.random();
             StringBuilder builder = new StringBuilder(length);
             for (int i = 0; i < length; i++) {
                 if (alphanumeric && random.nextBoolean()) {
@@ -443,6 +898,45 @@ public final class TemplateValueResolver {
         }
     }
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static String formatUuid(long mostSignificant, long leastSignificant, boolean dashes) {
+        char[] chars = new char[dashes ? 36 : 32];
+        int position = 0;
+        for (int nibble = 0; nibble < 32; nibble++) {
+            if (dashes && (nibble == 8 || nibble == 12 || nibble == 16 || nibble == 20)) {
+                chars[position++] = '-';
+            }
+            long bits = nibble < 16 ? mostSignificant : leastSignificant;
+            chars[position++] = HEX_DIGITS[(int) (bits >>> (60 - 4 * (nibble & 15))) & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Same result as {@code String.format("%0<width>d", value)}, written straight into a char buffer
+     */
+    private static String zeroPad(long value, int width) {
+        if (value < 0) {
+            return value == Long.MIN_VALUE ? Long.toString(value) : "-" + zeroPad(-value, width - 1);
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        char[] chars = new char[Math.max(width, digits)];
+        int position = chars.length;
+        long rest = value;
+        do {
+            chars[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        while (position > 0) {
+            chars[--position] = '0';
+        }
+        return new String(chars);
+    }
+
     private static DateTimeFormatter buildFormatter(String pattern, String fallback) {
         String resolvedPattern = (pattern == null || pattern.isEmpty()) ? fallback : pattern;
         try {
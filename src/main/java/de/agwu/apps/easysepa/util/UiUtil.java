@@ -189,6 +189,8 @@ public class UiUtil {
             result = validationUtil.validateAmount(value);
         } else if (fieldName.contains("creditorid")) {
             result = validationUtil.validateCreditorId(value);
+        } else if (fieldName.contains("remittance")) {
+            result = validationUtil.validateRemittanceInfo(value);
         } else if (!fieldName.contains("endtoend") && !fieldName.contains("mandateid") &&
                    (fieldName.contains("date") || fieldName.contains("dt"))) {
             result = validationUtil.validateDate(value);
@@ -1,23 +1,13 @@
 package de.agwu.apps.easysepa.util;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.regex.Pattern;
-
 /**
- * Utility for field validation
+ * Utility for field validation in the UI.
+ * The syntax checks are shared with the batch validation via {@link SepaValueChecks}.
  */
 public class ValidationUtil {
 
-    private static final Pattern IBAN_PATTERN = Pattern.compile("^[A-Z]{2}\\d{2}[A-Z0-9]{1,30}$");
-    private static final Pattern BIC_PATTERN = Pattern.compile("^[A-Z]{6}[A-Z0-9]{2}([A-Z0-9]{3})?$");
-    private static final Pattern AMOUNT_PATTERN = Pattern.compile("^\\d+(\\.\\d{1,2})?$");
-    private static final Pattern CREDITOR_ID_PATTERN = Pattern.compile("^[A-Z]{2}\\d{2}[A-Z0-9]{3,35}$");
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
     /**
-     * Validate IBAN format
+     * Validate IBAN format, country length and check digits
      */
     public ValidationResult validateIBAN(String iban) {
         if (iban == null || iban.trim().isEmpty()) {
@@ -26,11 +16,14 @@ public class ValidationUtil {
 
         String normalized = iban.replaceAll("\\s+", "").toUpperCase();
 
-        if (!IBAN_PATTERN.matcher(normalized).matches()) {
-            return ValidationResult.error("Ungültiges IBAN-Format. Beispiel: DE89370400440532013000");
-        }
-
-        return ValidationResult.success();
+        return switch (IbanValidator.check(normalized)) {
+            case IbanValidator.VALID -> ValidationResult.success();
+            case IbanValidator.UNKNOWN_COUNTRY -> ValidationResult.error("Ländercode gehört nicht zum SEPA-Raum");
+            case IbanValidator.WRONG_LENGTH -> ValidationResult.error("IBAN muss für dieses Land "
+                    + IbanValidator.expectedLength(normalized.charAt(0), normalized.charAt(1)) + " Zeichen haben");
+            case IbanValidator.WRONG_CHECKSUM -> ValidationResult.error("IBAN-Prüfsumme ist falsch (Tippfehler?)");
+            default -> ValidationResult.error("Ungültiges IBAN-Format. Beispiel: DE89370400440532013000");
+        };
     }
 
     /**
@@ -43,7 +36,7 @@ public class ValidationUtil {
 
         String normalized = bic.replaceAll("\\s+", "").toUpperCase();
 
-        if (!BIC_PATTERN.matcher(normalized).matches()) {
+        if (!SepaValueChecks.isBic(normalized)) {
             return ValidationResult.error("Ungültiges BIC-Format. Beispiel: COBADEFFXXX");
         }
 
@@ -58,23 +51,12 @@ public class ValidationUtil {
             return ValidationResult.error("Betrag darf nicht leer sein");
         }
 
-        if (!AMOUNT_PATTERN.matcher(amount.trim()).matches()) {
-            return ValidationResult.error("Ungültiger Betrag. Format: 123.45 (nur Punkt als Dezimaltrenner)");
-        }
-
-        try {
-            double value = Double.parseDouble(amount.trim());
-            if (value <= 0) {
-                return ValidationResult.error("Betrag muss größer als 0 sein");
-            }
-            if (value > 999999999.99) {
-                return ValidationResult.error("Betrag ist zu groß");
-            }
-        } catch (NumberFormatException e) {
-            return ValidationResult.error("Ungültiger Betrag");
-        }
-
-        return ValidationResult.success();
+        return switch (SepaValueChecks.checkAmount(amount.trim())) {
+            case SepaValueChecks.AMOUNT_VALID -> ValidationResult.success();
+            case SepaValueChecks.AMOUNT_NOT_POSITIVE -> ValidationResult.error("Betrag muss größer als 0 sein");
+            case SepaValueChecks.AMOUNT_TOO_LARGE -> ValidationResult.error("Betrag ist zu groß");
+            default -> ValidationResult.error("Ungültiger Betrag. Format: 123.45 (nur Punkt als Dezimaltrenner)");
+        };
     }
 
     /**
@@ -85,12 +67,10 @@ public class ValidationUtil {
             return ValidationResult.error("Datum darf nicht leer sein");
         }
 
-        try {
-            LocalDate.parse(date.trim(), DATE_FORMATTER);
-            return ValidationResult.success();
-        } catch (DateTimeParseException e) {
+        if (!SepaValueChecks.isIsoDate(date.trim())) {
             return ValidationResult.error("Ungültiges Datumsformat. Format: YYYY-MM-DD (z.B. 2025-10-20)");
         }
+        return ValidationResult.success();
     }
 
     /**
@@ -103,15 +83,34 @@ public class ValidationUtil {
 
         String normalized = creditorId.replaceAll("\\s+", "").toUpperCase();
 
-        if (!CREDITOR_ID_PATTERN.matcher(normalized).matches()) {
-            return ValidationResult.error("Ungültiges Format. Beispiel: DE98ZZZ09999999999");
-        }
-
         // German creditor ID specific validation
         if (normalized.startsWith("DE") && normalized.length() != 18) {
             return ValidationResult.error("Deutsche Gläubiger-ID muss 18 Zeichen haben");
         }
 
+        if (!SepaValueChecks.isCreditorIdSyntax(normalized)) {
+            return ValidationResult.error("Ungültiges Format. Beispiel: DE98ZZZ09999999999");
+        }
+
+        if (!SepaValueChecks.isCreditorId(normalized)) {
+            return ValidationResult.error("Prüfziffer der Gläubiger-ID ist falsch (Tippfehler?)");
+        }
+
+        return ValidationResult.success();
+    }
+
+    /**
+     * Validate a remittance text; structured creditor references (RF...) must have valid check digits
+     */
+    public ValidationResult validateRemittanceInfo(String remittanceInfo) {
+        if (remittanceInfo == null || remittanceInfo.trim().isEmpty()) {
+            return ValidationResult.success();
+        }
+
+        if (CreditorReference.check(remittanceInfo.trim()) == CreditorReference.WRONG_CHECKSUM) {
+            return ValidationResult.error("Prüfziffer der RF-Referenz ist falsch (Tippfehler?)");
+        }
+
         return ValidationResult.success();
     }
 
@@ -124,8 +123,7 @@ public class ValidationUtil {
         }
 
         String normalized = seqType.trim().toUpperCase();
-        if (!normalized.equals("FRST") && !normalized.equals("RCUR") &&
-            !normalized.equals("OOFF") && !normalized.equals("FNAL")) {
+        if (!SepaValueChecks.isSequenceType(normalized)) {
             return ValidationResult.error("Gültige Werte: FRST, RCUR, OOFF, FNAL");
         }
 
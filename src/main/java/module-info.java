@@ -2,7 +2,6 @@ module de.agwu.apps.easysepa {
     requires javafx.controls;
     requires javafx.fxml;
     requires jakarta.xml.bind;
-    requires com.opencsv;
     requires com.google.gson;
 
     opens de.agwu.apps.easysepa.controller to javafx.fxml;
@@ -0,0 +1,39 @@
+package de.agwu.apps.easysepa.model.sepa.definition;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFieldType;
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SepaFieldDefinitionFactoryTest {
+
+    @Test
+    void returnsSharedDefinitionPerFormat() {
+        ISepaFieldDefinition first = SepaFieldDefinitionFactory.create(SepaFormat.PAIN_008_001_08);
+        ISepaFieldDefinition second = SepaFieldDefinitionFactory.create("pain.008.001.08");
+
+        assertSame(first, second);
+        assertSame(first.getTransactionFields(), second.getTransactionFields());
+        assertSame(first.getLayout(), second.getLayout());
+        assertThrows(UnsupportedOperationException.class, () -> first.getTransactionFields().clear());
+    }
+
+    @Test
+    void layoutExposesSlotMetadata() {
+        SepaFieldLayout layout = SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_03).getLayout();
+
+        int amountSlot = layout.transactionSlotOf("amount");
+        assertTrue(amountSlot >= 0);
+        assertEquals("amount", layout.getFieldName(amountSlot));
+        assertEquals(SepaFieldType.AMOUNT, layout.getType(amountSlot));
+        assertTrue(layout.isRequired(amountSlot));
+
+        int remittanceSlot = layout.transactionSlotOf("remittanceInfo");
+        assertEquals(140, layout.getMaxLength(remittanceSlot));
+        assertFalse(layout.isRequired(remittanceSlot));
+
+        assertEquals(-1, layout.transactionSlotOf("mandateId"));
+        assertTrue(layout.globalSlotOf("debtorIBAN") >= 0);
+    }
+}
@@ -0,0 +1,94 @@
+package de.agwu.apps.easysepa.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankDirectoryServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void derivesBicFromGermanIban() throws IOException {
+        writeDirectoryFile("blz-2025-06.txt", 1_000L,
+                bankRecord("37040044", '1', "COBADEFFXXX"),
+                bankRecord("37040044", '2', ""),
+                bankRecord("50010517", '2', "INGDDEFF"),
+                bankRecord("50010517", '1', "INGDDEFFXXX"));
+
+        BankDirectoryService service = new BankDirectoryService(tempDir);
+        service.refresh();
+
+        assertEquals(2, service.getBankCodeCount());
+        assertEquals("COBADEFFXXX", service.deriveBic("DE89370400440532013000"));
+        assertEquals("INGDDEFFXXX", service.deriveBic("DE12500105170648489890"));
+        assertNull(service.deriveBic("DE02120300000000202051"));
+        assertNull(service.deriveBic("AT611904300234573201"));
+        assertNull(service.deriveBic(null));
+    }
+
+    @Test
+    void picksUpNewerDirectoryFile() throws IOException {
+        writeDirectoryFile("blz-old.txt", 1_000L, bankRecord("37040044", '1', "COBADEFFXXX"));
+        BankDirectoryService service = new BankDirectoryService(tempDir);
+        service.refresh();
+        assertEquals("COBADEFFXXX", service.deriveBic("DE89370400440532013000"));
+
+        String oldVersion = service.getIndexVersion();
+
+        writeDirectoryFile("blz-new.txt", 2_000L, bankRecord("37040044", '1', "COBADEFF370"));
+        service.refresh();
+        assertEquals("COBADEFF370", service.deriveBic("DE89370400440532013000"));
+        assertNotEquals(oldVersion, service.getIndexVersion());
+        assertTrue(service.getIndexVersion().startsWith("blz-new.txt:"), service.getIndexVersion());
+    }
+
+    @Test
+    void missingDirectoryYieldsEmptyIndex() throws IOException {
+        BankDirectoryService service = new BankDirectoryService(tempDir.resolve("missing"));
+        service.refresh();
+        assertEquals(0, service.getBankCodeCount());
+        assertNull(service.deriveBic("DE89370400440532013000"));
+        assertEquals("", service.getIndexVersion());
+    }
+
+    private void writeDirectoryFile(String name, long modifiedMillis, String... records) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, String.join("\r\n", records) + "\r\n", StandardCharsets.ISO_8859_1);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    }
+
+    /**
+     * Build a record in the fixed-width layout of the Bundesbank file
+     */
+    static String bankRecord(String bankCode, char feature, String bic) {
+        StringBuilder record = new StringBuilder(168);
+        record.append(bankCode).append(feature);
+        pad(record, "Testbank", 58);
+        pad(record, "12345", 5);
+        pad(record, "Teststadt", 35);
+        pad(record, "Testbank", 27);
+        pad(record, "12345", 5);
+        pad(record, bic, 11);
+        pad(record, "00", 2);
+        pad(record, "000001", 6);
+        pad(record, "U0", 2);
+        pad(record, "00000000", 8);
+        return record.toString();
+    }
+
+    private static void pad(StringBuilder record, String value, int width) {
+        record.append(value);
+        for (int i = value.length(); i < width; i++) {
+            record.append(' ');
+        }
+    }
+}
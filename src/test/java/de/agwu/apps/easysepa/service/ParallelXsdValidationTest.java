@@ -0,0 +1,110 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelXsdValidationTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void acceptsValidLargeDocument() throws IOException {
+        File xml = generate("valid.xml", 1000, -1);
+
+        XsdValidationService service = new XsdValidationService();
+        XsdValidationService.ValidationResult result = service.validateXmlParallel(xml, SepaFormat.PAIN_008_001_08, 4);
+
+        assertTrue(result.isValid(), result::getErrorsAsString);
+    }
+
+    @Test
+    void reportsSameIssuesAsFullDocumentValidation() throws IOException {
+        File xml = generate("invalid.xml", 1000, 700);
+
+        XsdValidationService service = new XsdValidationService();
+        XsdValidationService.ValidationResult sequential = service.validateXml(xml, SepaFormat.PAIN_008_001_08);
+        XsdValidationService.ValidationResult parallel = service.validateXmlParallel(xml, SepaFormat.PAIN_008_001_08, 4);
+
+        assertFalse(sequential.isValid());
+        assertFalse(parallel.isValid());
+        assertEquals(sequential.getIssues().size(), parallel.getIssues().size());
+        for (int i = 0; i < sequential.getIssues().size(); i++) {
+            ValidationIssue expected = sequential.getIssues().get(i);
+            ValidationIssue actual = parallel.getIssues().get(i);
+            assertEquals(expected.getMessage(), actual.getMessage());
+            assertEquals(expected.getPath(), actual.getPath());
+            assertEquals(expected.getLineNumber(), actual.getLineNumber());
+            assertEquals(700, actual.getTransactionIndex());
+        }
+    }
+
+    @Test
+    void rejectsBrokenSkeleton() throws IOException {
+        File xml = generate("skeleton.xml", 10, -1);
+        Files.writeString(xml.toPath(), Files.readString(xml.toPath()).replace("<SeqTp>FRST</SeqTp>", "<SeqTp>XXXX</SeqTp>"));
+
+        XsdValidationService.ValidationResult result =
+                new XsdValidationService().validateXmlParallel(xml, SepaFormat.PAIN_008_001_08, 2);
+
+        assertFalse(result.isValid());
+        assertEquals(0, result.getIssues().get(0).getTransactionIndex());
+    }
+
+    @Test
+    void rejectsDoctypeWithoutResolvingExternalEntities() throws IOException {
+        File xml = generate("entity.xml", 10, -1);
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "Debtor 5");
+        String content = Files.readString(xml.toPath());
+        int rootStart = content.indexOf("<Document");
+        content = content.substring(0, rootStart)
+                + "<!DOCTYPE Document [<!ENTITY x SYSTEM \"" + secret.toUri() + "\">]>"
+                + content.substring(rootStart).replace("<Nm>Debtor 5</Nm>", "<Nm>&x;</Nm>");
+        Files.writeString(xml.toPath(), content);
+
+        XsdValidationService.ValidationResult result =
+                new XsdValidationService().validateXmlParallel(xml, SepaFormat.PAIN_008_001_08, 2);
+
+        // The splitter stops at the undeclared entity instead of reading the file behind it
+        long referenceLine = content.substring(0, content.indexOf("&x;")).lines().count();
+        assertFalse(result.isValid());
+        assertTrue(result.getErrorsAsString().contains("XML Parse Fehler"), result.getErrorsAsString());
+        assertTrue(result.getErrorsAsString().contains("[" + referenceLine + ","), result.getErrorsAsString());
+    }
+
+    private File generate(String name, int count, int invalidIndex) throws IOException {
+        List<SepaTransaction> transactions = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            SepaTransaction transaction = new SepaTransaction(i);
+            transaction.setField("msgId", "MSG-2025-0001");
+            transaction.setField("initiatorName", "Initiator AG");
+            transaction.setField("pmtInfId", "PMT-INFO-001");
+            transaction.setField("reqdColltnDt", "2025-01-15");
+            transaction.setField("creditorName", "Creditor GmbH");
+            transaction.setField("creditorIBAN", "DE12500105170648489890");
+            transaction.setField("creditorId", "DE98ZZZ09999999999");
+            transaction.setField("seqTp", "FRST");
+            transaction.setField("endToEndId", "E2E-" + i);
+            transaction.setField("amount", i == invalidIndex ? "1,50" : "10.00");
+            transaction.setField("mandateId", "MAND-" + i);
+            transaction.setField("mandateSignatureDate", "2024-12-01");
+            transaction.setField("debtorName", "Debtor " + i);
+            transaction.setField("debtorIBAN", "DE89370400440532013000");
+            transactions.add(transaction);
+        }
+        File file = tempDir.resolve(name).toFile();
+        new SepaXmlGenerator().generateXml(file, SepaFormat.PAIN_008_001_08, transactions);
+        return file;
+    }
+}
@@ -0,0 +1,81 @@
+package de.agwu.apps.easysepa.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedFragmentCacheTest {
+
+    private static final String TEMPLATE = "<CreDtTm>{{creationDateTime}}</CreDtTm>"
+            + "{{#transactions}}<Tx><Id>{{endToEndId}}</Id>{{#debtorBIC}}<BIC>{{debtorBIC}}</BIC>{{/debtorBIC}}"
+            + "<Ccy>{{currency}}</Ccy></Tx>{{/transactions}}";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reusesFragmentsOfUnchangedRowsInTheNextRun() {
+        RenderedFragmentCache firstCache = new RenderedFragmentCache(tempDir);
+        String first = new XmlTemplateEngine(firstCache).render(TEMPLATE,
+                data("2025-01-10T08:30:00", List.of(row("E2E-1", "COBADEFFXXX"), row("E2E-2", null))));
+        assertEquals("<CreDtTm>2025-01-10T08:30:00</CreDtTm><Tx><Id>E2E-1</Id><BIC>COBADEFFXXX</BIC><Ccy>EUR</Ccy></Tx>"
+                + "<Tx><Id>E2E-2</Id><Ccy>EUR</Ccy></Tx>", first);
+        assertEquals(2, firstCache.size());
+
+        // Next month: new creation time, one row unchanged, one changed
+        RenderedFragmentCache secondCache = new RenderedFragmentCache(tempDir);
+        String second = new XmlTemplateEngine(secondCache).render(TEMPLATE,
+                data("2025-02-10T08:30:00", List.of(row("E2E-1", "COBADEFFXXX"), row("E2E-2", "MARKDEF1100"))));
+        assertEquals("<CreDtTm>2025-02-10T08:30:00</CreDtTm><Tx><Id>E2E-1</Id><BIC>COBADEFFXXX</BIC><Ccy>EUR</Ccy></Tx>"
+                + "<Tx><Id>E2E-2</Id><BIC>MARKDEF1100</BIC><Ccy>EUR</Ccy></Tx>", second);
+        assertEquals(3, secondCache.size());
+        assertEquals(new XmlTemplateEngine().render(TEMPLATE,
+                data("2025-02-10T08:30:00", List.of(row("E2E-1", "COBADEFFXXX"), row("E2E-2", "MARKDEF1100")))), second);
+    }
+
+    @Test
+    void keysIncludeParentValuesReadInsideTheSection() {
+        RenderedFragmentCache cache = new RenderedFragmentCache(tempDir);
+        XmlTemplateEngine engine = new XmlTemplateEngine(cache);
+        Map<String, Object> euro = data("2025-01-10T08:30:00", List.of(row("E2E-1", null)));
+        Map<String, Object> franc = new HashMap<>(euro);
+        franc.put("currency", "CHF");
+
+        assertTrue(engine.render(TEMPLATE, euro).contains("<Ccy>EUR</Ccy>"));
+        assertTrue(engine.render(TEMPLATE, franc).contains("<Ccy>CHF</Ccy>"));
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedAndIgnoresDamagedFiles() throws IOException {
+        RenderedFragmentCache cache = new RenderedFragmentCache(tempDir, 2);
+        cache.put("a", "<A/>");
+        cache.put("b", "<B/>");
+        assertEquals("<A/>", cache.get("a"));
+        cache.put("c", "<C/>");
+        cache.save();
+
+        RenderedFragmentCache reloaded = new RenderedFragmentCache(tempDir, 2);
+        assertNull(reloaded.get("b"));
+        assertEquals("<A/>", reloaded.get("a"));
+        assertEquals("<C/>", reloaded.get("c"));
+
+        Files.write(tempDir.resolve("fragments.bin"), new byte[]{0x45, 0x5A, 0x46, 0x52, 0, 0, 0, 5, 0});
+        assertEquals(0, new RenderedFragmentCache(tempDir).size());
+    }
+
+    private static Map<String, Object> data(String creationDateTime, List<Map<String, Object>> transactions) {
+        return Map.of("creationDateTime", creationDateTime, "currency", "EUR", "transactions", transactions);
+    }
+
+    private static Map<String, Object> row(String endToEndId, String debtorBic) {
+        return debtorBic == null ? Map.of("endToEndId", endToEndId) : Map.of("endToEndId", endToEndId, "debtorBIC", debtorBic);
+    }
+}
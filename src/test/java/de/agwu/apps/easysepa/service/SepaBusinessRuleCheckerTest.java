@@ -0,0 +1,98 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SepaBusinessRuleCheckerTest {
+
+    private static final Clock JANUARY_10 = Clock.fixed(Instant.parse("2025-01-10T08:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void acceptsConsistentDocument() throws IOException {
+        XsdValidationService.ValidationResult result = check(directDebit("MAND-1", "MAND-2", "MAND-3"), JANUARY_10);
+
+        assertTrue(result.isValid(), result::getErrorsAsString);
+        assertTrue(result.getIssues().isEmpty());
+    }
+
+    @Test
+    void reportsMismatchedTotalsAndForeignCurrency() throws IOException {
+        String xml = directDebit("MAND-1", "MAND-2", "MAND-3")
+                .replaceFirst("<NbOfTxs>3</NbOfTxs>", "<NbOfTxs>4</NbOfTxs>")
+                .replaceFirst("<InstdAmt Ccy=\"EUR\">", "<InstdAmt Ccy=\"USD\">");
+
+        XsdValidationService.ValidationResult result = check(xml, JANUARY_10);
+
+        assertFalse(result.isValid());
+        assertEquals(2, result.getIssues().size());
+        assertTrue(result.getErrors().get(0).contains("NbOfTxs im Gruppenkopf (4)"));
+        assertEquals(0, result.getIssues().get(0).getTransactionIndex());
+        assertTrue(result.getErrors().get(1).contains("Währung USD"));
+        assertEquals(1, result.getIssues().get(1).getTransactionIndex());
+    }
+
+    @Test
+    void reportsPastDatesAndReusedFirstMandates() throws IOException {
+        Clock february = Clock.fixed(Instant.parse("2025-02-01T08:00:00Z"), ZoneOffset.UTC);
+
+        XsdValidationService.ValidationResult result = check(directDebit("MAND-1", "MAND-2", "MAND-1"), february);
+
+        assertFalse(result.isValid());
+        assertEquals(List.of(
+                "Fehler: Einzugsdatum 2025-01-15 liegt in der Vergangenheit [XML-Zeile 28]",
+                "Fehler: Mandat MAND-1 wird mehrfach mit Sequenz-Typ FRST eingereicht [Transaktion 3]"),
+                result.getErrors());
+    }
+
+    @Test
+    void mergesWithXsdResult() throws IOException {
+        XsdValidationService.ValidationResult xsd = new XsdValidationService().validateXml(
+                new ByteArrayInputStream(directDebit("MAND-1", "MAND-1").getBytes(StandardCharsets.UTF_8)),
+                SepaFormat.PAIN_008_001_08);
+        XsdValidationService.ValidationResult merged = xsd.merge(check(directDebit("MAND-1", "MAND-1"), JANUARY_10));
+
+        assertTrue(xsd.isValid());
+        assertFalse(merged.isValid());
+        assertEquals(1, merged.getIssues().size());
+        assertSame(xsd, xsd.merge(check(directDebit("MAND-1"), JANUARY_10)));
+    }
+
+    private static XsdValidationService.ValidationResult check(String xml, Clock clock) {
+        return new SepaBusinessRuleChecker(clock).check(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String directDebit(String... mandates) throws IOException {
+        List<SepaTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < mandates.length; i++) {
+            SepaTransaction transaction = new SepaTransaction(i + 2);
+            transaction.setField("msgId", "MSG-500");
+            transaction.setField("initiatorName", "Initiator AG");
+            transaction.setField("pmtInfId", "PMT-5");
+            transaction.setField("reqdColltnDt", "2025-01-15");
+            transaction.setField("creditorName", "Creditor GmbH");
+            transaction.setField("creditorIBAN", "DE12500105170648489890");
+            transaction.setField("creditorId", "DE98ZZZ09999999999");
+            transaction.setField("seqTp", "FRST");
+            transaction.setField("endToEndId", "E2E-" + i);
+            transaction.setField("amount", "10.50");
+            transaction.setField("mandateId", mandates[i]);
+            transaction.setField("mandateSignatureDate", "2024-12-01");
+            transaction.setField("debtorName", "Debtor " + i);
+            transaction.setField("debtorIBAN", "DE89370400440532013000");
+            transactions.add(transaction);
+        }
+        return new SepaXmlGenerator().renderXml(SepaFormat.PAIN_008_001_08, transactions);
+    }
+}
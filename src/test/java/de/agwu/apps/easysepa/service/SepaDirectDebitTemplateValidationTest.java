@@ -2,6 +2,7 @@ package de.agwu.apps.easysepa.service;
 
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
 import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
+import de.agwu.apps.easysepa.util.GenerationSettings;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -9,8 +10,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SepaDirectDebitTemplateValidationTest {
@@ -48,6 +52,19 @@ class SepaDirectDebitTemplateValidationTest {
         assertTrue(xml.contains("<BtchBookg>true</BtchBookg>"));
     }
 
+    @Test
+    void deterministicModeRendersIdenticalBytes() throws IOException {
+        GenerationSettings settings = GenerationSettings.deterministic(
+                Instant.parse("2025-01-10T08:30:00Z"), ZoneOffset.UTC, 7L);
+        SepaXmlGenerator generator = new SepaXmlGenerator(new XmlTemplateEngine(), settings);
+
+        String first = generator.renderXml(SepaFormat.PAIN_008_001_08, List.of(createDirectDebitTransaction()));
+        String second = generator.renderXml(SepaFormat.PAIN_008_001_08, List.of(createDirectDebitTransaction()));
+
+        assertEquals(first, second);
+        assertTrue(first.contains("<CreDtTm>2025-01-10T08:30:00</CreDtTm>"), first);
+    }
+
     private SepaTransaction createDirectDebitTransaction() {
         SepaTransaction transaction = new SepaTransaction(1);
         transaction.setField("msgId", "MSG-2025-0001");
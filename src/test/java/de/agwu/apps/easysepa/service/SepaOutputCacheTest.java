@@ -0,0 +1,112 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import de.agwu.apps.easysepa.util.CsvUtil;
+import de.agwu.apps.easysepa.util.GenerationSettings;
+import de.agwu.apps.easysepa.util.SepaCharsetTransliterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SepaOutputCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void fingerprintCoversInputMappingAndSettings() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("input.csv"), "Name;Betrag\nMeier;7,00\n");
+        SepaOutputCache cache = new SepaOutputCache(tempDir.resolve("cache"));
+        SepaXmlGenerator generator = deterministicGenerator(7L, cache);
+
+        Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("column.debtorName", "Name");
+        mapping.put("column.amount", "Betrag");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("column.amount", "Betrag");
+        reordered.put("column.debtorName", "Name");
+
+        String fingerprint = generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, mapping, Map.of()).orElseThrow();
+        assertEquals(fingerprint, generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, reordered, Map.of()).orElseThrow());
+        assertNotEquals(fingerprint, generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_11, mapping, Map.of()).orElseThrow());
+        assertNotEquals(fingerprint, deterministicGenerator(8L, cache)
+                .outputFingerprint(csv, SepaFormat.PAIN_008_001_08, mapping, Map.of()).orElseThrow());
+
+        assertNotEquals(fingerprint, generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, mapping,
+                Map.of("bankDirectory", "BLZ_20250303.txt:123:1740990000000")).orElseThrow());
+        assertNotEquals(fingerprint, generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, mapping,
+                Map.of("truncate", "true")).orElseThrow());
+
+        Files.writeString(csv, "Name;Betrag\nMeier;7,01\n");
+        assertNotEquals(fingerprint, generator.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, mapping, Map.of()).orElseThrow());
+    }
+
+    @Test
+    void keysCoverBuilderSettingsAndTheApplicationBuild() throws IOException {
+        BankDirectoryService bankDirectory = new BankDirectoryService(tempDir.resolve("banks"));
+        Map<String, String> basic = new SepaTransactionBuilder(new CsvUtil(), bankDirectory,
+                SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC), false).getOutputSettings();
+        assertNotEquals(basic, new SepaTransactionBuilder(new CsvUtil(), bankDirectory,
+                SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.GERMAN_EXTENDED), false).getOutputSettings());
+        assertNotEquals(basic, new SepaTransactionBuilder(new CsvUtil(), bankDirectory,
+                SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC), true).getOutputSettings());
+
+        // Derived from the compiled classes, not from a hand-maintained number
+        assertTrue(SepaOutputCache.codeVersion().matches("[0-9a-f]{64}"));
+        assertEquals(SepaOutputCache.codeVersion(), SepaOutputCache.codeVersion());
+    }
+
+    @Test
+    void onlyReproducibleOutputIsFingerprinted() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("input.csv"), "Name\nMeier\n");
+        SepaOutputCache cache = new SepaOutputCache(tempDir.resolve("cache"));
+
+        SepaXmlGenerator live = new SepaXmlGenerator(new XmlTemplateEngine(), GenerationSettings.live(), cache);
+        assertEquals(Optional.empty(), live.outputFingerprint(csv, SepaFormat.PAIN_008_001_08, Map.of(), Map.of()));
+
+        SepaXmlGenerator deterministic = deterministicGenerator(7L, cache);
+        assertEquals(Optional.empty(), deterministic.outputFingerprint(csv, SepaFormat.PAIN_008_001_08,
+                Map.of("global.msgId", "MSG-{seq:msgId}"), Map.of()));
+        assertEquals(Optional.empty(), deterministic.outputFingerprint(csv, SepaFormat.PAIN_008_001_08,
+                Map.of("default.remittanceInfo", "{rf:seq=invoice}"), Map.of()));
+        assertTrue(deterministic.outputFingerprint(csv, SepaFormat.PAIN_008_001_08,
+                Map.of("global.msgId", "MSG-{date:yyyyMMdd}-{id}"), Map.of()).isPresent());
+    }
+
+    @Test
+    void returnsStoredFileForSameFingerprint() throws IOException {
+        SepaOutputCache cache = new SepaOutputCache(tempDir.resolve("cache"));
+        String fingerprint = new SepaOutputCache.Fingerprint().add("input", "a").toHex();
+        Path generated = Files.writeString(tempDir.resolve("generated.xml"), "<Document/>");
+        Path target = tempDir.resolve("copy.xml");
+
+        assertFalse(cache.contains(fingerprint));
+        assertFalse(cache.copyTo(fingerprint, target));
+
+        cache.store(fingerprint, generated);
+        assertTrue(cache.contains(fingerprint));
+        assertTrue(cache.copyTo(fingerprint, target));
+        assertEquals("<Document/>", Files.readString(target));
+
+        try (var files = Files.list(tempDir.resolve("cache"))) {
+            assertEquals(1, files.count());
+        }
+        assertThrows(IllegalArgumentException.class, () -> cache.contains("../generated"));
+    }
+
+    private SepaXmlGenerator deterministicGenerator(long seed, SepaOutputCache cache) {
+        GenerationSettings settings = GenerationSettings.deterministic(
+                Instant.parse("2025-01-10T08:30:00Z"), ZoneOffset.UTC, seed);
+        return new SepaXmlGenerator(new XmlTemplateEngine(), settings, cache);
+    }
+}
@@ -1,11 +1,13 @@
 package de.agwu.apps.easysepa.service;
 
-import com.opencsv.exceptions.CsvException;
 import de.agwu.apps.easysepa.model.sepa.SepaField;
 import de.agwu.apps.easysepa.model.sepa.SepaFormat;
 import de.agwu.apps.easysepa.model.sepa.TransactionValidationResult;
 import de.agwu.apps.easysepa.model.sepa.definition.ISepaFieldDefinition;
+import de.agwu.apps.easysepa.model.sepa.definition.SepaFieldDefinitionFactory;
+import de.agwu.apps.easysepa.util.CsvUtil;
 import de.agwu.apps.easysepa.util.FieldMappingConstants;
+import de.agwu.apps.easysepa.util.SepaCharsetTransliterator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -23,7 +25,7 @@ class SepaTransactionBuilderTest {
     Path tempDir;
 
     @Test
-    void buildsTransactionsAndCollectsErrors() throws IOException, CsvException {
+    void buildsTransactionsAndCollectsErrors() throws IOException {
         Path csvFile = tempDir.resolve("sample.csv");
         Files.writeString(csvFile, String.join(System.lineSeparator(),
                 "debtorName;amount;reference",
@@ -70,7 +72,7 @@ class SepaTransactionBuilderTest {
     }
 
     @Test
-    void appliesTemplatedDefaults() throws IOException, CsvException {
+    void appliesTemplatedDefaults() throws IOException {
         Path csvFile = tempDir.resolve("templated.csv");
         Files.writeString(csvFile, String.join(System.lineSeparator(),
                 "debtorName;amount",
@@ -115,6 +117,241 @@ class SepaTransactionBuilderTest {
         assertEquals("Rechnung-1001", tx2.getField("optionalReference"));
     }
 
+    @Test
+    void computesCreditorReferencesFromUnmappedColumns() throws IOException {
+        Path csvFile = tempDir.resolve("references.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "debtorName;invoice;amount",
+                "Anna;539007547034;15,00",
+                "Ben;G72UUR;20,50",
+                "Carla;RE-4711;5,00"
+        ));
+
+        Map<String, String> columnMappings = Map.of(
+                "debtorName", "debtorName",
+                "amount", "amount",
+                "optionalReference", FieldMappingConstants.FIXED_VALUE_OPTION
+        );
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', new TestDefinition(),
+                Map.of("msgId", "MSG-1"), columnMappings, Map.of("optionalReference", "{rf:invoice}"));
+
+        assertEquals(2, result.getValidTransactions().size());
+        assertEquals("RF18539007547034", result.getValidTransactions().get(0).getField("optionalReference"));
+        assertEquals("RF45G72UUR", result.getValidTransactions().get(1).getField("optionalReference"));
+        // No reference can be formed from the invoice number, so the row is rejected instead of carrying the placeholder
+        assertEquals(1, result.getInvalidTransactions().size());
+        assertNull(result.getInvalidTransactions().get(0).getTransaction().getField("optionalReference"));
+        assertTrue(result.getInvalidTransactions().get(0).getErrors().get(0).contains("RF-Referenz"));
+    }
+
+    @Test
+    void readsFilesWithTheGivenQuoteCharacter() throws IOException {
+        Path csvFile = tempDir.resolve("single-quoted.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "'debtorName';'amount'",
+                "'Meier; Anna';'15,00'"
+        ));
+
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', '\'', "UTF-8", ',', new TestDefinition(),
+                Map.of("msgId", "MSG-1"), Map.of("debtorName", "debtorName", "amount", "amount"), Map.of());
+
+        assertEquals(1, result.getValidTransactions().size());
+        // The quoted separator stays in the field and is then transliterated to the SEPA character set
+        assertEquals("Meier, Anna", result.getValidTransactions().get(0).getField("debtorName"));
+        assertEquals("15.00", result.getValidTransactions().get(0).getField("amount"));
+    }
+
+    @Test
+    void rejectsRowsWithInvalidBusinessValues() throws IOException {
+        Path csvFile = tempDir.resolve("business.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "endToEndId;amount;creditorName;creditorIBAN;creditorBIC",
+                "E2E-1;10,00;Alice;DE89370400440532013000 ;COBADEFFXXX",
+                "E2E-2;0,00;Bob;DE89 3704 0044 0532 0130 00;",
+                "E2E-3;5,00;Carol;DE89370400440532013000;COBADEF"
+        ));
+
+        ISepaFieldDefinition definition = SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_03);
+        Map<String, String> columnMappings = Map.of(
+                "endToEndId", "endToEndId",
+                "amount", "amount",
+                "creditorName", "creditorName",
+                "creditorIBAN", "creditorIBAN",
+                "creditorBIC", "creditorBIC"
+        );
+
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', definition,
+                Map.of("msgId", "MSG-1", "reqdExctnDt", "2025-01-01"), columnMappings, Map.of());
+
+        assertEquals(1, result.getValidTransactions().size());
+        assertEquals("DE89370400440532013000", result.getValidTransactions().get(0).getField("creditorIBAN"));
+
+        var invalid = result.getInvalidTransactions();
+        assertEquals(2, invalid.size());
+        assertEquals(2, invalid.get(0).getErrors().size());
+        assertTrue(invalid.get(0).getErrorsAsString().contains("Betrag muss größer als 0 sein"));
+        assertTrue(invalid.get(0).getErrorsAsString().contains("IBAN"));
+        assertEquals(List.of("BIC des Empfängers: Ungültiges BIC-Format"), invalid.get(1).getErrors());
+    }
+
+    @Test
+    void checksBicsAsWrittenAgainstTheFormatPattern() throws IOException {
+        Path csvFile = tempDir.resolve("bic.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "endToEndId;amount;creditorName;creditorIBAN;creditorBIC",
+                "E2E-1;10,00;Alice;DE89370400440532013000; cobadeffxxx ",
+                "E2E-2;5,00;Bob;DE89370400440532013000;MARKDE11"
+        ));
+        Map<String, String> columnMappings = Map.of(
+                "endToEndId", "endToEndId",
+                "amount", "amount",
+                "creditorName", "creditorName",
+                "creditorIBAN", "creditorIBAN",
+                "creditorBIC", "creditorBIC"
+        );
+        Map<String, String> globals = Map.of("msgId", "MSG-1", "reqdExctnDt", "2025-01-01");
+
+        // pain.001.001.09 uses the ISO 9362:2014 pattern, which allows a digit as second location character
+        TransactionValidationResult current = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_09),
+                globals, columnMappings, Map.of());
+        assertEquals(2, current.getValidTransactions().size());
+
+        TransactionValidationResult legacy = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_03),
+                globals, columnMappings, Map.of());
+        assertEquals(1, legacy.getValidTransactions().size());
+        assertEquals("E2E-2", legacy.getInvalidTransactions().get(0).getTransaction().getField("endToEndId"));
+        assertTrue(legacy.getInvalidTransactions().get(0).getErrorsAsString().contains("XSD-Muster"));
+    }
+
+    @Test
+    void invalidGlobalValueMarksEveryRow() throws IOException {
+        Path csvFile = tempDir.resolve("global.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "debtorName;amount",
+                "Anna;15,00",
+                "Ben;20,50"
+        ));
+
+        ISepaFieldDefinition definition = new TestDefinition() {
+            @Override
+            public List<SepaField> getGlobalFields() {
+                return List.of(new SepaField("debtorIBAN", "Debtor IBAN", true, "IBAN"));
+            }
+        };
+
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', definition,
+                Map.of("debtorIBAN", "no-iban"),
+                Map.of("debtorName", "debtorName", "amount", "amount"),
+                Map.of());
+
+        assertTrue(result.getValidTransactions().isEmpty());
+        assertEquals(2, result.getInvalidTransactions().size());
+        assertEquals(List.of("Debtor IBAN: Ungültiges IBAN-Format"), result.getInvalidTransactions().get(1).getErrors());
+    }
+
+    @Test
+    void derivesMissingBicsFromBankDirectory() throws IOException {
+        Path bankDirectory = Files.createDirectory(tempDir.resolve("bankdirectory"));
+        Files.writeString(bankDirectory.resolve("blz.txt"), String.join("\n",
+                BankDirectoryServiceTest.bankRecord("37040044", '1', "COBADEFFXXX"),
+                BankDirectoryServiceTest.bankRecord("50010517", '1', "INGDDEFFXXX")));
+
+        Path csvFile = tempDir.resolve("bic.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "endToEndId;amount;creditorName;creditorIBAN;creditorBIC",
+                "E2E-1;10,00;Alice;DE89370400440532013000;",
+                "E2E-2;12,00;Bob;DE89370400440532013000;MARKDEF1100"
+        ));
+
+        ISepaFieldDefinition definition = SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_03);
+        SepaTransactionBuilder builder = new SepaTransactionBuilder(new CsvUtil(), new BankDirectoryService(bankDirectory));
+
+        TransactionValidationResult result = builder.buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', definition,
+                Map.of("msgId", "MSG-1", "reqdExctnDt", "2025-01-01", "debtorIBAN", "DE12500105170648489890"),
+                Map.of("endToEndId", "endToEndId", "amount", "amount", "creditorName", "creditorName",
+                        "creditorIBAN", "creditorIBAN", "creditorBIC", "creditorBIC"),
+                Map.of());
+
+        assertEquals(2, result.getValidTransactions().size());
+        assertEquals("COBADEFFXXX", result.getValidTransactions().get(0).getField("creditorBIC"));
+        assertEquals("MARKDEF1100", result.getValidTransactions().get(1).getField("creditorBIC"));
+        assertEquals("INGDDEFFXXX", result.getValidTransactions().get(0).getField("debtorBIC"));
+    }
+
+    @Test
+    void transliteratesTextFieldsToSepaCharacterSet() throws IOException {
+        Path csvFile = tempDir.resolve("charset.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "debtorName;amount;reference",
+                "Müller & Söhne;10,00;Invoice \u201C1\u201D"
+        ));
+
+        SepaTransactionBuilder builder = new SepaTransactionBuilder(new CsvUtil(), new BankDirectoryService(tempDir),
+                SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC), true);
+
+        TransactionValidationResult result = builder.buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', new TestDefinition(),
+                Map.of("msgId", "MSG-1"),
+                Map.of("debtorName", "debtorName", "amount", "amount", "optionalReference", "reference"),
+                Map.of());
+
+        var transaction = result.getValidTransactions().get(0);
+        assertEquals("Mueller + Soehne", transaction.getField("debtorName"));
+        assertEquals("Invoice '1'", transaction.getField("optionalReference"));
+        assertEquals("MSG-1", transaction.getField("msgId"));
+    }
+
+    @Test
+    void rejectsIdentifiersOutsideCharacterSetInsteadOfRewritingThem() throws IOException {
+        Path csvFile = tempDir.resolve("identifiers.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "endToEndId;amount;creditorName;creditorIBAN",
+                "E2E-1;10,00;Müller;DE89370400440532013000",
+                "E2E_2;10,00;Meier;DE89370400440532013000"
+        ));
+
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', SepaFieldDefinitionFactory.create(SepaFormat.PAIN_001_001_03),
+                Map.of("msgId", "MSG-1", "reqdExctnDt", "2025-01-01"),
+                Map.of("endToEndId", "endToEndId", "amount", "amount", "creditorName", "creditorName",
+                        "creditorIBAN", "creditorIBAN"),
+                Map.of());
+
+        assertEquals(1, result.getValidTransactions().size());
+        assertEquals("Mueller", result.getValidTransactions().get(0).getField("creditorName"));
+        var invalid = result.getInvalidTransactions().get(0);
+        assertEquals("E2E_2", invalid.getTransaction().getField("endToEndId"));
+        assertTrue(invalid.getErrorsAsString().contains("End-to-End-ID: enthält unzulässige Zeichen"),
+                invalid.getErrorsAsString());
+    }
+
+    @Test
+    void rejectsValuesViolatingXsdFacetsBeforeRendering() throws IOException {
+        Path csvFile = tempDir.resolve("facets.csv");
+        Files.writeString(csvFile, String.join(System.lineSeparator(),
+                "debtorName;amount",
+                "Anna;15,00",
+                "B" + "e".repeat(140) + "n;20,50"
+        ));
+
+        TransactionValidationResult result = new SepaTransactionBuilder().buildTransactions(
+                csvFile.toFile(), ';', "UTF-8", ',', new TestDefinition(),
+                Map.of("msgId", "MSG-1"),
+                Map.of("debtorName", "debtorName", "amount", "amount"),
+                Map.of());
+
+        assertEquals(1, result.getValidTransactions().size());
+        assertEquals(List.of("Debtor Name: darf laut XSD maximal 140 Zeichen haben"),
+                result.getInvalidTransactions().get(0).getErrors());
+    }
+
     private static class TestDefinition implements ISepaFieldDefinition {
         private final List<SepaField> globalFields = List.of(
                 new SepaField("msgId", "Message ID", true, "Message identifier")
@@ -0,0 +1,56 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XsdConstraintTableTest {
+
+    @Test
+    void linksTemplateVariablesToXsdTypes() {
+        XsdConstraintTable table = XsdConstraintTable.forFormat(SepaFormat.PAIN_008_001_08);
+        assertSame(table, XsdConstraintTable.forFormat(SepaFormat.PAIN_008_001_08));
+
+        assertEquals("Max35Text", single(table, "mandateId").getTypeName());
+        assertEquals(140, single(table, "remittanceInfo").getMaxLength());
+        assertEquals(XsdConstraint.BaseType.DECIMAL, single(table, "amount").getBaseType());
+        assertEquals(XsdConstraint.BaseType.DATE, single(table, "mandateSignatureDate").getBaseType());
+        assertEquals(XsdConstraint.BaseType.OTHER, single(table, "creationDateTime").getBaseType());
+        assertTrue(table.getConstraints("unknownVariable").isEmpty());
+
+        for (SepaFormat format : SepaFormat.values()) {
+            assertTrue(XsdConstraintTable.forFormat(format).getVariables().contains("endToEndId"), format.getCode());
+        }
+    }
+
+    @Test
+    void checksFacetsWithoutRendering() {
+        XsdConstraintTable table = XsdConstraintTable.forFormat(SepaFormat.PAIN_008_001_08);
+
+        XsdConstraint amount = single(table, "amount");
+        assertNull(amount.check("1234.50"));
+        assertNull(amount.check("0.10000"));
+        assertEquals(XsdConstraint.Violation.FRACTION_DIGITS, amount.check("1.123456"));
+        assertEquals(XsdConstraint.Violation.MIN_INCLUSIVE, amount.check("-1.00"));
+        assertEquals(XsdConstraint.Violation.MALFORMED, amount.check("1,50"));
+
+        XsdConstraint mandateId = single(table, "mandateId");
+        assertNull(mandateId.check("M-" + "😀".repeat(33)));
+        assertEquals(XsdConstraint.Violation.TOO_LONG, mandateId.check("M".repeat(36)));
+        assertEquals(XsdConstraint.Violation.TOO_SHORT, mandateId.check(""));
+
+        XsdConstraint iban = single(table, "debtorIBAN");
+        assertEquals(XsdConstraint.Violation.PATTERN, iban.check("de89370400440532013000"));
+
+        XsdConstraint sequenceType = single(table, "seqTp");
+        assertNull(sequenceType.check("RCUR"));
+        assertEquals(XsdConstraint.Violation.ENUMERATION, sequenceType.check("NEXT"));
+        assertTrue(sequenceType.describe(XsdConstraint.Violation.ENUMERATION).contains("FRST"));
+    }
+
+    private static XsdConstraint single(XsdConstraintTable table, String variable) {
+        assertEquals(1, table.getConstraints(variable).size(), variable);
+        return table.getConstraints(variable).get(0);
+    }
+}
@@ -0,0 +1,51 @@
+package de.agwu.apps.easysepa.service;
+
+import de.agwu.apps.easysepa.model.sepa.SepaFormat;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XsdSchemaCacheTest {
+
+    @Test
+    void compilesEachSchemaOnce() throws Exception {
+        XsdSchemaCache.prewarmAsync().join();
+        for (SepaFormat format : SepaFormat.values()) {
+            assertNotNull(XsdSchemaCache.getSchema(format));
+            assertSame(XsdSchemaCache.getSchema(format), XsdSchemaCache.getSchema(format));
+        }
+    }
+
+    @Test
+    void keepsValidatorsPerThread() throws Exception {
+        Validator first = XsdSchemaCache.getValidator(SepaFormat.PAIN_008_001_08);
+        assertSame(first, XsdSchemaCache.getValidator(SepaFormat.PAIN_008_001_08));
+        assertNotSame(first, XsdSchemaCache.getValidator(SepaFormat.PAIN_001_001_03));
+
+        AtomicReference<Validator> otherThread = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                otherThread.set(XsdSchemaCache.getValidator(SepaFormat.PAIN_008_001_08));
+            } catch (SAXException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(otherThread.get());
+        assertNotSame(first, otherThread.get());
+    }
+
+    @Test
+    void keepsValidatorHandlersPerSchema() throws Exception {
+        Schema document = XsdSchemaCache.getSchema(SepaFormat.PAIN_008_001_08);
+        Schema batch = XsdSchemaCache.getTransactionBatchSchema(SepaFormat.PAIN_008_001_08);
+        assertSame(XsdSchemaCache.getValidatorHandler(document), XsdSchemaCache.getValidatorHandler(document));
+        assertNotSame(XsdSchemaCache.getValidatorHandler(document), XsdSchemaCache.getValidatorHandler(batch));
+    }
+}
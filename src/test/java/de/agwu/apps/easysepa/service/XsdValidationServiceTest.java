@@ -5,8 +5,15 @@ import de.agwu.apps.easysepa.model.sepa.SepaTransaction;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -58,4 +65,140 @@ class XsdValidationServiceTest {
         assertFalse(result.isValid());
         assertFalse(result.getErrors().isEmpty());
     }
+
+    @Test
+    void rejectsDoctypeWithoutResolvingExternalEntities() throws IOException {
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "TOP-SECRET-CONTENT");
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE Document [<!ENTITY x SYSTEM \"" + secret.toUri() + "\">]>\n"
+                + "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\"><MsgId>&x;</MsgId></Document>";
+
+        XsdValidationService.ValidationResult result = new XsdValidationService()
+                .validateXml(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)), SepaFormat.PAIN_001_001_03);
+
+        assertFalse(result.isValid());
+        assertTrue(result.getErrorsAsString().contains("DOCTYPE"), result.getErrorsAsString());
+        assertTrue(result.getErrorsAsString().contains("[XML-Zeile 2]"), result.getErrorsAsString());
+        assertFalse(result.getErrorsAsString().contains("TOP-SECRET-CONTENT"));
+    }
+
+    @Test
+    void validatesInMemoryXml() throws IOException {
+        SepaTransaction transaction = new SepaTransaction(1);
+        transaction.setField("msgId", "MSG-200");
+        transaction.setField("initiatorName", "Initiator AG");
+        transaction.setField("pmtInfId", "PMT-2");
+        transaction.setField("reqdExctnDt", "2025-01-01");
+        transaction.setField("debtorName", "Debtor GmbH");
+        transaction.setField("debtorIBAN", "DE89370400440532013000");
+        transaction.setField("endToEndId", "E2E-2");
+        transaction.setField("amount", "12.50");
+        transaction.setField("creditorName", "Creditor GmbH");
+        transaction.setField("creditorIBAN", "DE12500105170648489890");
+
+        SepaXmlGenerator generator = new SepaXmlGenerator();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.generateXml(out, SepaFormat.PAIN_001_001_03, List.of(transaction));
+        byte[] xml = out.toByteArray();
+
+        XsdValidationService validator = new XsdValidationService();
+        assertTrue(validator.validateXml(ByteBuffer.wrap(xml), SepaFormat.PAIN_001_001_03).isValid());
+        assertTrue(validator.validateXml(new ByteArrayInputStream(xml), SepaFormat.PAIN_001_001_03).isValid());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length).put(xml).flip();
+        assertTrue(validator.validateXml(direct, SepaFormat.PAIN_001_001_03).isValid());
+        assertEquals(0, direct.position());
+
+        String rendered = generator.renderXml(SepaFormat.PAIN_001_001_03, List.of(transaction));
+        assertTrue(validator.validateXml(new StreamSource(new StringReader(rendered)), SepaFormat.PAIN_001_001_03).isValid());
+        assertFalse(validator.validateXml(ByteBuffer.wrap("<Document/>".getBytes(StandardCharsets.UTF_8)),
+                SepaFormat.PAIN_001_001_03).isValid());
+        // The thread's validator handler starts over after a rejected document
+        assertTrue(validator.validateXml(ByteBuffer.wrap(xml), SepaFormat.PAIN_001_001_03).isValid());
+    }
+
+    @Test
+    void stopsAtErrorLimitAndMapsIssuesToRows() throws IOException {
+        List<SepaTransaction> transactions = new java.util.ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            SepaTransaction transaction = new SepaTransaction(i + 1);
+            transaction.setField("msgId", "MSG-300");
+            transaction.setField("initiatorName", "Initiator AG");
+            transaction.setField("pmtInfId", "PMT-3");
+            transaction.setField("reqdExctnDt", "2025-01-01");
+            transaction.setField("debtorName", "Debtor GmbH");
+            transaction.setField("debtorIBAN", "DE89370400440532013000");
+            transaction.setField("endToEndId", "E2E-" + i);
+            transaction.setField("amount", "1.00");
+            transaction.setField("creditorName", "Creditor GmbH");
+            transaction.setField("creditorIBAN", i >= 3 ? "INVALID" + i : "DE12500105170648489890");
+            transactions.add(transaction);
+        }
+
+        File outputFile = tempDir.resolve("broken.xml").toFile();
+        new SepaXmlGenerator().generateXml(outputFile, SepaFormat.PAIN_001_001_03, transactions);
+
+        XsdValidationService.ValidationResult result =
+                new XsdValidationService(10).validateXml(outputFile, SepaFormat.PAIN_001_001_03);
+
+        assertFalse(result.isValid());
+        assertTrue(result.isAborted());
+        assertFalse(result.getIssues().isEmpty());
+        assertTrue(result.getIssues().size() < 10);
+
+        ValidationIssue first = result.getIssues().get(0);
+        assertEquals(3, first.getTransactionIndex());
+        assertTrue(first.getPath().endsWith("/CdtTrfTxInf/CdtrAcct/Id/IBAN"));
+        assertTrue(first.getOccurrences() > 1);
+        assertTrue(result.getErrorsAsString(transactions).contains("CSV-Zeile 4"));
+        assertTrue(result.getErrors().get(result.getErrors().size() - 1).contains("abgebrochen"));
+
+        File validFile = tempDir.resolve("valid.xml").toFile();
+        new SepaXmlGenerator().generateXml(validFile, SepaFormat.PAIN_001_001_03, transactions.subList(0, 2));
+        assertTrue(new XsdValidationService(10).validateXml(validFile, SepaFormat.PAIN_001_001_03).isValid());
+    }
+
+    @Test
+    void validatesDirectoriesConcurrentlyAndDetectsFormats() throws IOException {
+        SepaTransaction transaction = new SepaTransaction(1);
+        transaction.setField("msgId", "MSG-400");
+        transaction.setField("initiatorName", "Initiator AG");
+        transaction.setField("pmtInfId", "PMT-4");
+        transaction.setField("reqdExctnDt", "2025-01-01");
+        transaction.setField("debtorName", "Debtor GmbH");
+        transaction.setField("debtorIBAN", "DE89370400440532013000");
+        transaction.setField("endToEndId", "E2E-4");
+        transaction.setField("amount", "4.00");
+        transaction.setField("creditorName", "Creditor GmbH");
+        transaction.setField("creditorIBAN", "DE12500105170648489890");
+        String valid = new SepaXmlGenerator().renderXml(SepaFormat.PAIN_001_001_03, List.of(transaction));
+
+        Path archive = Files.createDirectories(tempDir.resolve("archive/2025"));
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(archive.resolve("valid-" + i + ".xml"), valid);
+        }
+        Files.writeString(archive.resolve("broken.xml"), valid.replace("<Amt>", "<Amount>").replace("</Amt>", "</Amount>"));
+        Files.writeString(tempDir.resolve("archive/other.xml"), "<Invoice xmlns=\"urn:example\"/>");
+        Files.writeString(archive.resolve("notes.txt"), "not validated");
+
+        assertEquals(SepaFormat.PAIN_001_001_03, XsdValidationService.detectFormat(archive.resolve("valid-0.xml")));
+        assertNull(XsdValidationService.detectFormat(tempDir.resolve("archive/other.xml")));
+
+        BatchValidationReport report = new XsdValidationService().validateBatch(tempDir.resolve("archive").toString());
+        assertEquals(22, report.getFileCount());
+        assertEquals(20, report.getValidCount());
+        assertEquals(1, report.getInvalidCount());
+        assertEquals(1, report.getUnknownFormatCount());
+        assertFalse(report.isAllValid());
+
+        StringWriter text = new StringWriter();
+        report.writeTo(text);
+        assertTrue(text.toString().contains("UNGÜLTIG (pain.001.001.03): 2025" + File.separator + "broken.xml"));
+        assertTrue(text.toString().contains("FORMAT UNBEKANNT: other.xml"));
+
+        BatchValidationReport globbed = new XsdValidationService()
+                .validateBatch(tempDir.resolve("archive").toString() + "/2025/valid-*.xml");
+        assertEquals(20, globbed.getFileCount());
+        assertTrue(globbed.isAllValid());
+    }
 }
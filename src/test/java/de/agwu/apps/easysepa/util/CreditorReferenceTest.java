@@ -0,0 +1,45 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreditorReferenceTest {
+
+    @Test
+    void validatesElectronicAndPrintFormat() {
+        assertEquals(CreditorReference.VALID, CreditorReference.check("RF18539007547034"));
+        assertEquals(CreditorReference.VALID, CreditorReference.check("RF18 5390 0754 7034"));
+        assertEquals(CreditorReference.VALID, CreditorReference.check("RF45G72UUR"));
+        assertEquals(CreditorReference.WRONG_CHECKSUM, CreditorReference.check("RF18539007547035"));
+    }
+
+    @Test
+    void leavesFreeTextAlone() {
+        assertEquals(CreditorReference.NOT_STRUCTURED, CreditorReference.check("Rechnung 4711"));
+        assertEquals(CreditorReference.NOT_STRUCTURED, CreditorReference.check("RF12 Rechnung"));
+        assertEquals(CreditorReference.NOT_STRUCTURED, CreditorReference.check("RF1"));
+        assertEquals(CreditorReference.NOT_STRUCTURED, CreditorReference.check("RF181234567890123456789012"));
+    }
+
+    @Test
+    void createsReferencesWithCheckDigits() {
+        assertEquals("RF18539007547034", CreditorReference.create("539007547034"));
+        assertEquals("RF45G72UUR", CreditorReference.create("g72 uur"));
+        assertEquals("RF741", CreditorReference.create("1"));
+        assertTrue(CreditorReference.isValid(CreditorReference.create("123456789012345678901")));
+        assertNull(CreditorReference.create("1234567890123456789012"));
+        assertNull(CreditorReference.create("RE-4711"));
+        assertNull(CreditorReference.create(" "));
+    }
+
+    @Test
+    void mod97CanBeFedInSlices() {
+        int whole = Mod97.update(0, "3214282912345698765432161182", 0, 28);
+        int sliced = Mod97.update(Mod97.update(0, "3214282912345698765432161182", 0, 10),
+                "3214282912345698765432161182", 10, 28);
+        assertEquals(1, whole);
+        assertEquals(whole, sliced);
+        assertEquals(Mod97.INVALID, Mod97.update(0, "12-3", 0, 4));
+    }
+}
@@ -0,0 +1,80 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvDialectSnifferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sniffsGermanExport() throws IOException {
+        Path csv = tempDir.resolve("german.csv");
+        Files.writeString(csv, "Name;IBAN;Betrag;Datum\r\n"
+                + "\"Müller; Hans\";DE89370400440532013000;1.234,56;01.02.2025\r\n"
+                + "Schmidt;DE12500105170648489890;12,50;15.03.2025\r\n"
+                + "Meier;DE89370400440532013000;7,00;20.03.2025\r\n", StandardCharsets.ISO_8859_1);
+
+        CsvDialect dialect = CsvDialectSniffer.sniff(csv);
+
+        assertEquals(StandardCharsets.ISO_8859_1, dialect.charset());
+        assertEquals(';', dialect.separator());
+        assertEquals('"', dialect.quoteChar());
+        assertTrue(dialect.hasHeader());
+        assertEquals("\r\n", dialect.lineSeparator());
+        assertEquals(',', dialect.decimalSeparator());
+        assertEquals(List.of('\0', '\0', ',', '\0'), dialect.columnDecimalSeparators());
+        assertTrue(dialect.confidence() >= 0.8, dialect::toString);
+    }
+
+    @Test
+    void sniffsSingleQuotes() throws IOException {
+        Path csv = tempDir.resolve("quoted.csv");
+        Files.writeString(csv, "'Name';'Verwendungszweck';'Betrag'\n"
+                + "'Müller, Hans';'Rechnung; März';'12,50'\n"
+                + "'Schmidt';'Miete';'7,00'\n", StandardCharsets.UTF_8);
+
+        CsvDialect dialect = CsvDialectSniffer.sniff(csv, StandardCharsets.UTF_8);
+
+        assertEquals('\'', dialect.quoteChar());
+        assertEquals(';', dialect.separator());
+        assertEquals(1.0, dialect.quoteConfidence());
+    }
+
+    @Test
+    void sniffsEnglishExportWithoutHeader() throws IOException {
+        Path csv = tempDir.resolve("english.csv");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("Customer ").append(i).append(',').append(i).append('.').append(i % 100).append(",2025-01-15\n");
+        }
+        Files.writeString(csv, content.toString(), StandardCharsets.UTF_8);
+
+        CsvDialect dialect = CsvDialectSniffer.sniff(csv, StandardCharsets.UTF_8);
+
+        assertEquals(',', dialect.separator());
+        assertFalse(dialect.hasHeader());
+        assertEquals("\n", dialect.lineSeparator());
+        assertEquals('.', dialect.decimalSeparator());
+        assertEquals(1.0, dialect.separatorConfidence());
+    }
+
+    @Test
+    void convertsSettingsToDisplayNames() {
+        CsvUtil csvUtil = new CsvUtil();
+        for (char separator : new char[]{',', ';', '\t', '|'}) {
+            assertEquals(separator, csvUtil.parseSeparator(csvUtil.formatSeparator(separator)));
+        }
+        assertEquals('.', csvUtil.parseDecimalSeparator(csvUtil.formatDecimalSeparator('.')));
+        assertEquals(',', csvUtil.parseDecimalSeparator(csvUtil.formatDecimalSeparator(',')));
+    }
+}
@@ -0,0 +1,40 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateNormalizerTest {
+
+    @Test
+    void normalizesColumnToIso() {
+        DateNormalizer normalizer = new DateNormalizer();
+        assertEquals("2025-03-01", normalizer.normalize("01.03.2025"));
+        assertEquals(DateNormalizer.Format.GERMAN, normalizer.getFormat());
+        assertEquals("2024-02-29", normalizer.normalize("29.02.2024"));
+        assertEquals("2024-12-31", normalizer.normalize("20241231"));
+        assertEquals(DateNormalizer.Format.GERMAN, normalizer.getFormat());
+        assertEquals("31.02.2024", normalizer.normalize("31.02.2024"));
+        assertEquals("gestern", normalizer.normalize("gestern"));
+    }
+
+    @Test
+    void keepsIsoDatesAsIs() {
+        DateNormalizer normalizer = new DateNormalizer();
+        String iso = "2025-10-20";
+        assertSame(iso, normalizer.normalize(iso));
+    }
+
+    @Test
+    void epochDaysMatchJavaTime() {
+        for (LocalDate date = LocalDate.of(1899, 12, 25); date.getYear() < 2101; date = date.plusDays(17)) {
+            long epochDay = DateNormalizer.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            assertEquals(date.toEpochDay(), epochDay);
+            assertEquals(date.toString(), DateNormalizer.formatIso(epochDay));
+        }
+        assertEquals(DateNormalizer.INVALID, DateNormalizer.parseEpochDay("2025-02-29", DateNormalizer.Format.ISO));
+        assertEquals(DateNormalizer.INVALID, DateNormalizer.parseEpochDay("2025-1-01", DateNormalizer.Format.ISO));
+    }
+}
@@ -0,0 +1,79 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodingDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findsFirstUmlautDeepInTheFile() throws IOException {
+        String csv = "Name;Betrag\n" + "Mustermann;10,00\n".repeat(50_000) + "Müller;12,00\n";
+
+        Path utf8 = tempDir.resolve("utf8.csv");
+        Files.writeString(utf8, csv, StandardCharsets.UTF_8);
+        Path latin1 = tempDir.resolve("latin1.csv");
+        Files.writeString(latin1, csv, StandardCharsets.ISO_8859_1);
+
+        EncodingDetector.Detection utf8Detection = EncodingDetector.analyze(utf8);
+        assertEquals(EncodingDetector.UTF_8, utf8Detection.encoding());
+        assertTrue(utf8Detection.confidence(EncodingDetector.UTF_8) > 0.9);
+        assertEquals(Files.size(utf8), utf8Detection.bytesScanned());
+
+        assertEquals(EncodingDetector.ISO_8859_1, EncodingDetector.detectEncoding(latin1.toFile()));
+        assertEquals(EncodingDetector.analyze(latin1).confidence(EncodingDetector.ISO_8859_1),
+                EncodingDetector.analyze(latin1).confidence(EncodingDetector.WINDOWS_1252));
+    }
+
+    @Test
+    void tellsWindows1252FromIso88591() {
+        byte[] windows = "Rechnung „Müller“ über 10 €".getBytes(Charset.forName("windows-1252"));
+
+        EncodingDetector.Detection detection = EncodingDetector.analyze(ByteBuffer.wrap(windows));
+
+        assertEquals(EncodingDetector.WINDOWS_1252, detection.encoding());
+        assertTrue(detection.confidence(EncodingDetector.WINDOWS_1252) > detection.confidence(EncodingDetector.ISO_8859_1));
+    }
+
+    @Test
+    void rejectsMalformedUtf8() {
+        assertEquals(EncodingDetector.UTF_8, detect(new byte[]{'a', (byte) 0xC3, (byte) 0xA4, 'b'}));
+        // Overlong encoding, surrogate and truncated sequence
+        assertNotEquals(EncodingDetector.UTF_8, detect(new byte[]{(byte) 0xC0, (byte) 0xAF}));
+        assertNotEquals(EncodingDetector.UTF_8, detect(new byte[]{(byte) 0xED, (byte) 0xA0, (byte) 0x80}));
+        assertNotEquals(EncodingDetector.UTF_8, detect(new byte[]{'a', (byte) 0xE2, (byte) 0x82}));
+        assertEquals(EncodingDetector.UTF_8, detect("only ascii".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("UTF-16LE", detect(new byte[]{(byte) 0xFF, (byte) 0xFE, 'a', 0}));
+    }
+
+    @Test
+    void weighsInvalidAgainstValidSequences() {
+        // UTF-8 file with one stray Latin-1 byte, e.g. pasted from another file
+        byte[] utf8 = ("Müller;Straße;" + "Jürgen Öztürk;".repeat(50)).getBytes(StandardCharsets.UTF_8);
+        byte[] stray = new byte[utf8.length + 1];
+        System.arraycopy(utf8, 0, stray, 0, utf8.length);
+        stray[utf8.length] = (byte) 0xE4;
+        EncodingDetector.Detection detection = EncodingDetector.analyze(ByteBuffer.wrap(stray));
+        assertEquals(EncodingDetector.UTF_8, detection.encoding());
+        assertTrue(detection.confidence(EncodingDetector.UTF_8) > 0.9);
+
+        // Latin-1 file in which one pair of characters happens to form a valid sequence
+        byte[] latin1 = ("Ã¤" + "Jürgen Öztürk;".repeat(5)).getBytes(StandardCharsets.ISO_8859_1);
+        assertNotEquals(EncodingDetector.UTF_8, detect(latin1));
+    }
+
+    private static String detect(byte[] bytes) {
+        return EncodingDetector.analyze(ByteBuffer.wrap(bytes)).encoding();
+    }
+}
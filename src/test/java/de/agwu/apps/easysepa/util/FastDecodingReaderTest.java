@@ -0,0 +1,82 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastDecodingReaderTest {
+
+    @Test
+    void decodesLikeInputStreamReader() throws IOException {
+        Random random = new Random(42);
+        String text = "Name;Betrag\nMüller Straße;1.234,56 €\n💶 Zoë\n".repeat(20_000);
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+                StandardCharsets.US_ASCII, Charset.forName(EncodingDetector.WINDOWS_1252)}) {
+            byte[] encoded = text.getBytes(charset);
+            assertEquals(decodeReference(encoded, charset), decode(new ByteArrayInputStream(encoded), charset, 8192),
+                    charset::name);
+        }
+
+        // Random bytes exercise malformed UTF-8 and C1 bytes; a trickling stream and tiny reads cut sequences apart
+        byte[] noise = new byte[200_000];
+        random.nextBytes(noise);
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+                StandardCharsets.US_ASCII, Charset.forName(EncodingDetector.WINDOWS_1252)}) {
+            String expected = decodeReference(noise, charset);
+            assertEquals(expected, decode(new ByteArrayInputStream(noise), charset, 8192), charset::name);
+            assertEquals(expected, decode(trickle(noise), charset, 1), charset::name);
+        }
+    }
+
+    @Test
+    void fallsBackToInputStreamReaderForOtherCharsets() {
+        Reader reader = FastDecodingReader.wrap(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_16LE);
+        assertInstanceOf(InputStreamReader.class, reader);
+    }
+
+    private static String decode(InputStream in, Charset charset, int chunk) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        try (Reader reader = FastDecodingReader.wrap(in, charset)) {
+            char[] buffer = new char[chunk];
+            int read;
+            while ((read = reader.read(buffer, 0, chunk)) >= 0) {
+                builder.append(buffer, 0, read);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String decodeReference(byte[] bytes, Charset charset) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), charset)) {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                builder.append(buffer, 0, read);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Stream returning at most three bytes per read
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IbanValidatorTest {
+
+    @Test
+    void acceptsValidIbans() {
+        assertTrue(IbanValidator.isValid("DE89370400440532013000"));
+        assertTrue(IbanValidator.isValid("GB82WEST12345698765432"));
+        assertTrue(IbanValidator.isValid("NL91ABNA0417164300"));
+        assertTrue(IbanValidator.isValid("FR1420041010050500013M02606"));
+        assertTrue(IbanValidator.isValid("NO9386011117947"));
+        assertTrue(IbanValidator.isValid("AT611904300234573201"));
+    }
+
+    @Test
+    void detectsTyposAndWrongLengths() {
+        assertEquals(IbanValidator.WRONG_CHECKSUM, IbanValidator.check("DE89370400440532013001"));
+        assertEquals(IbanValidator.WRONG_CHECKSUM, IbanValidator.check("DE98370400440532013000"));
+        assertEquals(IbanValidator.WRONG_LENGTH, IbanValidator.check("DE8937040044053201300"));
+        assertEquals(IbanValidator.UNKNOWN_COUNTRY, IbanValidator.check("US89370400440532013000"));
+        assertEquals(IbanValidator.MALFORMED, IbanValidator.check("DE89 3704 0044 0532 0130 00"));
+        assertEquals(IbanValidator.MALFORMED, IbanValidator.check("de89370400440532013000"));
+    }
+
+    @Test
+    void validatesSlicesWithoutCopying() {
+        String line = "Alice;DE89370400440532013000;10.00";
+        assertTrue(IbanValidator.isValid(line, 6, 28));
+        assertFalse(IbanValidator.isValid(line, 5, 28));
+    }
+}
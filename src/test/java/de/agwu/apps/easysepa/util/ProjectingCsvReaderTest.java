@@ -0,0 +1,42 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectingCsvReaderTest {
+
+    @Test
+    void readsQuotedFieldsAcrossLines() throws IOException {
+        String csv = "Name;Verwendungszweck;Betrag\r\n"
+                + "\"Müller; Hans\";\"Rechnung \"\"42\"\"\r\nZeile 2\";12,50\r\n"
+                + "\r\n"
+                + "Meier;  \"gequotet\" ;7,00";
+        try (ProjectingCsvReader reader = new ProjectingCsvReader(new StringReader(csv), ';')) {
+            assertArrayEquals(new String[]{"Name", "Verwendungszweck", "Betrag"}, reader.readNext());
+            assertArrayEquals(new String[]{"Müller; Hans", "Rechnung \"42\"\nZeile 2", "12,50"}, reader.readNext());
+            assertArrayEquals(new String[]{""}, reader.readNext());
+            assertArrayEquals(new String[]{"Meier", "gequotet ", "7,00"}, reader.readNext());
+            assertNull(reader.readNext());
+        }
+    }
+
+    @Test
+    void materialisesOnlyProjectedColumns() throws IOException {
+        String csv = "a,b,c,d,e\n"
+                + "1,\"2,x\",3,4,5\n"
+                + "6,7\n";
+        try (ProjectingCsvReader reader = new ProjectingCsvReader(new StringReader(csv), ',')) {
+            assertEquals(5, reader.readNext().length);
+            reader.setProjection(2, -1, 0, 2);
+
+            assertArrayEquals(new String[]{"1", null, "3"}, reader.readNext());
+            // Short rows keep their length, so missing columns stay distinguishable from skipped ones
+            assertArrayEquals(new String[]{"6", null}, reader.readNext());
+            assertNull(reader.readNext());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SepaCharsetTransliteratorTest {
+
+    private final SepaCharsetTransliterator basic =
+            SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.EPC_BASIC);
+    private final SepaCharsetTransliterator german =
+            SepaCharsetTransliterator.forProfile(SepaCharsetTransliterator.Profile.GERMAN_EXTENDED);
+
+    @Test
+    void returnsCleanValuesUnchanged() {
+        String clean = "Rechnung 2025/17 (Teil 1), Kd.-Nr. 4711";
+        assertSame(clean, basic.transliterate(clean, 0));
+        assertSame(clean, basic.transliterate(clean, 140));
+        assertTrue(basic.isClean(clean));
+    }
+
+    @Test
+    void replacesCharactersOutsideTheSet() {
+        assertEquals("Mueller + Soehne GmbH", basic.transliterate("Müller & Söhne GmbH", 0));
+        assertEquals("Francois Lefevre", basic.transliterate("François Lefèvre", 0));
+        assertEquals("'Zahlung' - 12 EUR...", basic.transliterate("„Zahlung“ – 12 €…", 0));
+        assertEquals("Zeile 1 Zeile 2", basic.transliterate("Zeile 1\nZeile 2", 0));
+        assertEquals("Lodz", basic.transliterate("Łódź", 0));
+    }
+
+    @Test
+    void germanProfileKeepsUmlauts() {
+        String value = "Müller & Söhne";
+        assertSame(value, german.transliterate(value, 0));
+        assertEquals("Francois", german.transliterate("François", 0));
+    }
+
+    @Test
+    void truncatesToMaxLength() {
+        assertEquals("Rechnung", basic.transliterate("Rechnung 4711", 8));
+        assertEquals("Strasse", basic.transliterate("Straße 1", 7));
+        assertEquals("Mu", basic.transliterate("Müller", 2));
+    }
+}
@@ -0,0 +1,50 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SepaValueChecksTest {
+
+    @Test
+    void checksAmounts() {
+        assertEquals(SepaValueChecks.AMOUNT_VALID, SepaValueChecks.checkAmount("123.45"));
+        assertEquals(SepaValueChecks.AMOUNT_VALID, SepaValueChecks.checkAmount("0.5"));
+        assertEquals(SepaValueChecks.AMOUNT_VALID, SepaValueChecks.checkAmount("999999999.99"));
+        assertEquals(SepaValueChecks.AMOUNT_NOT_POSITIVE, SepaValueChecks.checkAmount("0.00"));
+        assertEquals(SepaValueChecks.AMOUNT_TOO_LARGE, SepaValueChecks.checkAmount("1000000000"));
+        assertEquals(SepaValueChecks.AMOUNT_TOO_LARGE, SepaValueChecks.checkAmount("123456789012345678901234"));
+        assertEquals(SepaValueChecks.AMOUNT_MALFORMED, SepaValueChecks.checkAmount("12,50"));
+        assertEquals(SepaValueChecks.AMOUNT_MALFORMED, SepaValueChecks.checkAmount("12.345"));
+        assertEquals(SepaValueChecks.AMOUNT_MALFORMED, SepaValueChecks.checkAmount(".50"));
+        assertEquals(SepaValueChecks.AMOUNT_MALFORMED, SepaValueChecks.checkAmount("12."));
+    }
+
+    @Test
+    void checksDatesAgainstCalendar() {
+        assertTrue(SepaValueChecks.isIsoDate("2024-02-29"));
+        assertFalse(SepaValueChecks.isIsoDate("2025-02-29"));
+        assertFalse(SepaValueChecks.isIsoDate("2025-13-01"));
+        assertFalse(SepaValueChecks.isIsoDate("20.10.2025"));
+    }
+
+    @Test
+    void checksIdentifiers() {
+        assertTrue(SepaValueChecks.isBic("COBADEFFXXX"));
+        assertTrue(SepaValueChecks.isBic("MARKDEF1"));
+        assertTrue(SepaValueChecks.isBic("MARKDE11"));
+        assertTrue(SepaValueChecks.isBic("1234DEFFXXX"));
+        assertFalse(SepaValueChecks.isBic("COBAD1FFXXX"));
+        assertFalse(SepaValueChecks.isBic("cobadeffxxx"));
+        assertFalse(SepaValueChecks.isBic("COBADEF"));
+        assertTrue(SepaValueChecks.isCreditorIdSyntax("DE98ZZZ09999999999"));
+        assertFalse(SepaValueChecks.isCreditorIdSyntax("DE98ZZZ0999999"));
+        assertTrue(SepaValueChecks.isCreditorId("DE98ZZZ09999999999"));
+        assertTrue(SepaValueChecks.isCreditorId("DE98ABC09999999999"));
+        assertFalse(SepaValueChecks.isCreditorId("DE97ZZZ09999999999"));
+        assertFalse(SepaValueChecks.isCreditorId("DE98ZZZ09999999998"));
+        assertTrue(SepaValueChecks.isSequenceType("RCUR"));
+        assertFalse(SepaValueChecks.isSequenceType("rcur"));
+        assertTrue(SepaValueChecks.isBoolean("TRUE"));
+    }
+}
@@ -0,0 +1,114 @@
+package de.agwu.apps.easysepa.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void continuesAcrossRunsWithoutGaps() {
+        try (SequenceStore firstRun = new SequenceStore(tempDir, 100)) {
+            assertEquals(1000, firstRun.next("msgId", 1000));
+            assertEquals(1001, firstRun.next("msgId", 1000));
+            assertEquals(1, firstRun.next("endToEnd", 1));
+        }
+        try (SequenceStore secondRun = new SequenceStore(tempDir, 100)) {
+            // The start only applies to new sequences; unused reserved values were returned on close
+            assertEquals(1002, secondRun.next("msgId", 1));
+            assertEquals(2, secondRun.next("endToEnd", 1));
+        }
+    }
+
+    @Test
+    void neverReissuesValuesOfAnUnclosedStore() {
+        SequenceStore crashed = new SequenceStore(tempDir, 50);
+        assertEquals(1, crashed.next("seq", 1));
+
+        SequenceStore other = new SequenceStore(tempDir, 50);
+        assertEquals(51, other.next("seq", 1));
+        assertEquals(2, crashed.next("seq", 1));
+        other.close();
+        crashed.close();
+
+        try (SequenceStore next = new SequenceStore(tempDir, 50)) {
+            // The crashed store's block is not returned because another block was reserved behind it
+            assertEquals(52, next.next("seq", 1));
+        }
+    }
+
+    @Test
+    void startsOverAfterCrashDuringCreation() throws IOException {
+        // A new file extended by the mapping but never forced
+        Files.write(tempDir.resolve("seq.seq"), new byte[16]);
+        try (SequenceStore store = new SequenceStore(tempDir, 50)) {
+            assertEquals(7, store.next("seq", 7));
+        }
+
+        Files.write(tempDir.resolve("broken.seq"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 0, 0, 0, 0, 0});
+        try (SequenceStore store = new SequenceStore(tempDir, 50)) {
+            assertThrows(UncheckedIOException.class, () -> store.next("broken", 1));
+        }
+    }
+
+    @Test
+    void drawsDistinctValuesFromManyThreads() {
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        try (SequenceStore store = new SequenceStore(tempDir, 7)) {
+            IntStream.range(0, 20_000).parallel().forEach(i -> values.add(store.next("parallel", 1)));
+        }
+        assertEquals(20_000, values.size());
+        assertEquals(1, values.stream().mapToLong(Long::longValue).min().orElseThrow());
+        assertEquals(20_000, values.stream().mapToLong(Long::longValue).max().orElseThrow());
+    }
+
+    @Test
+    void closeWhileDrawingNeitherReissuesNorReopens() {
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        SequenceStore store = new SequenceStore(tempDir, 3);
+        IntStream.range(0, 2_000).parallel().forEach(i -> {
+            if (i == 1_000) {
+                store.close();
+            }
+            try {
+                values.add(store.next("race", 1));
+            } catch (IllegalStateException e) {
+                // Closed
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> store.next("race", 1));
+
+        try (SequenceStore next = new SequenceStore(tempDir, 3)) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(values.add(next.next("race", 1)));
+            }
+        }
+    }
+
+    @Test
+    void templatePlaceholderDrawsFromStore() {
+        try (SequenceStore store = new SequenceStore(tempDir)) {
+            TemplateValueResolver.TemplateExpression padded = TemplateValueResolver
+                    .compile("MSG-{seq:msgId,start=41,pad=8}", store)
+                    .orElseThrow();
+            TemplateValueResolver.TemplateExpression plain = TemplateValueResolver
+                    .compile("{seq:msgId}", store)
+                    .orElseThrow();
+            assertEquals("MSG-00000041", padded.render(1, 1));
+            assertEquals("MSG-00000042", padded.render(2, 2));
+            assertEquals("43", plain.render(1, 1));
+        }
+    }
+}
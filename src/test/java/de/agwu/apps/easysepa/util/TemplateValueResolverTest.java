@@ -2,8 +2,16 @@ package de.agwu.apps.easysepa.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -66,4 +74,99 @@ class TemplateValueResolverTest {
 
         assertEquals("Value-{unknown}", expression.render(1, 1));
     }
+
+    @Test
+    void resolvesBindingsConcurrentlyWithOneClockSnapshot() {
+        Clock clock = Clock.fixed(Instant.parse("2025-03-01T23:59:59Z"), ZoneOffset.UTC);
+        TemplateValueResolver.TemplateBindings bindings = TemplateValueResolver.prepare(
+                Map.of("endToEndId", "E2E-{date}-{id:1,pad=6}", "reference", "Lauf {datetime:yyyy-MM-dd HH:mm}"), clock);
+
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        IntStream.rangeClosed(1, 10_000).parallel()
+                .forEach(row -> ids.add(bindings.resolveValue("endToEndId", row, row)));
+
+        assertEquals(10_000, ids.size());
+        assertTrue(ids.contains("E2E-20250301-000001"));
+        assertTrue(ids.contains("E2E-20250301-010000"));
+        assertEquals("Lauf 2025-03-01 23:59", bindings.resolveValue("reference", 1, 1));
+    }
+
+    @Test
+    void generatesTimeOrderedIds() {
+        TemplateValueResolver.TemplateExpression uuid7 = TemplateValueResolver.compile("{uuid7}").orElseThrow();
+        TemplateValueResolver.TemplateExpression ulid = TemplateValueResolver.compile("{ulid}").orElseThrow();
+        TemplateValueResolver.TemplateExpression uuid = TemplateValueResolver.compile("{uuid}").orElseThrow();
+
+        String previousUuid = "";
+        String previousUlid = "";
+        for (int i = 1; i <= 10_000; i++) {
+            String nextUuid = uuid7.render(i, i);
+            String nextUlid = ulid.render(i, i);
+            assertTrue(nextUuid.compareTo(previousUuid) > 0, nextUuid + " <= " + previousUuid);
+            assertTrue(nextUlid.compareTo(previousUlid) > 0, nextUlid + " <= " + previousUlid);
+            previousUuid = nextUuid;
+            previousUlid = nextUlid;
+        }
+
+        assertEquals(7, UUID.fromString(previousUuid).version());
+        assertEquals(2, UUID.fromString(previousUuid).variant());
+        assertTrue(previousUlid.matches("[0-9A-HJKMNP-TV-Z]{26}"), previousUlid);
+        assertEquals(4, UUID.fromString(uuid.render(1, 1)).version());
+        assertTrue(TemplateValueResolver.compile("{uuid7:nodash}").orElseThrow().render(1, 1).matches("[0-9a-f]{32}"));
+    }
+
+    @Test
+    void padsCountersLikeFormat() {
+        TemplateValueResolver.TemplateExpression expression = TemplateValueResolver
+                .compile("{id:start=-12,step=997,pad=6}")
+                .orElseThrow();
+        for (long value = -12; value < 20_000; value += 997) {
+            assertEquals(String.format("%06d", value), expression.render(1, 1));
+        }
+    }
+
+    @Test
+    void computesCreditorReferencesFromColumnsAndRows() {
+        TemplateValueResolver.TemplateExpression fromColumn = TemplateValueResolver
+                .compile("{rf:Rechnung}")
+                .orElseThrow();
+        assertEquals(Set.of("Rechnung"), fromColumn.getReferencedColumns());
+        assertEquals("RF18539007547034", fromColumn.render(1, 1, Map.of("Rechnung", "539007547034")::get));
+        assertThrows(IllegalArgumentException.class, () -> fromColumn.render(1, 1, Map.of("Rechnung", "RE-4711")::get));
+        assertThrows(IllegalArgumentException.class, () -> fromColumn.render(1, 1, Map.of("Rechnung", " ")::get));
+        assertThrows(IllegalArgumentException.class,
+                () -> fromColumn.render(1, 1, Map.of("Rechnung", "1234567890123456789012")::get));
+
+        TemplateValueResolver.TemplateExpression fromRow = TemplateValueResolver.compile("{rf:row}").orElseThrow();
+        assertTrue(CreditorReference.isValid(fromRow.render(1, 42)));
+        assertTrue(fromRow.render(1, 42).endsWith("42"));
+    }
+
+    @Test
+    void deterministicModeDerivesRandomValuesFromSeedAndRow() {
+        GenerationSettings settings = GenerationSettings.deterministic(
+                Instant.parse("2025-03-01T10:00:00Z"), ZoneOffset.UTC, 42L);
+        Map<String, String> templates = Map.of(
+                "endToEndId", "{ulid}",
+                "mandateId", "M-{uuid:nodash}",
+                "reference", "{today}-{random:8}-{randomalnum:6}");
+
+        TemplateValueResolver.TemplateBindings first = TemplateValueResolver.prepare(templates, settings);
+        TemplateValueResolver.TemplateBindings second = TemplateValueResolver.prepare(templates, settings);
+        // Rendering order must not matter
+        String lastFirst = first.resolveValue("endToEndId", 3, 3);
+        for (int row = 3; row >= 1; row--) {
+            for (String key : templates.keySet()) {
+                assertEquals(first.resolveValue(key, row, row), second.resolveValue(key, row, row), key);
+            }
+        }
+        assertEquals(lastFirst, second.resolveValue("endToEndId", 3, 3));
+        assertTrue(first.resolveValue("endToEndId", 1, 1).compareTo(first.resolveValue("endToEndId", 2, 2)) < 0);
+        assertNotEquals(first.resolveValue("mandateId", 1, 1), first.resolveValue("mandateId", 2, 2));
+        assertTrue(first.resolveValue("reference", 1, 1).startsWith("20250301-"));
+
+        TemplateValueResolver.TemplateBindings otherSeed = TemplateValueResolver.prepare(templates,
+                GenerationSettings.deterministic(Instant.parse("2025-03-01T10:00:00Z"), ZoneOffset.UTC, 43L));
+        assertNotEquals(first.resolveValue("mandateId", 1, 1), otherSeed.resolveValue("mandateId", 1, 1));
+    }
 }